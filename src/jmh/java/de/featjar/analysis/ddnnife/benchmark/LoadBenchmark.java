@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-formula-analysis-ddnnife.
+ *
+ * formula-analysis-ddnnife is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * formula-analysis-ddnnife is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with formula-analysis-ddnnife. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatJAR/formula-analysis-ddnnife> for further information.
+ */
+package de.featjar.analysis.ddnnife.benchmark;
+
+import de.featjar.analysis.ddnnife.solver.Ddnnf;
+import de.featjar.analysis.ddnnife.solver.DdnnifeWrapper;
+import de.featjar.base.data.Result;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time until a compiled d-DNNF is ready to answer queries.
+ * For ddnnife, this includes starting the process, loading the d-DNNF, and answering a first sat query.
+ *
+ * @author Sebastian Krieter
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class LoadBenchmark {
+
+    @Benchmark
+    public Result<Boolean> startProcess(ModelState state) {
+        try (DdnnifeWrapper solver = new DdnnifeWrapper(state.ddnnfFile, state.clauses.getVariableCount())) {
+            return solver.hasSolution();
+        }
+    }
+
+    @Benchmark
+    public Ddnnf loadJava(ModelState state) throws IOException {
+        return Ddnnf.read(state.ddnnfFile, state.clauses.getVariableCount());
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-formula-analysis-ddnnife.
+ *
+ * formula-analysis-ddnnife is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * formula-analysis-ddnnife is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with formula-analysis-ddnnife. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatJAR/formula-analysis-ddnnife> for further information.
+ */
+package de.featjar.analysis.ddnnife.benchmark;
+
+import de.featjar.Common;
+import de.featjar.analysis.ddnnife.solver.DdnnifeWrapper;
+import de.featjar.base.computation.Computations;
+import de.featjar.formula.analysis.bool.BooleanClauseList;
+import de.featjar.formula.analysis.bool.ComputeBooleanClauseList;
+import de.featjar.formula.structure.formula.IFormula;
+import de.featjar.formula.transformer.ComputeCNFFormula;
+import de.featjar.formula.transformer.ComputeNNFFormula;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Feature model under benchmark, ranging from small to large models.
+ * The model is transformed into a clause list and compiled once per trial, such that each benchmark only measures its own stage.
+ * Models are loaded with the fixtures of the formula library from the test resources, which are added to the resources of the benchmarks, such that the benchmarks do not depend on the test classes.
+ *
+ * @author Sebastian Krieter
+ */
+@State(Scope.Benchmark)
+public class ModelState extends Common {
+
+    @Param({
+        "simple.xml",
+        "basic.xml",
+        "car.xml",
+        "gpl_medium_model.xml",
+        "berkeley_db_model.xml",
+        "apl_model.xml",
+        "500-100.xml"
+    })
+    public String model;
+
+    public IFormula formula;
+    public BooleanClauseList clauses;
+    public Path directory;
+    public Path ddnnfFile;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, InterruptedException {
+        formula = loadFormula("testFeatureModels/" + model);
+        clauses = Computations.of(formula)
+                .map(ComputeNNFFormula::new)
+                .map(ComputeCNFFormula::new)
+                .map(ComputeBooleanClauseList::new)
+                .computeResult()
+                .get();
+        directory = Files.createTempDirectory("ddnnifeBenchmark");
+        ddnnfFile = directory.resolve("model.nnf");
+        DdnnifeWrapper.compile(clauses, ddnnfFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-formula-analysis-ddnnife.
+ *
+ * formula-analysis-ddnnife is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * formula-analysis-ddnnife is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with formula-analysis-ddnnife. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatJAR/formula-analysis-ddnnife> for further information.
+ */
+package de.featjar.analysis.ddnnife.benchmark;
+
+import de.featjar.analysis.ddnnife.ComputeSolutionCountDdnnife;
+import de.featjar.analysis.ddnnife.DdnnifeAnalysis;
+import de.featjar.analysis.ddnnife.DdnnifeAnalysis.Backend;
+import de.featjar.analysis.ddnnife.solver.DdnnfCache;
+import de.featjar.analysis.ddnnife.solver.DdnnifeWrapperPool;
+import de.featjar.base.computation.Computations;
+import de.featjar.base.data.Result;
+import de.featjar.formula.analysis.bool.ComputeBooleanClauseList;
+import de.featjar.formula.transformer.ComputeCNFFormula;
+import de.featjar.formula.transformer.ComputeNNFFormula;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link ComputeSolutionCountDdnnife} from the feature model formula to the solution count.
+ * Compares both backends, pooled and fresh ddnnife processes, and cold and warm d-DNNF caches.
+ *
+ * @author Sebastian Krieter
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class PipelineBenchmark {
+
+    /**
+     * Cache and pool that are shared by the computations of a trial.
+     */
+    @State(Scope.Benchmark)
+    public static class PipelineState {
+
+        @Param({"PROCESS", "JAVA"})
+        public Backend backend;
+
+        @Param({"false", "true"})
+        public boolean pooled;
+
+        @Param({"false", "true"})
+        public boolean cached;
+
+        public DdnnfCache cache;
+        public DdnnifeWrapperPool pool;
+
+        @Setup(Level.Trial)
+        public void setup(ModelState model) {
+            cache = new DdnnfCache(model.directory.resolve("cache"), DdnnfCache.DEFAULT_MAXIMUM_SIZE);
+            pool = pooled ? new DdnnifeWrapperPool(1, Duration.ofMinutes(1)) : DdnnifeWrapperPool.NONE;
+        }
+
+        @Setup(Level.Invocation)
+        public void clearCache() throws IOException {
+            if (!cached) {
+                cache.clear();
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            pool.close();
+        }
+    }
+
+    @Benchmark
+    public Result<BigInteger> countSolutions(ModelState model, PipelineState state) {
+        return new ComputeSolutionCountDdnnife(Computations.of(model.formula)
+                        .map(ComputeNNFFormula::new)
+                        .map(ComputeCNFFormula::new)
+                        .map(ComputeBooleanClauseList::new))
+                .set(DdnnifeAnalysis.BACKEND, state.backend)
+                .set(DdnnifeAnalysis.DDNNF_CACHE, state.cache)
+                .set(DdnnifeAnalysis.DDNNIFE_POOL, state.pool)
+                .computeResult();
+    }
+}
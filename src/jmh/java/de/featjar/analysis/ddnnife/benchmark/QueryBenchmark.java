@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-formula-analysis-ddnnife.
+ *
+ * formula-analysis-ddnnife is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * formula-analysis-ddnnife is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with formula-analysis-ddnnife. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatJAR/formula-analysis-ddnnife> for further information.
+ */
+package de.featjar.analysis.ddnnife.benchmark;
+
+import de.featjar.analysis.ddnnife.DdnnifeAnalysis.Backend;
+import de.featjar.analysis.ddnnife.solver.Ddnnf;
+import de.featjar.analysis.ddnnife.solver.DdnnfSolver;
+import de.featjar.analysis.ddnnife.solver.DdnnifeWrapper;
+import de.featjar.analysis.ddnnife.solver.IDdnnfSolver;
+import de.featjar.base.data.Result;
+import de.featjar.formula.analysis.bool.BooleanAssignment;
+import de.featjar.formula.analysis.bool.BooleanSolution;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the latency of single queries on a loaded d-DNNF, for a ddnnife process and for the in-process evaluation.
+ *
+ * @author Sebastian Krieter
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class QueryBenchmark {
+
+    /**
+     * Solver that stays loaded for the whole trial.
+     */
+    @State(Scope.Benchmark)
+    public static class SolverState {
+
+        @Param({"PROCESS", "JAVA"})
+        public Backend backend;
+
+        public IDdnnfSolver solver;
+        public BooleanAssignment assignment;
+
+        @Setup(Level.Trial)
+        public void setup(ModelState model) throws IOException {
+            int variableCount = model.clauses.getVariableCount();
+            solver = backend == Backend.PROCESS
+                    ? new DdnnifeWrapper(model.ddnnfFile, variableCount)
+                    : new DdnnfSolver(Ddnnf.read(model.ddnnfFile, variableCount));
+            assignment = new BooleanAssignment(variableCount);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            solver.close();
+        }
+    }
+
+    @Benchmark
+    public Result<BigInteger> count(SolverState state) {
+        return state.solver.countSolutions();
+    }
+
+    @Benchmark
+    public Result<Boolean> sat(SolverState state) {
+        return state.solver.hasSolution();
+    }
+
+    @Benchmark
+    public Result<BooleanAssignment> core(SolverState state) {
+        return state.solver.core();
+    }
+
+    @Benchmark
+    public Result<BooleanSolution> enumOne(SolverState state) {
+        return state.solver.getSolution();
+    }
+
+    @Benchmark
+    public void enumHundred(SolverState state, Blackhole blackhole) {
+        Iterator<BooleanSolution> solutions = state.solver.enumerateSolutions(100);
+        for (int i = 0; i < 100 && solutions.hasNext(); i++) {
+            blackhole.consume(solutions.next());
+        }
+    }
+
+    @Benchmark
+    public List<Result<BigInteger>> countWithAssumption(SolverState state) {
+        return state.solver.countSolutions(List.of(state.assignment));
+    }
+
+    @Benchmark
+    public Result<BigInteger[]> countLiterals(SolverState state) {
+        return state.solver.countLiterals();
+    }
+}
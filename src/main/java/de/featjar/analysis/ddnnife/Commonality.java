@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-formula-analysis-ddnnife.
+ *
+ * formula-analysis-ddnnife is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * formula-analysis-ddnnife is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with formula-analysis-ddnnife. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatJAR/formula-analysis-ddnnife> for further information.
+ */
+package de.featjar.analysis.ddnnife;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Number of solutions containing each literal of a formula.
+ *
+ * @author Sebastian Krieter
+ */
+public class Commonality {
+
+    private final BigInteger[] counts;
+
+    /**
+     * Creates a new commonality.
+     *
+     * @param counts an array whose first element is the total number of solutions and whose element at index {@code i} is the number of solutions containing variable {@code i}
+     */
+    public Commonality(BigInteger[] counts) {
+        this.counts = Objects.requireNonNull(counts);
+    }
+
+    public int getVariableCount() {
+        return counts.length - 1;
+    }
+
+    public BigInteger getSolutionCount() {
+        return counts[0];
+    }
+
+    /**
+     * Returns the number of solutions containing the given literal.
+     *
+     * @param literal the literal
+     * @return the number of solutions
+     */
+    public BigInteger getCount(int literal) {
+        BigInteger positive = counts[Math.abs(literal)];
+        return literal > 0 ? positive : counts[0].subtract(positive);
+    }
+
+    /**
+     * Returns the ratio of solutions containing the given literal.
+     *
+     * @param literal the literal
+     * @return a value between {@code 0} and {@code 1}, or {@code 0} if there is no solution
+     */
+    public double getCommonality(int literal) {
+        if (counts[0].signum() == 0) {
+            return 0;
+        }
+        return new BigDecimal(getCount(literal))
+                .divide(new BigDecimal(counts[0]), MathContext.DECIMAL64)
+                .doubleValue();
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(counts);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof Commonality && Arrays.equals(counts, ((Commonality) obj).counts);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(counts);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-formula-analysis-ddnnife.
+ *
+ * formula-analysis-ddnnife is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * formula-analysis-ddnnife is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with formula-analysis-ddnnife. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatJAR/formula-analysis-ddnnife> for further information.
+ */
+package de.featjar.analysis.ddnnife;
+
+import de.featjar.analysis.ddnnife.solver.IDdnnfSolver;
+import de.featjar.base.computation.IComputation;
+import de.featjar.base.computation.Progress;
+import de.featjar.base.data.Result;
+import de.featjar.formula.analysis.bool.BooleanAssignment;
+import de.featjar.formula.analysis.bool.BooleanAssignmentList;
+import de.featjar.formula.analysis.bool.BooleanClauseList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds atomic sets, which are maximal sets of variables that are selected together in every solution.
+ * The first assignment of the result contains the core and dead literals, each following assignment contains the variables of one atomic set.
+ * Two variables form an atomic set if each of them is contained in the core conditioned on the other, which requires one core query per variable that is neither core nor dead.
+ *
+ * @author Sebastian Krieter
+ */
+public class ComputeAtomicSetsDdnnife extends DdnnifeAnalysis<BooleanAssignmentList> {
+
+    public ComputeAtomicSetsDdnnife(IComputation<BooleanClauseList> booleanClauseList) {
+        super(booleanClauseList);
+    }
+
+    protected ComputeAtomicSetsDdnnife(ComputeAtomicSetsDdnnife other) {
+        super(other);
+    }
+
+    @Override
+    public Result<BooleanAssignmentList> compute(List<Object> dependencyList, Progress progress) {
+        progress.setTotalSteps(2);
+        try (IDdnnfSolver solver = initializeSolver(dependencyList)) {
+            step(progress);
+            Result<BooleanAssignmentList> result = solver.core().flatMap(core -> computeAtomicSets(solver, core));
+            progress.incrementCurrentStep();
+            return result;
+        } catch (Exception e) {
+            return Result.empty(e);
+        }
+    }
+
+    private static Result<BooleanAssignmentList> computeAtomicSets(IDdnnfSolver solver, BooleanAssignment core) {
+        int variableCount = solver.getVariableCount();
+        boolean[] fixed = new boolean[variableCount + 1];
+        for (int literal : core.get()) {
+            fixed[Math.abs(literal)] = true;
+        }
+        int[] index = new int[variableCount + 1];
+        int[] freeVariables = new int[variableCount];
+        int freeCount = 0;
+        for (int variable = 1; variable <= variableCount; variable++) {
+            if (!fixed[variable]) {
+                index[variable] = freeCount;
+                freeVariables[freeCount++] = variable;
+            }
+        }
+        int[] variables = Arrays.copyOf(freeVariables, freeCount);
+
+        return computeImplications(solver, variables).map(implied -> {
+            BooleanAssignmentList atomicSets = new BooleanAssignmentList();
+            atomicSets.add(core);
+            boolean[] assigned = new boolean[variableCount + 1];
+            int[] atomicSet = new int[variables.length];
+            for (int i = 0; i < variables.length; i++) {
+                int variable = variables[i];
+                if (!assigned[variable]) {
+                    assigned[variable] = true;
+                    int size = 0;
+                    atomicSet[size++] = variable;
+                    for (int other : implied[i]) {
+                        if (other <= variableCount
+                                && !fixed[other]
+                                && !assigned[other]
+                                && Arrays.binarySearch(implied[index[other]], variable) >= 0) {
+                            assigned[other] = true;
+                            atomicSet[size++] = other;
+                        }
+                    }
+                    atomicSets.add(new BooleanAssignment(Arrays.copyOf(atomicSet, size)));
+                }
+            }
+            return atomicSets;
+        });
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-formula-analysis-ddnnife.
+ *
+ * formula-analysis-ddnnife is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * formula-analysis-ddnnife is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with formula-analysis-ddnnife. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatJAR/formula-analysis-ddnnife> for further information.
+ */
+package de.featjar.analysis.ddnnife;
+
+import de.featjar.analysis.ddnnife.solver.IDdnnfSolver;
+import de.featjar.base.computation.IComputation;
+import de.featjar.base.computation.Progress;
+import de.featjar.base.data.Result;
+import de.featjar.formula.analysis.bool.BooleanClauseList;
+import java.util.List;
+
+/**
+ * Counts, for each literal, the number of valid solutions containing it.
+ * All counts are computed from a single compiled d-DNNF in one batch.
+ *
+ * @author Sebastian Krieter
+ */
+public class ComputeCommonalityDdnnife extends DdnnifeAnalysis<Commonality> {
+
+    public ComputeCommonalityDdnnife(IComputation<BooleanClauseList> booleanClauseList) {
+        super(booleanClauseList);
+    }
+
+    protected ComputeCommonalityDdnnife(ComputeCommonalityDdnnife other) {
+        super(other);
+    }
+
+    @Override
+    public Result<Commonality> compute(List<Object> dependencyList, Progress progress) {
+        progress.setTotalSteps(2);
+        try (IDdnnfSolver solver = initializeSolver(dependencyList)) {
+            step(progress);
+            Result<Commonality> result = solver.countLiterals().map(Commonality::new);
+            progress.incrementCurrentStep();
+            return result;
+        } catch (Exception e) {
+            return Result.empty(e);
+        }
+    }
+}
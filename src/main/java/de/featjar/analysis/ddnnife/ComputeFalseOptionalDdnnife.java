@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-formula-analysis-ddnnife.
+ *
+ * formula-analysis-ddnnife is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * formula-analysis-ddnnife is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with formula-analysis-ddnnife. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatJAR/formula-analysis-ddnnife> for further information.
+ */
+package de.featjar.analysis.ddnnife;
+
+import de.featjar.analysis.ddnnife.solver.IDdnnfSolver;
+import de.featjar.base.computation.Dependency;
+import de.featjar.base.computation.IComputation;
+import de.featjar.base.computation.Progress;
+import de.featjar.base.data.Result;
+import de.featjar.formula.analysis.bool.BooleanAssignment;
+import de.featjar.formula.analysis.bool.BooleanClauseList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds false-optional features, which are features that are not core but are selected in every solution in which their parent is selected.
+ * As a clause list does not contain the feature hierarchy, the parent of each variable must be given by {@link #PARENTS} when the analysis is created.
+ * One core query is required per parent that is neither core nor dead.
+ *
+ * @author Sebastian Krieter
+ */
+public class ComputeFalseOptionalDdnnife extends DdnnifeAnalysis<BooleanAssignment> {
+
+    /**
+     * The parent variable of each variable, indexed by variable, or {@code 0} for variables without a parent.
+     */
+    public static final Dependency<int[]> PARENTS = Dependency.newDependency(int[].class);
+
+    public ComputeFalseOptionalDdnnife(IComputation<BooleanClauseList> booleanClauseList, IComputation<int[]> parents) {
+        super(booleanClauseList, parents);
+    }
+
+    protected ComputeFalseOptionalDdnnife(ComputeFalseOptionalDdnnife other) {
+        super(other);
+    }
+
+    @Override
+    public Result<BooleanAssignment> compute(List<Object> dependencyList, Progress progress) {
+        int[] parents = PARENTS.get(dependencyList);
+        progress.setTotalSteps(2);
+        try (IDdnnfSolver solver = initializeSolver(dependencyList)) {
+            step(progress);
+            Result<BooleanAssignment> result =
+                    solver.core().flatMap(core -> computeFalseOptional(solver, core, parents));
+            progress.incrementCurrentStep();
+            return result;
+        } catch (Exception e) {
+            return Result.empty(e);
+        }
+    }
+
+    private static Result<BooleanAssignment> computeFalseOptional(
+            IDdnnfSolver solver, BooleanAssignment core, int[] parents) {
+        boolean[] fixed = new boolean[solver.getVariableCount() + 1];
+        for (int literal : core.get()) {
+            fixed[Math.abs(literal)] = true;
+        }
+        int variableCount = Math.max(Math.min(solver.getVariableCount(), parents.length - 1), 0);
+        int[] index = new int[fixed.length];
+        Arrays.fill(index, -1);
+        int[] freeParents = new int[variableCount];
+        int parentCount = 0;
+        for (int variable = 1; variable <= variableCount; variable++) {
+            int parent = parents[variable];
+            if (!fixed[variable] && parent > 0 && parent < fixed.length && !fixed[parent] && index[parent] < 0) {
+                index[parent] = parentCount;
+                freeParents[parentCount++] = parent;
+            }
+        }
+
+        return computeImplications(solver, Arrays.copyOf(freeParents, parentCount))
+                .map(implied -> {
+                    int[] falseOptional = new int[variableCount];
+                    int size = 0;
+                    for (int variable = 1; variable <= variableCount; variable++) {
+                        int parent = parents[variable];
+                        if (!fixed[variable]
+                                && parent > 0
+                                && parent < fixed.length
+                                && index[parent] >= 0
+                                && Arrays.binarySearch(implied[index[parent]], variable) >= 0) {
+                            falseOptional[size++] = variable;
+                        }
+                    }
+                    return new BooleanAssignment(Arrays.copyOf(falseOptional, size));
+                });
+    }
+}
@@ -20,7 +20,8 @@
  */
 package de.featjar.analysis.ddnnife;
 
-import de.featjar.analysis.ddnnife.solver.DdnnifeWrapper;
+import de.featjar.analysis.ddnnife.solver.DdnnifeQueryCache;
+import de.featjar.analysis.ddnnife.solver.IDdnnfSolver;
 import de.featjar.base.computation.IComputation;
 import de.featjar.base.computation.Progress;
 import de.featjar.base.data.Result;
@@ -45,10 +46,9 @@ public class ComputeSolutionCountDdnnife extends DdnnifeAnalysis<BigInteger> {
 
     @Override
     public Result<BigInteger> compute(List<Object> dependencyList, Progress progress) {
-        try (DdnnifeWrapper solver = initializeSolver(dependencyList)) {
-            return solver.countSolutions();
-        } catch (Exception e) {
-            return Result.empty(e);
-        }
+        progress.setTotalSteps(1);
+        Result<BigInteger> result = computeQuery(dependencyList, DdnnifeQueryCache.Kind.COUNT, IDdnnfSolver::countSolutions);
+        progress.incrementCurrentStep();
+        return result;
     }
 }
@@ -20,7 +20,7 @@
  */
 package de.featjar.analysis.ddnnife;
 
-import de.featjar.analysis.ddnnife.solver.DdnnifeWrapper;
+import de.featjar.analysis.ddnnife.solver.IDdnnfSolver;
 import de.featjar.base.computation.IComputation;
 import de.featjar.base.computation.Progress;
 import de.featjar.base.data.Result;
@@ -29,7 +29,7 @@ import de.featjar.formula.analysis.bool.BooleanSolution;
 import java.util.List;
 
 /**
- * Counts the number of valid solutions to a formula.
+ * Computes a valid solution of a formula.
  *
  * @author Sebastian Krieter
  */
@@ -45,8 +45,12 @@ public class ComputeSolutionDdnnife extends DdnnifeAnalysis<BooleanSolution> {
 
     @Override
     public Result<BooleanSolution> compute(List<Object> dependencyList, Progress progress) {
-        try (DdnnifeWrapper solver = initializeSolver(dependencyList)) {
-            return solver.getSolution();
+        progress.setTotalSteps(2);
+        try (IDdnnfSolver solver = initializeSolver(dependencyList)) {
+            step(progress);
+            Result<BooleanSolution> result = solver.getSolution();
+            progress.incrementCurrentStep();
+            return result;
         } catch (Exception e) {
             return Result.empty(e);
         }
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-formula-analysis-ddnnife.
+ *
+ * formula-analysis-ddnnife is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * formula-analysis-ddnnife is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with formula-analysis-ddnnife. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatJAR/formula-analysis-ddnnife> for further information.
+ */
+package de.featjar.analysis.ddnnife;
+
+import de.featjar.analysis.ddnnife.solver.IDdnnfSolver;
+import de.featjar.base.computation.Computations;
+import de.featjar.base.computation.Dependency;
+import de.featjar.base.computation.IComputation;
+import de.featjar.base.computation.Progress;
+import de.featjar.base.data.Result;
+import de.featjar.formula.analysis.bool.BooleanClauseList;
+import de.featjar.formula.analysis.bool.BooleanSolution;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+
+/**
+ * Lazily enumerates valid solutions of a formula.
+ * Solutions are requested from the solver in chunks only when the stream is consumed, so memory stays bounded for formulas with huge numbers of solutions.
+ * The returned stream holds a solver and must be closed after use.
+ * A query that fails while the stream is consumed causes the operation of the stream that requests the next solution to throw an {@link IllegalStateException}.
+ *
+ * @author Sebastian Krieter
+ */
+public class ComputeSolutionsDdnnife extends DdnnifeAnalysis<Stream<BooleanSolution>> {
+    public static final Dependency<Long> LIMIT = Dependency.newDependency(Long.class);
+    public static final Dependency<Integer> CHUNK_SIZE = Dependency.newDependency(Integer.class);
+
+    public ComputeSolutionsDdnnife(IComputation<BooleanClauseList> booleanClauseList) {
+        super(booleanClauseList, Computations.of(Long.MAX_VALUE), Computations.of(1000));
+    }
+
+    protected ComputeSolutionsDdnnife(ComputeSolutionsDdnnife other) {
+        super(other);
+    }
+
+    @Override
+    public Result<Stream<BooleanSolution>> compute(List<Object> dependencyList, Progress progress) {
+        long limit = LIMIT.get(dependencyList);
+        int chunkSize = (int) Math.max(1, Math.min(CHUNK_SIZE.get(dependencyList), limit));
+        progress.setTotalSteps(1);
+        IDdnnfSolver solver = null;
+        try {
+            solver = initializeSolver(dependencyList);
+            Stream<BooleanSolution> solutions = stream(
+                            solver,
+                            solver.enumerateSolutions(chunkSize),
+                            Spliterator.ORDERED | Spliterator.DISTINCT)
+                    .limit(limit);
+            step(progress);
+            return Result.of(solutions);
+        } catch (Exception e) {
+            close(solver);
+            return Result.empty(e);
+        }
+    }
+}
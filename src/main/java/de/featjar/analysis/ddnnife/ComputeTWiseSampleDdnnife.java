@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-formula-analysis-ddnnife.
+ *
+ * formula-analysis-ddnnife is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * formula-analysis-ddnnife is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with formula-analysis-ddnnife. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatJAR/formula-analysis-ddnnife> for further information.
+ */
+package de.featjar.analysis.ddnnife;
+
+import de.featjar.analysis.ddnnife.solver.IDdnnfSolver;
+import de.featjar.base.computation.Computations;
+import de.featjar.base.computation.Dependency;
+import de.featjar.base.computation.IComputation;
+import de.featjar.base.computation.Progress;
+import de.featjar.base.data.Result;
+import de.featjar.formula.analysis.bool.BooleanClauseList;
+import de.featjar.formula.analysis.bool.BooleanSolution;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+
+/**
+ * Lazily computes a sample of valid solutions that covers all valid interactions of {@code t} literals.
+ * Each solution is available as soon as it is constructed.
+ * The returned stream holds a solver and must be closed after use.
+ * As the sample is computed while the stream is consumed, a failing query, for instance due to the {@link #SAT_TIMEOUT timeout}, is not reported in the result of this computation.
+ * Instead, the operation of the stream that requests the next solution throws an {@link IllegalStateException}, such that an incomplete sample is never mistaken for a complete one.
+ *
+ * @author Sebastian Krieter
+ */
+public class ComputeTWiseSampleDdnnife extends DdnnifeAnalysis<Stream<BooleanSolution>> {
+    public static final Dependency<Integer> T = Dependency.newDependency(Integer.class);
+    public static final Dependency<Long> RANDOM_SEED = Dependency.newDependency(Long.class);
+    public static final Dependency<Long> LIMIT = Dependency.newDependency(Long.class);
+
+    public ComputeTWiseSampleDdnnife(IComputation<BooleanClauseList> booleanClauseList) {
+        super(booleanClauseList, Computations.of(2), Computations.of(1L), Computations.of(Long.MAX_VALUE));
+    }
+
+    protected ComputeTWiseSampleDdnnife(ComputeTWiseSampleDdnnife other) {
+        super(other);
+    }
+
+    @Override
+    public Result<Stream<BooleanSolution>> compute(List<Object> dependencyList, Progress progress) {
+        int t = T.get(dependencyList);
+        long seed = RANDOM_SEED.get(dependencyList);
+        long limit = LIMIT.get(dependencyList);
+        progress.setTotalSteps(1);
+        IDdnnfSolver solver = null;
+        try {
+            solver = initializeSolver(dependencyList);
+            Stream<BooleanSolution> sample = stream(
+                            solver, solver.sampleTWise(t, seed), Spliterator.ORDERED | Spliterator.DISTINCT)
+                    .limit(limit);
+            step(progress);
+            return Result.of(sample);
+        } catch (Exception e) {
+            close(solver);
+            return Result.empty(e);
+        }
+    }
+}
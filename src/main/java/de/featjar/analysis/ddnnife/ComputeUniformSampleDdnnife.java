@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-formula-analysis-ddnnife.
+ *
+ * formula-analysis-ddnnife is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * formula-analysis-ddnnife is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with formula-analysis-ddnnife. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatJAR/formula-analysis-ddnnife> for further information.
+ */
+package de.featjar.analysis.ddnnife;
+
+import de.featjar.analysis.ddnnife.solver.IDdnnfSolver;
+import de.featjar.base.computation.Computations;
+import de.featjar.base.computation.Dependency;
+import de.featjar.base.computation.IComputation;
+import de.featjar.base.computation.Progress;
+import de.featjar.base.data.Result;
+import de.featjar.formula.analysis.bool.BooleanClauseList;
+import de.featjar.formula.analysis.bool.BooleanSolution;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+
+/**
+ * Lazily draws valid solutions of a formula uniformly at random, with replacement.
+ * The same seed yields the same sample.
+ * The returned stream holds a solver and must be closed after use.
+ * A query that fails while the stream is consumed causes the operation of the stream that requests the next solution to throw an {@link IllegalStateException}.
+ *
+ * @author Sebastian Krieter
+ */
+public class ComputeUniformSampleDdnnife extends DdnnifeAnalysis<Stream<BooleanSolution>> {
+    public static final Dependency<Integer> SAMPLE_SIZE = Dependency.newDependency(Integer.class);
+    public static final Dependency<Long> RANDOM_SEED = Dependency.newDependency(Long.class);
+    public static final Dependency<Integer> CHUNK_SIZE = Dependency.newDependency(Integer.class);
+
+    public ComputeUniformSampleDdnnife(IComputation<BooleanClauseList> booleanClauseList) {
+        super(booleanClauseList, Computations.of(100), Computations.of(1L), Computations.of(1000));
+    }
+
+    protected ComputeUniformSampleDdnnife(ComputeUniformSampleDdnnife other) {
+        super(other);
+    }
+
+    @Override
+    public Result<Stream<BooleanSolution>> compute(List<Object> dependencyList, Progress progress) {
+        int sampleSize = SAMPLE_SIZE.get(dependencyList);
+        long seed = RANDOM_SEED.get(dependencyList);
+        int chunkSize = Math.max(1, Math.min(CHUNK_SIZE.get(dependencyList), sampleSize));
+        progress.setTotalSteps(1);
+        IDdnnfSolver solver = null;
+        try {
+            solver = initializeSolver(dependencyList);
+            Stream<BooleanSolution> sample = stream(solver, solver.sampleUniform(seed, chunkSize), Spliterator.ORDERED)
+                    .limit(sampleSize);
+            step(progress);
+            return Result.of(sample);
+        } catch (Exception e) {
+            close(solver);
+            return Result.empty(e);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-formula-analysis-ddnnife.
+ *
+ * formula-analysis-ddnnife is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * formula-analysis-ddnnife is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with formula-analysis-ddnnife. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatJAR/formula-analysis-ddnnife> for further information.
+ */
+package de.featjar.analysis.ddnnife;
+
+import de.featjar.analysis.ddnnife.solver.Ddnnf;
+import de.featjar.analysis.ddnnife.solver.Projection;
+import de.featjar.base.computation.Computations;
+import de.featjar.base.computation.Dependency;
+import de.featjar.base.computation.IComputation;
+import de.featjar.base.computation.Progress;
+import de.featjar.base.data.Result;
+import de.featjar.formula.analysis.bool.ABooleanAssignment;
+import de.featjar.formula.analysis.bool.BooleanClauseList;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Computes the weighted model count of a formula and the probability of each feature under the given literal weights, such as prior usage frequencies.
+ * The weight of a solution is the product of the weights of its literals.
+ * All values are computed in the JVM in one upward and one downward pass over the compiled d-DNNF, independent of the {@link #BACKEND backend}.
+ *
+ * @author Sebastian Krieter
+ */
+public class ComputeWeightedCountDdnnife extends DdnnifeAnalysis<WeightedCount> {
+
+    /**
+     * Determines the arithmetic of the weighted count.
+     */
+    public enum Precision {
+        /**
+         * Fast computation with double precision.
+         */
+        DOUBLE,
+        /**
+         * Exact computation with {@link BigDecimal}.
+         */
+        EXACT
+    }
+
+    /**
+     * The weight of each positive literal, indexed by variable. Missing weights are {@code 1}.
+     */
+    public static final Dependency<Number[]> POSITIVE_WEIGHTS = Dependency.newDependency(Number[].class);
+
+    /**
+     * The weight of each negative literal, indexed by variable. Missing weights are {@code 1}.
+     */
+    public static final Dependency<Number[]> NEGATIVE_WEIGHTS = Dependency.newDependency(Number[].class);
+
+    public static final Dependency<Precision> PRECISION = Dependency.newDependency(Precision.class);
+
+    public ComputeWeightedCountDdnnife(IComputation<BooleanClauseList> booleanClauseList) {
+        super(
+                booleanClauseList,
+                Computations.of(new Number[0]),
+                Computations.of(new Number[0]),
+                Computations.of(Precision.DOUBLE));
+    }
+
+    protected ComputeWeightedCountDdnnife(ComputeWeightedCountDdnnife other) {
+        super(other);
+    }
+
+    @Override
+    public Result<WeightedCount> compute(List<Object> dependencyList, Progress progress) {
+        progress.setTotalSteps(2);
+        try {
+            BooleanClauseList clauseList = BOOLEAN_CLAUSE_LIST.get(dependencyList);
+            int variableCount = clauseList.getVariableCount();
+            ABooleanAssignment projectedVariables = PROJECTION.get(dependencyList);
+            Projection projection = projectedVariables.isEmpty()
+                    ? null
+                    : new Projection(variableCount, projectedVariables.get());
+            Ddnnf ddnnf = loadDdnnf(projection == null ? clauseList : projection.apply(clauseList), dependencyList)
+                    .cancellable();
+            step(progress);
+            Duration timeout = SAT_TIMEOUT.get(dependencyList);
+            ddnnf.setDeadline(timeout.isNegative() ? 0 : timeout.toNanos());
+
+            int[] assumptions = ASSUMED_ASSIGNMENT.get(dependencyList).get().clone();
+            int[] originalVariables = new int[ddnnf.getVariableCount() + 1];
+            for (int variable = 1; variable < originalVariables.length; variable++) {
+                originalVariables[variable] = projection == null ? variable : projection.toOriginal(variable);
+            }
+            if (projection != null) {
+                for (int i = 0; i < assumptions.length; i++) {
+                    assumptions[i] = projection.toProjected(assumptions[i]);
+                }
+            }
+            Number[] positiveWeights = POSITIVE_WEIGHTS.get(dependencyList);
+            Number[] negativeWeights = NEGATIVE_WEIGHTS.get(dependencyList);
+
+            WeightedCount weightedCount;
+            if (PRECISION.get(dependencyList) == Precision.EXACT) {
+                BigDecimal[] positive = new BigDecimal[originalVariables.length];
+                BigDecimal[] negative = new BigDecimal[originalVariables.length];
+                for (int variable = 1; variable < originalVariables.length; variable++) {
+                    positive[variable] = toBigDecimal(positiveWeights, originalVariables[variable]);
+                    negative[variable] = toBigDecimal(negativeWeights, originalVariables[variable]);
+                }
+                BigDecimal[] counts = ddnnf.countLiterals(positive, negative, assumptions);
+                BigDecimal[] originalCounts = new BigDecimal[Math.max(variableCount, counts.length - 1) + 1];
+                Arrays.fill(originalCounts, BigDecimal.ZERO);
+                originalCounts[0] = counts[0];
+                for (int variable = 1; variable < counts.length; variable++) {
+                    originalCounts[originalVariables[variable]] = counts[variable];
+                }
+                weightedCount = new WeightedCount(originalCounts);
+            } else {
+                double[] positive = new double[originalVariables.length];
+                double[] negative = new double[originalVariables.length];
+                for (int variable = 1; variable < originalVariables.length; variable++) {
+                    positive[variable] = toDouble(positiveWeights, originalVariables[variable]);
+                    negative[variable] = toDouble(negativeWeights, originalVariables[variable]);
+                }
+                double[] counts = ddnnf.countLiterals(positive, negative, assumptions);
+                double[] originalCounts = new double[Math.max(variableCount, counts.length - 1) + 1];
+                originalCounts[0] = counts[0];
+                for (int variable = 1; variable < counts.length; variable++) {
+                    originalCounts[originalVariables[variable]] = counts[variable];
+                }
+                weightedCount = new WeightedCount(originalCounts);
+            }
+            progress.incrementCurrentStep();
+            return Result.of(weightedCount);
+        } catch (Exception e) {
+            return Result.empty(e);
+        }
+    }
+
+    private static double toDouble(Number[] weights, int variable) {
+        return variable < weights.length && weights[variable] != null ? weights[variable].doubleValue() : 1;
+    }
+
+    private static BigDecimal toBigDecimal(Number[] weights, int variable) {
+        if (variable >= weights.length || weights[variable] == null) {
+            return BigDecimal.ONE;
+        }
+        Number weight = weights[variable];
+        return weight instanceof BigDecimal ? (BigDecimal) weight : new BigDecimal(weight.toString());
+    }
+}
@@ -20,17 +20,41 @@
  */
 package de.featjar.analysis.ddnnife;
 
+import de.featjar.analysis.ddnnife.solver.Ddnnf;
+import de.featjar.analysis.ddnnife.solver.DdnnfCache;
+import de.featjar.analysis.ddnnife.solver.DdnnfSolver;
+import de.featjar.analysis.ddnnife.solver.DdnnifeParallelExecutor;
+import de.featjar.analysis.ddnnife.solver.DdnnifeQueryCache;
 import de.featjar.analysis.ddnnife.solver.DdnnifeWrapper;
+import de.featjar.analysis.ddnnife.solver.DdnnifeWrapperPool;
+import de.featjar.analysis.ddnnife.solver.IDdnnifeListener;
+import de.featjar.analysis.ddnnife.solver.IDdnnfSolver;
+import de.featjar.analysis.ddnnife.solver.Projection;
 import de.featjar.base.FeatJAR;
 import de.featjar.base.computation.AComputation;
 import de.featjar.base.computation.Computations;
 import de.featjar.base.computation.Dependency;
 import de.featjar.base.computation.IComputation;
+import de.featjar.base.computation.Progress;
+import de.featjar.base.data.Result;
 import de.featjar.formula.analysis.bool.ABooleanAssignment;
 import de.featjar.formula.analysis.bool.BooleanAssignment;
 import de.featjar.formula.analysis.bool.BooleanClauseList;
+import de.featjar.formula.analysis.bool.BooleanSolution;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Base class for analyses using a {@link SharpSatSolver}.
@@ -40,17 +64,49 @@ import java.util.List;
  * @author Sebastian Krieter
  */
 public abstract class DdnnifeAnalysis<T> extends AComputation<T> {
+
+    /**
+     * Determines how queries on the compiled d-DNNF are answered.
+     */
+    public enum Backend {
+        /**
+         * Queries are sent to an external ddnnife process.
+         */
+        PROCESS,
+        /**
+         * Queries are evaluated within the JVM by a {@link DdnnfSolver}.
+         */
+        JAVA
+    }
+
     public static final Dependency<BooleanClauseList> BOOLEAN_CLAUSE_LIST =
             Dependency.newDependency(BooleanClauseList.class);
     public static final Dependency<ABooleanAssignment> ASSUMED_ASSIGNMENT =
             Dependency.newDependency(ABooleanAssignment.class);
     public static final Dependency<Duration> SAT_TIMEOUT = Dependency.newDependency(Duration.class);
+    public static final Dependency<DdnnfCache> DDNNF_CACHE = Dependency.newDependency(DdnnfCache.class);
+    public static final Dependency<DdnnifeWrapperPool> DDNNIFE_POOL =
+            Dependency.newDependency(DdnnifeWrapperPool.class);
+    public static final Dependency<Backend> BACKEND = Dependency.newDependency(Backend.class);
+    public static final Dependency<Integer> PARALLELISM = Dependency.newDependency(Integer.class);
+    public static final Dependency<IDdnnifeListener> LISTENER = Dependency.newDependency(IDdnnifeListener.class);
+    public static final Dependency<DdnnifeQueryCache> QUERY_CACHE =
+            Dependency.newDependency(DdnnifeQueryCache.class);
+    public static final Dependency<ABooleanAssignment> PROJECTION =
+            Dependency.newDependency(ABooleanAssignment.class);
 
     public DdnnifeAnalysis(IComputation<BooleanClauseList> booleanClauseList, Object... computations) {
         super(
                 booleanClauseList,
                 Computations.of(new BooleanAssignment()),
                 Computations.of(Duration.ZERO),
+                Computations.of(DdnnfCache.NONE),
+                Computations.of(DdnnifeWrapperPool.NONE),
+                Computations.of(Backend.PROCESS),
+                Computations.of(1),
+                Computations.of(IDdnnifeListener.NONE),
+                Computations.of(DdnnifeQueryCache.NONE),
+                Computations.of(new BooleanAssignment()),
                 computations);
     }
 
@@ -58,17 +114,212 @@ public abstract class DdnnifeAnalysis<T> extends AComputation<T> {
         super(other);
     }
 
-    public DdnnifeWrapper initializeSolver(List<Object> dependencyList) {
+    /**
+     * Creates or leases a solver for the dependencies of this computation using the selected {@link #BACKEND backend}.
+     * The solver must be closed after use, which returns it to the {@link #DDNNIFE_POOL pool}.
+     * If the {@link #PARALLELISM parallelism} is not {@code 1}, batch queries are distributed over multiple ddnnife processes, which are not pooled.
+     * A parallelism of {@code 0} chooses the number of processes automatically.
+     * The {@link #SAT_TIMEOUT timeout} applies to the compilation of the formula and to each query, for both backends.
+     * Compilation and queries are cancelled when the computing thread is interrupted.
+     * Measurements of all phases and queries are reported to the {@link #LISTENER listener}.
+     * If a {@link #PROJECTION projection} is given, the formula is compiled in projected mode, such that variables that are not projected, such as auxiliary variables of a CNF transformation, neither occur in the d-DNNF nor in any result.
+     *
+     * @param dependencyList the dependencies
+     * @return the solver
+     * @throws IOException if the d-DNNF cannot be compiled or loaded
+     * @throws InterruptedException if the thread is interrupted while compiling or waiting for a pooled process
+     * @throws TimeoutException if the compilation exceeds the timeout
+     */
+    public IDdnnfSolver initializeSolver(List<Object> dependencyList)
+            throws IOException, InterruptedException, TimeoutException {
         BooleanClauseList clauseList = BOOLEAN_CLAUSE_LIST.get(dependencyList);
         ABooleanAssignment assumedAssignment = ASSUMED_ASSIGNMENT.get(dependencyList);
         Duration timeout = SAT_TIMEOUT.get(dependencyList);
+        DdnnfCache cache = getCache(dependencyList);
+        DdnnifeWrapperPool pool = DDNNIFE_POOL.get(dependencyList);
+        Backend backend = BACKEND.get(dependencyList);
+        int parallelism = PARALLELISM.get(dependencyList);
+        IDdnnifeListener listener = LISTENER.get(dependencyList);
+        ABooleanAssignment projectedVariables = PROJECTION.get(dependencyList);
+        Projection projection = null;
+        if (!projectedVariables.isEmpty()) {
+            projection = new Projection(clauseList.getVariableCount(), projectedVariables.get());
+            clauseList = projection.apply(clauseList);
+        }
+        boolean listening = listener != IDdnnifeListener.NONE;
+        long start = listening ? System.nanoTime() : 0;
         FeatJAR.log().debug("initializing SAT4J");
         FeatJAR.log().debug("clauses %s", clauseList);
         FeatJAR.log().debug("assuming %s", assumedAssignment);
 
-        DdnnifeWrapper solver = new DdnnifeWrapper(clauseList);
+        IDdnnfSolver solver;
+        if (backend == Backend.JAVA) {
+            solver = new DdnnfSolver(loadDdnnf(clauseList, dependencyList));
+        } else if (parallelism != 1) {
+            solver = new DdnnifeParallelExecutor(clauseList, cache, parallelism, timeout, listener);
+        } else {
+            DdnnifeWrapper wrapper = pool.lease(clauseList, cache, timeout, listener);
+            if (wrapper.isTimeoutOccurred()) {
+                wrapper.close();
+                throw new TimeoutException("d4 exceeded timeout of " + timeout);
+            }
+            solver = wrapper;
+        }
+        if (projection != null) {
+            solver = projection.wrap(solver);
+        }
         solver.setAssumptions(assumedAssignment);
         solver.setTimeout(timeout);
+        if (listening) {
+            listener.phaseCompleted(IDdnnifeListener.Phase.INITIALIZE, System.nanoTime() - start);
+        }
         return solver;
     }
+
+    /**
+     * Loads the d-DNNF of a formula into the JVM, independent of the selected {@link #BACKEND backend}.
+     * If a {@link #DDNNF_CACHE cache} is set, the formula is compiled into the cache if necessary, and the d-DNNF is read in binary format.
+     * Otherwise, the formula is compiled into a temporary file.
+     *
+     * @param clauseList the formula
+     * @param dependencyList the dependencies
+     * @return the d-DNNF
+     * @throws IOException if the d-DNNF cannot be compiled or loaded
+     * @throws InterruptedException if the thread is interrupted while compiling
+     * @throws TimeoutException if the compilation exceeds the timeout
+     */
+    protected static Ddnnf loadDdnnf(BooleanClauseList clauseList, List<Object> dependencyList)
+            throws IOException, InterruptedException, TimeoutException {
+        IDdnnifeListener listener = LISTENER.get(dependencyList);
+        Duration timeout = SAT_TIMEOUT.get(dependencyList);
+        DdnnfCache cache = getCache(dependencyList);
+        Path ddnnfFile = cache == null
+                ? Files.createTempFile("ddnnifeInput", ".nnf")
+                : cache.acquireBinary(clauseList, timeout, listener);
+        try {
+            if (cache == null) {
+                DdnnifeWrapper.compile(clauseList, ddnnfFile, timeout, listener);
+            }
+            boolean listening = listener != IDdnnifeListener.NONE;
+            long loadStart = listening ? System.nanoTime() : 0;
+            Ddnnf ddnnf = cache == null
+                    ? Ddnnf.read(ddnnfFile, clauseList.getVariableCount())
+                    : Ddnnf.readBinary(ddnnfFile);
+            if (listening) {
+                listener.phaseCompleted(IDdnnifeListener.Phase.LOAD, System.nanoTime() - loadStart);
+            }
+            return ddnnf;
+        } finally {
+            if (cache == null) {
+                Files.deleteIfExists(ddnnfFile);
+            } else {
+                cache.release(ddnnfFile);
+            }
+        }
+    }
+
+    private static DdnnfCache getCache(List<Object> dependencyList) {
+        DdnnfCache cache = DDNNF_CACHE.get(dependencyList);
+        return cache == DdnnfCache.NONE ? null : cache;
+    }
+
+    /**
+     * Completes a step of the given progress.
+     * Running analyses are cancelled cooperatively by interrupting the computing thread, which is checked at each step.
+     *
+     * @param progress the progress
+     * @throws InterruptedException if the computing thread is interrupted
+     */
+    protected static void step(Progress progress) throws InterruptedException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedException("d-DNNF analysis was cancelled");
+        }
+        progress.incrementCurrentStep();
+    }
+
+    /**
+     * Answers a query under the {@link #ASSUMED_ASSIGNMENT assumptions} from the {@link #QUERY_CACHE query cache}.
+     * Only on a cache miss, a solver is initialized, and it is closed after answering the query.
+     *
+     * @param <R> the type of the result
+     * @param dependencyList the dependencies
+     * @param kind the kind of query
+     * @param query the query
+     * @return the result
+     */
+    protected <R> Result<R> computeQuery(
+            List<Object> dependencyList,
+            DdnnifeQueryCache.Kind kind,
+            Function<? super IDdnnfSolver, Result<R>> query) {
+        return QUERY_CACHE
+                .get(dependencyList)
+                .computeIfAbsent(
+                        BOOLEAN_CLAUSE_LIST.get(dependencyList),
+                        PROJECTION.get(dependencyList),
+                        kind,
+                        ASSUMED_ASSIGNMENT.get(dependencyList),
+                        () -> {
+                            try (IDdnnfSolver solver = initializeSolver(dependencyList)) {
+                                return query.apply(solver);
+                            } catch (Exception e) {
+                                return Result.empty(e);
+                            }
+                        });
+    }
+
+    /**
+     * Computes, for each of the given variables, the variables that are selected in all solutions in which the given variable is selected.
+     * All conditioned core queries are sent as a single batch.
+     *
+     * @param solver the solver
+     * @param variables the variables
+     * @return for each of the given variables, the sorted array of variables it implies
+     */
+    protected static Result<int[][]> computeImplications(IDdnnfSolver solver, int[] variables) {
+        List<BooleanAssignment> assignments = new ArrayList<>(variables.length);
+        for (int variable : variables) {
+            assignments.add(new BooleanAssignment(variable));
+        }
+        List<Result<BooleanAssignment>> cores = solver.core(assignments);
+        int[][] implications = new int[variables.length][];
+        for (int i = 0; i < variables.length; i++) {
+            Result<BooleanAssignment> core = cores.get(i);
+            if (core.isEmpty()) {
+                return Result.empty(new Exception("Could not compute core for variable " + variables[i]));
+            }
+            implications[i] =
+                    Arrays.stream(core.get().get()).filter(l -> l > 0).sorted().toArray();
+        }
+        return Result.of(implications);
+    }
+
+    /**
+     * Wraps lazily computed solutions into a sequential stream that closes the given solver when the stream is closed.
+     *
+     * @param solver the solver that computes the solutions
+     * @param solutions the solutions
+     * @param characteristics the {@link Spliterator characteristics} of the solutions
+     * @return the stream
+     */
+    protected static Stream<BooleanSolution> stream(
+            IDdnnfSolver solver, Iterator<BooleanSolution> solutions, int characteristics) {
+        return StreamSupport.stream(
+                        Spliterators.spliteratorUnknownSize(solutions, characteristics | Spliterator.NONNULL), false)
+                .onClose(() -> close(solver));
+    }
+
+    /**
+     * Closes a solver and logs any exception.
+     *
+     * @param solver the solver, may be {@code null}
+     */
+    protected static void close(IDdnnfSolver solver) {
+        if (solver != null) {
+            try {
+                solver.close();
+            } catch (Exception e) {
+                FeatJAR.log().error(e);
+            }
+        }
+    }
 }
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-formula-analysis-ddnnife.
+ *
+ * formula-analysis-ddnnife is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * formula-analysis-ddnnife is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with formula-analysis-ddnnife. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatJAR/formula-analysis-ddnnife> for further information.
+ */
+package de.featjar.analysis.ddnnife;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Arrays;
+
+/**
+ * Weighted model count of a formula and the weighted count of solutions containing each literal.
+ * The counts are either exact or have double precision.
+ *
+ * @author Sebastian Krieter
+ */
+public class WeightedCount {
+
+    private final double[] counts;
+    private final BigDecimal[] exactCounts;
+
+    /**
+     * Creates a new weighted count with double precision.
+     *
+     * @param counts an array whose first element is the total weighted count and whose element at index {@code i} is the weighted count of solutions containing variable {@code i}
+     */
+    public WeightedCount(double[] counts) {
+        this.counts = counts.clone();
+        this.exactCounts = null;
+    }
+
+    /**
+     * Creates a new exact weighted count.
+     *
+     * @param counts an array whose first element is the total weighted count and whose element at index {@code i} is the weighted count of solutions containing variable {@code i}
+     */
+    public WeightedCount(BigDecimal[] counts) {
+        this.counts = null;
+        this.exactCounts = counts.clone();
+    }
+
+    public boolean isExact() {
+        return exactCounts != null;
+    }
+
+    public int getVariableCount() {
+        return exactCounts != null ? exactCounts.length - 1 : counts.length - 1;
+    }
+
+    public double getWeightedCount() {
+        return exactCounts != null ? exactCounts[0].doubleValue() : counts[0];
+    }
+
+    /**
+     * Returns the weighted count of solutions containing the given literal.
+     *
+     * @param literal the literal
+     * @return the weighted count
+     */
+    public double getWeightedCount(int literal) {
+        if (exactCounts != null) {
+            return getExactWeightedCount(literal).doubleValue();
+        }
+        double positive = counts[Math.abs(literal)];
+        return literal > 0 ? positive : counts[0] - positive;
+    }
+
+    /**
+     * Returns the exact weighted model count.
+     * For a count with double precision, this is the exact value of the double.
+     *
+     * @return the weighted count
+     */
+    public BigDecimal getExactWeightedCount() {
+        return exactCounts != null ? exactCounts[0] : new BigDecimal(counts[0]);
+    }
+
+    /**
+     * Returns the exact weighted count of solutions containing the given literal.
+     *
+     * @param literal the literal
+     * @return the weighted count
+     */
+    public BigDecimal getExactWeightedCount(int literal) {
+        if (exactCounts == null) {
+            return new BigDecimal(getWeightedCount(literal));
+        }
+        BigDecimal positive = exactCounts[Math.abs(literal)];
+        return literal > 0 ? positive : exactCounts[0].subtract(positive);
+    }
+
+    /**
+     * Returns the probability of the given literal, which is the weighted count of solutions containing it divided by the weighted model count.
+     *
+     * @param literal the literal
+     * @return the probability, or {@code 0} if the weighted model count is zero
+     */
+    public double getProbability(int literal) {
+        if (exactCounts != null) {
+            return getExactProbability(literal, MathContext.DECIMAL64).doubleValue();
+        }
+        return counts[0] == 0 ? 0 : getWeightedCount(literal) / counts[0];
+    }
+
+    /**
+     * Returns the probability of the given literal with the given precision.
+     *
+     * @param literal the literal
+     * @param mathContext the precision of the division
+     * @return the probability, or {@code 0} if the weighted model count is zero
+     */
+    public BigDecimal getExactProbability(int literal, MathContext mathContext) {
+        BigDecimal total = getExactWeightedCount();
+        if (total.signum() == 0) {
+            return BigDecimal.ZERO;
+        }
+        return getExactWeightedCount(literal).divide(total, mathContext);
+    }
+
+    /**
+     * Returns the probability of each variable being positive.
+     *
+     * @return an array whose element at index {@code i} is the probability of variable {@code i}, the first element is unused
+     */
+    public double[] getProbabilities() {
+        double[] probabilities = new double[getVariableCount() + 1];
+        for (int variable = 1; variable < probabilities.length; variable++) {
+            probabilities[variable] = getProbability(variable);
+        }
+        return probabilities;
+    }
+
+    @Override
+    public int hashCode() {
+        return exactCounts != null ? Arrays.hashCode(exactCounts) : Arrays.hashCode(counts);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof WeightedCount)) {
+            return false;
+        }
+        WeightedCount other = (WeightedCount) obj;
+        return Arrays.equals(counts, other.counts) && Arrays.equals(exactCounts, other.exactCounts);
+    }
+
+    @Override
+    public String toString() {
+        return exactCounts != null ? Arrays.toString(exactCounts) : Arrays.toString(counts);
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-formula-analysis-ddnnife.
+ *
+ * formula-analysis-ddnnife is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * formula-analysis-ddnnife is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with formula-analysis-ddnnife. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatJAR/formula-analysis-ddnnife> for further information.
+ */
+package de.featjar.analysis.ddnnife.solver;
+
+import de.featjar.formula.analysis.bool.BooleanClause;
+import de.featjar.formula.analysis.bool.BooleanClauseList;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Compiles a formula with multiple d4 processes in parallel (cube and conquer).
+ * The formula is split on the variables that occur in the most clauses.
+ * For a {@link Projection projected} formula, only projected variables are split, such that the cubes are also disjoint on the projection.
+ * Each cube, which is a complete assignment to these variables, conditions the formula and is compiled separately.
+ * The partial d-DNNFs are combined by a disjunction whose edges assign the literals of the respective cube.
+ * As the cubes are mutually exclusive, the disjunction is deterministic, and the result is equivalent to compiling the formula at once.
+ *
+ * @author Sebastian Krieter
+ */
+final class CubeCompiler {
+
+    private final BooleanClauseList formula;
+    private final int[] splitVariables;
+
+    /**
+     * Creates a new compiler.
+     *
+     * @param formula the formula
+     * @param cubeCount the number of cubes, which is rounded up to the next power of two
+     */
+    CubeCompiler(BooleanClauseList formula, int cubeCount) {
+        if (cubeCount < 1) {
+            throw new IllegalArgumentException(String.valueOf(cubeCount));
+        }
+        this.formula = formula;
+        int splitCount = Math.min(32 - Integer.numberOfLeadingZeros(cubeCount - 1), formula.getVariableCount());
+        splitVariables = selectSplitVariables(formula, splitCount);
+    }
+
+    private static int[] selectSplitVariables(BooleanClauseList formula, int count) {
+        int[] occurrences = new int[formula.getVariableCount() + 1];
+        for (BooleanClause clause : formula.getAll()) {
+            for (int literal : clause.get()) {
+                int variable = Math.abs(literal);
+                if (variable < occurrences.length) {
+                    occurrences[variable]++;
+                }
+            }
+        }
+        return IntStream.rangeClosed(1, formula.getVariableCount())
+                .boxed()
+                .sorted(Comparator.<Integer>comparingInt(v -> -occurrences[v]).thenComparingInt(v -> v))
+                .limit(count)
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    int[] getSplitVariables() {
+        return splitVariables;
+    }
+
+    int[] getCube(int index) {
+        int[] cube = new int[splitVariables.length];
+        for (int i = 0; i < cube.length; i++) {
+            cube[i] = ((index >>> i) & 1) == 1 ? splitVariables[i] : -splitVariables[i];
+        }
+        return cube;
+    }
+
+    /**
+     * Conditions the formula on a cube by removing satisfied clauses and falsified literals.
+     *
+     * @param cube the cube
+     * @return the conditioned formula, {@code null} if the cube falsifies a clause
+     */
+    BooleanClauseList condition(int[] cube) {
+        int variableCount = formula.getVariableCount();
+        byte[] values = new byte[variableCount + 1];
+        for (int literal : cube) {
+            values[Math.abs(literal)] = (byte) (literal > 0 ? 1 : -1);
+        }
+        BooleanClauseList conditioned = new BooleanClauseList(variableCount);
+        clauses:
+        for (BooleanClause clause : formula.getAll()) {
+            int[] remaining = new int[clause.get().length];
+            int size = 0;
+            for (int literal : clause.get()) {
+                int variable = Math.abs(literal);
+                int value = variable < values.length ? values[variable] : 0;
+                if (value == 0) {
+                    remaining[size++] = literal;
+                } else if ((value > 0) == (literal > 0)) {
+                    continue clauses;
+                }
+            }
+            if (size == 0) {
+                return null;
+            }
+            conditioned.add(new BooleanClause(Arrays.copyOf(remaining, size)));
+        }
+        return conditioned;
+    }
+
+    /**
+     * Compiles all cubes in parallel and combines their d-DNNFs.
+     *
+     * @param ddnnfFile the output file
+     * @param timeout the timeout for the whole compilation, {@link Duration#ZERO} for no timeout
+     * @throws IOException if a cube cannot be compiled or the output cannot be written
+     * @throws InterruptedException if the thread is interrupted while waiting for d4
+     * @throws TimeoutException if the compilation exceeds the timeout
+     */
+    void compile(Path ddnnfFile, Duration timeout) throws IOException, InterruptedException, TimeoutException {
+        boolean hasDeadline = !timeout.isZero() && !timeout.isNegative();
+        long deadline = hasDeadline ? System.nanoTime() + timeout.toNanos() : 0;
+        int cubeCount = 1 << splitVariables.length;
+        List<int[]> cubes = new ArrayList<>(cubeCount);
+        List<BooleanClauseList> parts = new ArrayList<>(cubeCount);
+        for (int i = 0; i < cubeCount; i++) {
+            int[] cube = getCube(i);
+            BooleanClauseList part = condition(cube);
+            if (part != null) {
+                cubes.add(cube);
+                parts.add(part);
+            }
+        }
+
+        Path directory = Files.createTempDirectory("ddnnifeCubes");
+        List<Path> partFiles = new ArrayList<>(parts.size());
+        ExecutorService threads = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(parts.size(), Runtime.getRuntime().availableProcessors())), r -> {
+                    Thread thread = new Thread(r, "d4-cube");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        try {
+            List<Future<Void>> futures = new ArrayList<>(parts.size());
+            for (int i = 0; i < parts.size(); i++) {
+                BooleanClauseList part = parts.get(i);
+                if (part.size() == 0) {
+                    partFiles.add(null);
+                    continue;
+                }
+                Path partFile = directory.resolve("cube" + i + ".nnf");
+                partFiles.add(partFile);
+                futures.add(threads.submit(() -> {
+                    Duration remaining = Duration.ZERO;
+                    if (hasDeadline) {
+                        remaining = Duration.ofNanos(deadline - System.nanoTime());
+                        if (remaining.isZero() || remaining.isNegative()) {
+                            throw new TimeoutException("d4 exceeded timeout of " + timeout);
+                        }
+                    }
+                    DdnnifeWrapper.runD4(part, partFile, remaining, IDdnnifeListener.NONE);
+                    if (!Files.isRegularFile(partFile) || Files.size(partFile) == 0) {
+                        throw new IOException("d4 did not produce a d-DNNF for cube " + partFile);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    } else if (cause instanceof TimeoutException) {
+                        throw (TimeoutException) cause;
+                    } else if (cause instanceof InterruptedException) {
+                        throw (InterruptedException) cause;
+                    }
+                    throw new IOException(cause);
+                }
+            }
+            combine(cubes, partFiles, ddnnfFile);
+        } finally {
+            threads.shutdownNow();
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    /**
+     * Writes a d-DNNF in d4 format whose root is a disjunction of the partial d-DNNFs.
+     * The nodes of each partial d-DNNF are renumbered to follow the nodes of the previous one.
+     *
+     * @param cubes the cubes
+     * @param partFiles the partial d-DNNF of each cube, {@code null} if the conditioned formula is a tautology
+     * @param ddnnfFile the output file
+     * @throws IOException if a file cannot be read or written
+     */
+    private static void combine(List<int[]> cubes, List<Path> partFiles, Path ddnnfFile) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(ddnnfFile, StandardCharsets.US_ASCII)) {
+            if (cubes.isEmpty()) {
+                out.write("f 1 0\n");
+                return;
+            }
+            out.write("o 1 0\n");
+            StringBuilder edges = new StringBuilder();
+            int offset = 1;
+            for (int i = 0; i < cubes.size(); i++) {
+                Path partFile = partFiles.get(i);
+                int root;
+                int maximumNode;
+                if (partFile == null) {
+                    root = 1;
+                    maximumNode = 1;
+                    out.write("t " + (offset + 1) + " 0\n");
+                } else {
+                    root = -1;
+                    maximumNode = 0;
+                    try (BufferedReader in = Files.newBufferedReader(partFile, StandardCharsets.US_ASCII)) {
+                        for (String line = in.readLine(); line != null; line = in.readLine()) {
+                            line = line.trim();
+                            if (line.isEmpty() || line.charAt(0) == 'c') {
+                                continue;
+                            }
+                            String[] tokens = line.split("\\s+");
+                            try {
+                                if (Character.isLetter(tokens[0].charAt(0))) {
+                                    int node = Integer.parseInt(tokens[1]);
+                                    if (root < 0) {
+                                        root = node;
+                                    }
+                                    maximumNode = Math.max(maximumNode, node);
+                                    out.write(tokens[0]);
+                                    out.write(' ');
+                                    out.write(Integer.toString(node + offset));
+                                    for (int t = 2; t < tokens.length; t++) {
+                                        out.write(' ');
+                                        out.write(tokens[t]);
+                                    }
+                                } else {
+                                    out.write(Integer.toString(Integer.parseInt(tokens[0]) + offset));
+                                    out.write(' ');
+                                    out.write(Integer.toString(Integer.parseInt(tokens[1]) + offset));
+                                    for (int t = 2; t < tokens.length; t++) {
+                                        out.write(' ');
+                                        out.write(tokens[t]);
+                                    }
+                                }
+                            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                                throw new IOException("Malformed line in " + partFile + ": " + line, e);
+                            }
+                            out.write('\n');
+                        }
+                    }
+                    if (root < 0) {
+                        throw new IOException("Empty d-DNNF in " + partFile);
+                    }
+                }
+                edges.append("1 ").append(root + offset);
+                for (int literal : cubes.get(i)) {
+                    edges.append(' ').append(literal);
+                }
+                edges.append(" 0\n");
+                offset += maximumNode;
+            }
+            out.write(edges.toString());
+        }
+    }
+}
@@ -0,0 +1,1629 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-formula-analysis-ddnnife.
+ *
+ * formula-analysis-ddnnife is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * formula-analysis-ddnnife is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with formula-analysis-ddnnife. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatJAR/formula-analysis-ddnnife> for further information.
+ */
+package de.featjar.analysis.ddnnife.solver;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Compiled d-DNNF that is evaluated within the JVM.
+ * The circuit is stored as a directed acyclic graph in primitive arrays, with nodes ordered such that each node appears after all of its children.
+ * Variables that are missing in a child of an or node are recorded per edge, such that the circuit is evaluated as if it were smooth.
+ *
+ * @author Sebastian Krieter
+ */
+public final class Ddnnf {
+
+    static final byte TRUE = 0;
+    static final byte FALSE = 1;
+    static final byte LITERAL = 2;
+    static final byte AND = 3;
+    static final byte OR = 4;
+
+    /**
+     * Number of nodes after which a {@link #cancellable() cancellable} query checks whether it was cancelled, minus one.
+     */
+    private static final int CHECK_MASK = (1 << 12) - 1;
+
+    private final int variableCount;
+    private final byte[] types;
+    private final int[] literals;
+    private final int[] childOffsets;
+    private final int[] children;
+    private final int[] gapOffsets;
+    private final int[] gapVariables;
+    private final int[] rootGap;
+
+    private final boolean cancellable;
+    private long deadline;
+    private boolean hasDeadline;
+
+    Ddnnf(
+            int variableCount,
+            byte[] types,
+            int[] literals,
+            int[] childOffsets,
+            int[] children,
+            int[] gapOffsets,
+            int[] gapVariables,
+            int[] rootGap) {
+        this.variableCount = variableCount;
+        this.types = types;
+        this.literals = literals;
+        this.childOffsets = childOffsets;
+        this.children = children;
+        this.gapOffsets = gapOffsets;
+        this.gapVariables = gapVariables;
+        this.rootGap = rootGap;
+        cancellable = false;
+    }
+
+    private Ddnnf(Ddnnf ddnnf) {
+        variableCount = ddnnf.variableCount;
+        types = ddnnf.types;
+        literals = ddnnf.literals;
+        childOffsets = ddnnf.childOffsets;
+        children = ddnnf.children;
+        gapOffsets = ddnnf.gapOffsets;
+        gapVariables = ddnnf.gapVariables;
+        rootGap = ddnnf.rootGap;
+        cancellable = true;
+    }
+
+    /**
+     * Returns a view of this d-DNNF whose queries throw a {@link CancellationException} when the thread is interrupted or the {@link #setDeadline(long) deadline} has passed.
+     * The view shares all arrays with this d-DNNF, but must only be used by one thread at a time.
+     *
+     * @return the cancellable view
+     */
+    public Ddnnf cancellable() {
+        return new Ddnnf(this);
+    }
+
+    /**
+     * Sets the deadline for subsequent queries of a {@link #cancellable() cancellable} view.
+     *
+     * @param timeout the time in nanoseconds from now until queries are cancelled, {@code 0} or less for no deadline
+     */
+    public void setDeadline(long timeout) {
+        hasDeadline = timeout > 0;
+        deadline = hasDeadline ? System.nanoTime() + timeout : 0;
+    }
+
+    /**
+     * Checks whether the deadline of this view has passed.
+     *
+     * @return {@code true} if the deadline has passed, {@code false} otherwise or if there is no deadline
+     */
+    public boolean isDeadlineExceeded() {
+        return hasDeadline && System.nanoTime() - deadline >= 0;
+    }
+
+    private void checkCancelled() {
+        if (cancellable) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("d-DNNF query was interrupted");
+            }
+            if (isDeadlineExceeded()) {
+                throw new CancellationException("d-DNNF query exceeded its deadline");
+            }
+        }
+    }
+
+    /**
+     * Reads a d-DNNF in d4 or c2d format.
+     *
+     * @param file the file
+     * @param variableCount the number of variables of the compiled formula, variables not occurring in the file are unconstrained
+     * @return the d-DNNF
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    public static Ddnnf read(Path file, int variableCount) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.US_ASCII)) {
+            return read(reader, variableCount);
+        }
+    }
+
+    /**
+     * Reads a d-DNNF in d4 or c2d format.
+     *
+     * @param reader the reader
+     * @param variableCount the number of variables of the compiled formula, variables not occurring in the input are unconstrained
+     * @return the d-DNNF
+     * @throws IOException if the input cannot be read or is malformed
+     */
+    public static Ddnnf read(Reader reader, int variableCount) throws IOException {
+        BufferedReader lineReader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        DdnnfBuilder builder = new DdnnfBuilder();
+        int root = -1;
+        int c2dIndex = 0;
+        int lineNumber = 0;
+        for (String line = lineReader.readLine(); line != null; line = lineReader.readLine()) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.charAt(0) == 'c') {
+                continue;
+            }
+            String[] tokens = line.split("\\s+");
+            try {
+                switch (tokens[0]) {
+                    case "nnf":
+                        break;
+                    case "L":
+                        builder.setType(c2dIndex++, LITERAL, Integer.parseInt(tokens[1]));
+                        break;
+                    case "A": {
+                        int node = c2dIndex++;
+                        int count = Integer.parseInt(tokens[1]);
+                        builder.setType(node, count == 0 ? TRUE : AND, 0);
+                        for (int i = 0; i < count; i++) {
+                            builder.addEdge(builder.getNode(node), builder.getNode(Integer.parseInt(tokens[2 + i])));
+                        }
+                        root = node;
+                        break;
+                    }
+                    case "O": {
+                        int node = c2dIndex++;
+                        int count = Integer.parseInt(tokens[2]);
+                        builder.setType(node, count == 0 ? FALSE : OR, 0);
+                        for (int i = 0; i < count; i++) {
+                            builder.addEdge(builder.getNode(node), builder.getNode(Integer.parseInt(tokens[3 + i])));
+                        }
+                        root = node;
+                        break;
+                    }
+                    case "o":
+                    case "a":
+                    case "t":
+                    case "f": {
+                        int node = Integer.parseInt(tokens[1]);
+                        builder.setType(node, parseD4Type(tokens[0].charAt(0)), 0);
+                        if (root < 0) {
+                            root = node;
+                        }
+                        break;
+                    }
+                    default: {
+                        int parent = Integer.parseInt(tokens[0]);
+                        int child = Integer.parseInt(tokens[1]);
+                        int last = tokens.length - 1;
+                        if (!"0".equals(tokens[last])) {
+                            throw new IOException("Missing terminating 0 in line " + lineNumber);
+                        }
+                        if (last == 2) {
+                            builder.addEdge(builder.getNode(parent), builder.getNode(child));
+                        } else {
+                            int decision = builder.addNode(AND, 0);
+                            for (int i = 2; i < last; i++) {
+                                builder.addEdge(decision, builder.getLiteralNode(Integer.parseInt(tokens[i])));
+                            }
+                            builder.addEdge(decision, builder.getNode(child));
+                            builder.addEdge(builder.getNode(parent), decision);
+                        }
+                        break;
+                    }
+                }
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new IOException("Malformed line " + lineNumber + ": " + line, e);
+            }
+        }
+        if (root < 0) {
+            throw new IOException("Empty d-DNNF");
+        }
+        return builder.build(builder.getNode(root), variableCount);
+    }
+
+    /**
+     * Reads a d-DNNF in the binary format written by {@link #writeBinary(Path)}.
+     * The checksum of the file is verified and the circuit is decoded into arrays on the heap, but it is not parsed or analyzed again.
+     * Files larger than {@link Integer#MAX_VALUE} bytes are not supported.
+     *
+     * @param file the file
+     * @return the d-DNNF
+     * @throws IOException if the file cannot be read, is malformed, or is corrupted
+     */
+    public static Ddnnf readBinary(Path file) throws IOException {
+        return DdnnfBinaryFormat.read(file);
+    }
+
+    /**
+     * Writes this d-DNNF in a compact binary format that includes the variables missing in each child of an or node.
+     *
+     * @param file the file
+     * @throws IOException if the file cannot be written
+     * @see #readBinary(Path)
+     */
+    public void writeBinary(Path file) throws IOException {
+        DdnnfBinaryFormat.write(this, file);
+    }
+
+    private static byte parseD4Type(char type) {
+        switch (type) {
+            case 'o':
+                return OR;
+            case 'a':
+                return AND;
+            case 't':
+                return TRUE;
+            default:
+                return FALSE;
+        }
+    }
+
+    public int getVariableCount() {
+        return variableCount;
+    }
+
+    public int getNodeCount() {
+        return types.length;
+    }
+
+    public int getEdgeCount() {
+        return children.length;
+    }
+
+    int getRoot() {
+        return types.length - 1;
+    }
+
+    byte[] getTypes() {
+        return types;
+    }
+
+    int[] getLiterals() {
+        return literals;
+    }
+
+    int[] getChildOffsets() {
+        return childOffsets;
+    }
+
+    int[] getChildren() {
+        return children;
+    }
+
+    int[] getGapOffsets() {
+        return gapOffsets;
+    }
+
+    int[] getGapVariables() {
+        return gapVariables;
+    }
+
+    int[] getRootGap() {
+        return rootGap;
+    }
+
+    /**
+     * Converts assumed literals into an array indexed by variable containing {@code 1} for positive, {@code -1} for negative, and {@code 0} for unassigned variables.
+     *
+     * @param assumptions the assumed literals
+     * @return the assignment or {@code null} if the assumptions are contradictory
+     */
+    byte[] toAssignment(int... assumptions) {
+        byte[] assignment = new byte[variableCount + 1];
+        for (int literal : assumptions) {
+            int variable = Math.abs(literal);
+            if (variable == 0 || variable > variableCount) {
+                throw new IllegalArgumentException("Unknown variable " + literal);
+            }
+            byte value = literal > 0 ? (byte) 1 : (byte) -1;
+            if (assignment[variable] == -value) {
+                return null;
+            }
+            assignment[variable] = value;
+        }
+        return assignment;
+    }
+
+    private static boolean isSatisfied(int literal, byte[] assignment) {
+        byte value = assignment[Math.abs(literal)];
+        return value == 0 || (value > 0) == (literal > 0);
+    }
+
+    private int countFree(int[] variables, int from, int to, byte[] assignment) {
+        int free = 0;
+        for (int i = from; i < to; i++) {
+            if (assignment[variables[i]] == 0) {
+                free++;
+            }
+        }
+        return free;
+    }
+
+    private static long shiftExact(long value, int shift) {
+        if (value == 0 || shift == 0) {
+            return value;
+        }
+        if (shift >= Long.SIZE - 1 || Long.numberOfLeadingZeros(value) <= shift) {
+            throw new ArithmeticException("long overflow");
+        }
+        return value << shift;
+    }
+
+    /**
+     * Checks whether the formula is satisfiable under the given assumptions.
+     *
+     * @param assumptions the assumed literals
+     * @return {@code true} if there is a solution, {@code false} otherwise
+     */
+    public boolean isSatisfiable(int... assumptions) {
+        byte[] assignment = toAssignment(assumptions);
+        return assignment != null && evaluate(assignment)[getRoot()];
+    }
+
+    boolean[] evaluate(byte[] assignment) {
+        boolean[] values = new boolean[types.length];
+        for (int node = 0; node < types.length; node++) {
+            if ((node & CHECK_MASK) == 0) {
+                checkCancelled();
+            }
+            switch (types[node]) {
+                case TRUE:
+                    values[node] = true;
+                    break;
+                case LITERAL:
+                    values[node] = isSatisfied(literals[node], assignment);
+                    break;
+                case AND: {
+                    boolean value = true;
+                    for (int i = childOffsets[node], end = childOffsets[node + 1]; i < end; i++) {
+                        if (!values[children[i]]) {
+                            value = false;
+                            break;
+                        }
+                    }
+                    values[node] = value;
+                    break;
+                }
+                case OR: {
+                    boolean value = false;
+                    for (int i = childOffsets[node], end = childOffsets[node + 1]; i < end; i++) {
+                        if (values[children[i]]) {
+                            value = true;
+                            break;
+                        }
+                    }
+                    values[node] = value;
+                    break;
+                }
+                default:
+                    break;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Counts the solutions of the formula under the given assumptions.
+     * The count is computed with {@code long} arithmetic and only recomputed with {@link BigInteger} if it overflows.
+     *
+     * @param assumptions the assumed literals
+     * @return the number of solutions
+     */
+    public BigInteger count(int... assumptions) {
+        byte[] assignment = toAssignment(assumptions);
+        if (assignment == null) {
+            return BigInteger.ZERO;
+        }
+        try {
+            return BigInteger.valueOf(countLong(assignment));
+        } catch (ArithmeticException e) {
+            BigInteger[] values = countBig(assignment);
+            return values[getRoot()].shiftLeft(countFree(rootGap, 0, rootGap.length, assignment));
+        }
+    }
+
+    private long countLong(byte[] assignment) {
+        long[] values = new long[types.length];
+        for (int node = 0; node < types.length; node++) {
+            if ((node & CHECK_MASK) == 0) {
+                checkCancelled();
+            }
+            switch (types[node]) {
+                case TRUE:
+                    values[node] = 1;
+                    break;
+                case LITERAL:
+                    values[node] = isSatisfied(literals[node], assignment) ? 1 : 0;
+                    break;
+                case AND: {
+                    long value = 1;
+                    for (int i = childOffsets[node], end = childOffsets[node + 1]; i < end && value != 0; i++) {
+                        value = Math.multiplyExact(value, values[children[i]]);
+                    }
+                    values[node] = value;
+                    break;
+                }
+                case OR: {
+                    long value = 0;
+                    for (int i = childOffsets[node], end = childOffsets[node + 1]; i < end; i++) {
+                        int free = countFree(gapVariables, gapOffsets[i], gapOffsets[i + 1], assignment);
+                        value = Math.addExact(value, shiftExact(values[children[i]], free));
+                    }
+                    values[node] = value;
+                    break;
+                }
+                default:
+                    break;
+            }
+        }
+        return shiftExact(values[getRoot()], countFree(rootGap, 0, rootGap.length, assignment));
+    }
+
+    BigInteger[] countBig(byte[] assignment) {
+        BigInteger[] values = new BigInteger[types.length];
+        for (int node = 0; node < types.length; node++) {
+            if ((node & CHECK_MASK) == 0) {
+                checkCancelled();
+            }
+            switch (types[node]) {
+                case TRUE:
+                    values[node] = BigInteger.ONE;
+                    break;
+                case FALSE:
+                    values[node] = BigInteger.ZERO;
+                    break;
+                case LITERAL:
+                    values[node] = isSatisfied(literals[node], assignment) ? BigInteger.ONE : BigInteger.ZERO;
+                    break;
+                case AND: {
+                    BigInteger value = BigInteger.ONE;
+                    for (int i = childOffsets[node], end = childOffsets[node + 1]; i < end && value.signum() != 0; i++) {
+                        value = value.multiply(values[children[i]]);
+                    }
+                    values[node] = value;
+                    break;
+                }
+                case OR: {
+                    BigInteger value = BigInteger.ZERO;
+                    for (int i = childOffsets[node], end = childOffsets[node + 1]; i < end; i++) {
+                        int free = countFree(gapVariables, gapOffsets[i], gapOffsets[i + 1], assignment);
+                        value = value.add(values[children[i]].shiftLeft(free));
+                    }
+                    values[node] = value;
+                    break;
+                }
+                default:
+                    break;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Counts, for each variable, the solutions in which the variable is positive under the given assumptions.
+     * All counts are computed in one upward and one downward pass over the circuit.
+     *
+     * @param assumptions the assumed literals
+     * @return an array whose first element is the total number of solutions and whose element at index {@code i} is the number of solutions containing variable {@code i}
+     */
+    public BigInteger[] countLiterals(int... assumptions) {
+        BigInteger[] counts = new BigInteger[variableCount + 1];
+        Arrays.fill(counts, BigInteger.ZERO);
+        byte[] assignment = toAssignment(assumptions);
+        if (assignment == null) {
+            return counts;
+        }
+        BigInteger[] values = countBig(assignment);
+        BigInteger[] derivatives = new BigInteger[types.length];
+        Arrays.fill(derivatives, BigInteger.ZERO);
+        int root = getRoot();
+        int rootFree = countFree(rootGap, 0, rootGap.length, assignment);
+        derivatives[root] = BigInteger.ONE.shiftLeft(rootFree);
+        counts[0] = values[root].shiftLeft(rootFree);
+        addGapCounts(counts, rootGap, 0, rootGap.length, assignment, values[root], BigInteger.ONE, rootFree);
+
+        BigInteger[] suffix = new BigInteger[0];
+        for (int node = root; node >= 0; node--) {
+            if ((node & CHECK_MASK) == 0) {
+                checkCancelled();
+            }
+            BigInteger derivative = derivatives[node];
+            if (derivative.signum() == 0) {
+                continue;
+            }
+            switch (types[node]) {
+                case LITERAL: {
+                    int literal = literals[node];
+                    if (literal > 0) {
+                        counts[literal] = counts[literal].add(derivative.multiply(values[node]));
+                    }
+                    break;
+                }
+                case AND: {
+                    int from = childOffsets[node];
+                    int to = childOffsets[node + 1];
+                    if (suffix.length < to - from + 1) {
+                        suffix = new BigInteger[to - from + 1];
+                    }
+                    suffix[to - from] = BigInteger.ONE;
+                    for (int i = to - 1; i >= from; i--) {
+                        suffix[i - from] = suffix[i - from + 1].multiply(values[children[i]]);
+                    }
+                    BigInteger prefix = derivative;
+                    for (int i = from; i < to; i++) {
+                        int child = children[i];
+                        derivatives[child] = derivatives[child].add(prefix.multiply(suffix[i - from + 1]));
+                        prefix = prefix.multiply(values[child]);
+                    }
+                    break;
+                }
+                case OR: {
+                    for (int i = childOffsets[node], end = childOffsets[node + 1]; i < end; i++) {
+                        int child = children[i];
+                        int free = countFree(gapVariables, gapOffsets[i], gapOffsets[i + 1], assignment);
+                        derivatives[child] = derivatives[child].add(derivative.shiftLeft(free));
+                        addGapCounts(
+                                counts, gapVariables, gapOffsets[i], gapOffsets[i + 1], assignment, values[child], derivative, free);
+                    }
+                    break;
+                }
+                default:
+                    break;
+            }
+        }
+        return counts;
+    }
+
+    private void addGapCounts(
+            BigInteger[] counts,
+            int[] variables,
+            int from,
+            int to,
+            byte[] assignment,
+            BigInteger value,
+            BigInteger derivative,
+            int free) {
+        if (from == to || value.signum() == 0) {
+            return;
+        }
+        BigInteger models = derivative.multiply(value);
+        BigInteger freeModels = models.shiftLeft(free - 1);
+        BigInteger fixedModels = models.shiftLeft(free);
+        for (int i = from; i < to; i++) {
+            int variable = variables[i];
+            byte assigned = assignment[variable];
+            if (assigned == 0) {
+                counts[variable] = counts[variable].add(freeModels);
+            } else if (assigned > 0) {
+                counts[variable] = counts[variable].add(fixedModels);
+            }
+        }
+    }
+
+    /**
+     * Computes the weighted model count and, for each variable, the weighted count of solutions in which the variable is positive under the given assumptions.
+     * The weight of a solution is the product of the weights of its literals.
+     * All counts are computed in one upward and one downward pass over the circuit with double precision.
+     * Values may overflow to infinity if the weights of a variable sum to more than {@code 1}, such as for unweighted counting of large formulas.
+     *
+     * @param positiveWeights the weight of each positive literal indexed by variable
+     * @param negativeWeights the weight of each negative literal indexed by variable
+     * @param assumptions the assumed literals
+     * @return an array whose first element is the total weighted count and whose element at index {@code i} is the weighted count of solutions containing variable {@code i}
+     * @see #countLiterals(int...)
+     */
+    public double[] countLiterals(double[] positiveWeights, double[] negativeWeights, int... assumptions) {
+        if (positiveWeights.length <= variableCount || negativeWeights.length <= variableCount) {
+            throw new IllegalArgumentException("Missing weights for " + variableCount + " variables");
+        }
+        double[] positive = Arrays.copyOf(positiveWeights, variableCount + 1);
+        double[] negative = Arrays.copyOf(negativeWeights, variableCount + 1);
+        for (int literal : assumptions) {
+            int variable = Math.abs(literal);
+            if (variable == 0 || variable > variableCount) {
+                throw new IllegalArgumentException("Unknown variable " + literal);
+            }
+            if (literal > 0) {
+                negative[variable] = 0;
+            } else {
+                positive[variable] = 0;
+            }
+        }
+        double[] sums = new double[variableCount + 1];
+        for (int variable = 1; variable <= variableCount; variable++) {
+            sums[variable] = positive[variable] + negative[variable];
+        }
+
+        double[] values = new double[types.length];
+        double[] factors = new double[children.length];
+        for (int node = 0; node < types.length; node++) {
+            if ((node & CHECK_MASK) == 0) {
+                checkCancelled();
+            }
+            switch (types[node]) {
+                case TRUE:
+                    values[node] = 1;
+                    break;
+                case LITERAL: {
+                    int literal = literals[node];
+                    values[node] = literal > 0 ? positive[literal] : negative[-literal];
+                    break;
+                }
+                case AND: {
+                    double value = 1;
+                    for (int i = childOffsets[node], end = childOffsets[node + 1]; i < end; i++) {
+                        value *= values[children[i]];
+                    }
+                    values[node] = value;
+                    break;
+                }
+                case OR: {
+                    double value = 0;
+                    for (int i = childOffsets[node], end = childOffsets[node + 1]; i < end; i++) {
+                        factors[i] = 1;
+                        for (int j = gapOffsets[i]; j < gapOffsets[i + 1]; j++) {
+                            factors[i] *= sums[gapVariables[j]];
+                        }
+                        value += values[children[i]] * factors[i];
+                    }
+                    values[node] = value;
+                    break;
+                }
+                default:
+                    break;
+            }
+        }
+
+        double[] counts = new double[variableCount + 1];
+        double[] derivatives = new double[types.length];
+        double[] suffix = new double[rootGap.length + 1];
+        int root = getRoot();
+        double rootFactor = 1;
+        for (int variable : rootGap) {
+            rootFactor *= sums[variable];
+        }
+        derivatives[root] = rootFactor;
+        counts[0] = values[root] * rootFactor;
+        suffix = addGapWeights(counts, rootGap, 0, rootGap.length, positive, sums, values[root], suffix);
+
+        for (int node = root; node >= 0; node--) {
+            if ((node & CHECK_MASK) == 0) {
+                checkCancelled();
+            }
+            double derivative = derivatives[node];
+            if (derivative == 0) {
+                continue;
+            }
+            switch (types[node]) {
+                case LITERAL: {
+                    int literal = literals[node];
+                    if (literal > 0) {
+                        counts[literal] += derivative * values[node];
+                    }
+                    break;
+                }
+                case AND: {
+                    int from = childOffsets[node];
+                    int to = childOffsets[node + 1];
+                    if (suffix.length < to - from + 1) {
+                        suffix = new double[to - from + 1];
+                    }
+                    suffix[to - from] = 1;
+                    for (int i = to - 1; i >= from; i--) {
+                        suffix[i - from] = suffix[i - from + 1] * values[children[i]];
+                    }
+                    double prefix = derivative;
+                    for (int i = from; i < to; i++) {
+                        int child = children[i];
+                        derivatives[child] += prefix * suffix[i - from + 1];
+                        prefix *= values[child];
+                    }
+                    break;
+                }
+                case OR: {
+                    for (int i = childOffsets[node], end = childOffsets[node + 1]; i < end; i++) {
+                        int child = children[i];
+                        derivatives[child] += derivative * factors[i];
+                        suffix = addGapWeights(
+                                counts,
+                                gapVariables,
+                                gapOffsets[i],
+                                gapOffsets[i + 1],
+                                positive,
+                                sums,
+                                derivative * values[child],
+                                suffix);
+                    }
+                    break;
+                }
+                default:
+                    break;
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Adds the weighted count of solutions in which a variable missing in a child is positive, for each such variable.
+     *
+     * @return the suffix buffer, which is enlarged if necessary
+     */
+    private static double[] addGapWeights(
+            double[] counts,
+            int[] variables,
+            int from,
+            int to,
+            double[] positive,
+            double[] sums,
+            double weight,
+            double[] suffix) {
+        if (from == to || weight == 0) {
+            return suffix;
+        }
+        if (suffix.length < to - from + 1) {
+            suffix = new double[to - from + 1];
+        }
+        suffix[to - from] = 1;
+        for (int i = to - 1; i >= from; i--) {
+            suffix[i - from] = suffix[i - from + 1] * sums[variables[i]];
+        }
+        double prefix = weight;
+        for (int i = from; i < to; i++) {
+            int variable = variables[i];
+            counts[variable] += prefix * positive[variable] * suffix[i - from + 1];
+            prefix *= sums[variable];
+        }
+        return suffix;
+    }
+
+    /**
+     * Computes the weighted model count and, for each variable, the weighted count of solutions in which the variable is positive under the given assumptions.
+     * All counts are computed exactly in one upward and one downward pass over the circuit.
+     *
+     * @param positiveWeights the weight of each positive literal indexed by variable
+     * @param negativeWeights the weight of each negative literal indexed by variable
+     * @param assumptions the assumed literals
+     * @return an array whose first element is the total weighted count and whose element at index {@code i} is the weighted count of solutions containing variable {@code i}
+     * @see #countLiterals(double[], double[], int...)
+     */
+    public BigDecimal[] countLiterals(BigDecimal[] positiveWeights, BigDecimal[] negativeWeights, int... assumptions) {
+        if (positiveWeights.length <= variableCount || negativeWeights.length <= variableCount) {
+            throw new IllegalArgumentException("Missing weights for " + variableCount + " variables");
+        }
+        BigDecimal[] positive = Arrays.copyOf(positiveWeights, variableCount + 1);
+        BigDecimal[] negative = Arrays.copyOf(negativeWeights, variableCount + 1);
+        for (int literal : assumptions) {
+            int variable = Math.abs(literal);
+            if (variable == 0 || variable > variableCount) {
+                throw new IllegalArgumentException("Unknown variable " + literal);
+            }
+            if (literal > 0) {
+                negative[variable] = BigDecimal.ZERO;
+            } else {
+                positive[variable] = BigDecimal.ZERO;
+            }
+        }
+        BigDecimal[] sums = new BigDecimal[variableCount + 1];
+        for (int variable = 1; variable <= variableCount; variable++) {
+            sums[variable] = positive[variable].add(negative[variable]);
+        }
+
+        BigDecimal[] values = new BigDecimal[types.length];
+        BigDecimal[] factors = new BigDecimal[children.length];
+        for (int node = 0; node < types.length; node++) {
+            if ((node & CHECK_MASK) == 0) {
+                checkCancelled();
+            }
+            switch (types[node]) {
+                case TRUE:
+                    values[node] = BigDecimal.ONE;
+                    break;
+                case FALSE:
+                    values[node] = BigDecimal.ZERO;
+                    break;
+                case LITERAL: {
+                    int literal = literals[node];
+                    values[node] = literal > 0 ? positive[literal] : negative[-literal];
+                    break;
+                }
+                case AND: {
+                    BigDecimal value = BigDecimal.ONE;
+                    for (int i = childOffsets[node], end = childOffsets[node + 1]; i < end && value.signum() != 0; i++) {
+                        value = value.multiply(values[children[i]]);
+                    }
+                    values[node] = value;
+                    break;
+                }
+                case OR: {
+                    BigDecimal value = BigDecimal.ZERO;
+                    for (int i = childOffsets[node], end = childOffsets[node + 1]; i < end; i++) {
+                        BigDecimal factor = BigDecimal.ONE;
+                        for (int j = gapOffsets[i]; j < gapOffsets[i + 1]; j++) {
+                            factor = factor.multiply(sums[gapVariables[j]]);
+                        }
+                        factors[i] = factor;
+                        value = value.add(values[children[i]].multiply(factor));
+                    }
+                    values[node] = value;
+                    break;
+                }
+                default:
+                    break;
+            }
+        }
+
+        BigDecimal[] counts = new BigDecimal[variableCount + 1];
+        Arrays.fill(counts, BigDecimal.ZERO);
+        BigDecimal[] derivatives = new BigDecimal[types.length];
+        Arrays.fill(derivatives, BigDecimal.ZERO);
+        BigDecimal[] suffix = new BigDecimal[rootGap.length + 1];
+        int root = getRoot();
+        BigDecimal rootFactor = BigDecimal.ONE;
+        for (int variable : rootGap) {
+            rootFactor = rootFactor.multiply(sums[variable]);
+        }
+        derivatives[root] = rootFactor;
+        counts[0] = values[root].multiply(rootFactor);
+        suffix = addGapWeights(counts, rootGap, 0, rootGap.length, positive, sums, values[root], suffix);
+
+        for (int node = root; node >= 0; node--) {
+            if ((node & CHECK_MASK) == 0) {
+                checkCancelled();
+            }
+            BigDecimal derivative = derivatives[node];
+            if (derivative.signum() == 0) {
+                continue;
+            }
+            switch (types[node]) {
+                case LITERAL: {
+                    int literal = literals[node];
+                    if (literal > 0) {
+                        counts[literal] = counts[literal].add(derivative.multiply(values[node]));
+                    }
+                    break;
+                }
+                case AND: {
+                    int from = childOffsets[node];
+                    int to = childOffsets[node + 1];
+                    if (suffix.length < to - from + 1) {
+                        suffix = new BigDecimal[to - from + 1];
+                    }
+                    suffix[to - from] = BigDecimal.ONE;
+                    for (int i = to - 1; i >= from; i--) {
+                        suffix[i - from] = suffix[i - from + 1].multiply(values[children[i]]);
+                    }
+                    BigDecimal prefix = derivative;
+                    for (int i = from; i < to; i++) {
+                        int child = children[i];
+                        derivatives[child] = derivatives[child].add(prefix.multiply(suffix[i - from + 1]));
+                        prefix = prefix.multiply(values[child]);
+                    }
+                    break;
+                }
+                case OR: {
+                    for (int i = childOffsets[node], end = childOffsets[node + 1]; i < end; i++) {
+                        int child = children[i];
+                        derivatives[child] = derivatives[child].add(derivative.multiply(factors[i]));
+                        suffix = addGapWeights(
+                                counts,
+                                gapVariables,
+                                gapOffsets[i],
+                                gapOffsets[i + 1],
+                                positive,
+                                sums,
+                                derivative.multiply(values[child]),
+                                suffix);
+                    }
+                    break;
+                }
+                default:
+                    break;
+            }
+        }
+        return counts;
+    }
+
+    private static BigDecimal[] addGapWeights(
+            BigDecimal[] counts,
+            int[] variables,
+            int from,
+            int to,
+            BigDecimal[] positive,
+            BigDecimal[] sums,
+            BigDecimal weight,
+            BigDecimal[] suffix) {
+        if (from == to || weight.signum() == 0) {
+            return suffix;
+        }
+        if (suffix.length < to - from + 1) {
+            suffix = new BigDecimal[to - from + 1];
+        }
+        suffix[to - from] = BigDecimal.ONE;
+        for (int i = to - 1; i >= from; i--) {
+            suffix[i - from] = suffix[i - from + 1].multiply(sums[variables[i]]);
+        }
+        BigDecimal prefix = weight;
+        for (int i = from; i < to; i++) {
+            int variable = variables[i];
+            counts[variable] = counts[variable].add(prefix.multiply(positive[variable]).multiply(suffix[i - from + 1]));
+            prefix = prefix.multiply(sums[variable]);
+        }
+        return suffix;
+    }
+
+    /**
+     * Computes all literals that are contained in every solution under the given assumptions.
+     *
+     * @param assumptions the assumed literals
+     * @return the core and dead literals ordered by variable, or an empty array if there is no solution
+     */
+    public int[] core(int... assumptions) {
+        BigInteger[] counts = countLiterals(assumptions);
+        BigInteger total = counts[0];
+        if (total.signum() == 0) {
+            return new int[0];
+        }
+        int[] core = new int[variableCount];
+        int size = 0;
+        for (int variable = 1; variable <= variableCount; variable++) {
+            if (counts[variable].signum() == 0) {
+                core[size++] = -variable;
+            } else if (counts[variable].equals(total)) {
+                core[size++] = variable;
+            }
+        }
+        return Arrays.copyOf(core, size);
+    }
+
+    /**
+     * Computes one solution under the given assumptions.
+     * Variables that are not constrained are assigned negatively.
+     *
+     * @param assumptions the assumed literals
+     * @return the solution as an array of literals ordered by variable, or {@code null} if there is no solution
+     */
+    public int[] getSolution(int... assumptions) {
+        byte[] assignment = toAssignment(assumptions);
+        if (assignment == null) {
+            return null;
+        }
+        boolean[] values = evaluate(assignment);
+        int root = getRoot();
+        if (!values[root]) {
+            return null;
+        }
+        int[] solution = new int[variableCount];
+        for (int variable = 1; variable <= variableCount; variable++) {
+            solution[variable - 1] = assignment[variable] > 0 ? variable : -variable;
+        }
+        boolean[] visited = new boolean[types.length];
+        int[] stack = new int[types.length];
+        int stackSize = 0;
+        stack[stackSize++] = root;
+        visited[root] = true;
+        for (int steps = 0; stackSize > 0; steps++) {
+            if ((steps & CHECK_MASK) == 0) {
+                checkCancelled();
+            }
+            int node = stack[--stackSize];
+            switch (types[node]) {
+                case LITERAL:
+                    solution[Math.abs(literals[node]) - 1] = literals[node];
+                    break;
+                case AND:
+                    for (int i = childOffsets[node], end = childOffsets[node + 1]; i < end; i++) {
+                        int child = children[i];
+                        if (!visited[child]) {
+                            visited[child] = true;
+                            stack[stackSize++] = child;
+                        }
+                    }
+                    break;
+                case OR:
+                    for (int i = childOffsets[node], end = childOffsets[node + 1]; i < end; i++) {
+                        int child = children[i];
+                        if (values[child]) {
+                            if (!visited[child]) {
+                                visited[child] = true;
+                                stack[stackSize++] = child;
+                            }
+                            break;
+                        }
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return solution;
+    }
+
+    /**
+     * Lazily enumerates all solutions under the given assumptions.
+     * Only the current solution and the choices leading to it are kept in memory, such that the enumeration can be stopped at any time.
+     *
+     * @param assumptions the assumed literals
+     * @return an iterator over solutions as arrays of literals ordered by variable
+     */
+    public Iterator<int[]> enumerate(int... assumptions) {
+        byte[] assignment = toAssignment(assumptions);
+        if (assignment == null) {
+            return Collections.emptyIterator();
+        }
+        boolean[] values = evaluate(assignment);
+        if (!values[getRoot()]) {
+            return Collections.emptyIterator();
+        }
+        return new SolutionIterator(assignment, values);
+    }
+
+    /**
+     * Enumerates the models of the circuit by keeping one enumerator per node in the current derivation.
+     * Each enumerator writes the literals of its variables into a shared solution array.
+     */
+    private final class SolutionIterator implements Iterator<int[]> {
+
+        private abstract class Enumerator {
+            /**
+             * Writes the first model of this enumerator into the solution.
+             *
+             * @return {@code true} if there is a model, {@code false} otherwise
+             */
+            abstract boolean first();
+
+            /**
+             * Writes the next model of this enumerator into the solution.
+             *
+             * @return {@code true} if there is another model, {@code false} otherwise
+             */
+            abstract boolean next();
+        }
+
+        private final class ConstantEnumerator extends Enumerator {
+            private final boolean value;
+
+            private ConstantEnumerator(boolean value) {
+                this.value = value;
+            }
+
+            @Override
+            boolean first() {
+                return value;
+            }
+
+            @Override
+            boolean next() {
+                return false;
+            }
+        }
+
+        private final class LiteralEnumerator extends Enumerator {
+            private final int literal;
+
+            private LiteralEnumerator(int literal) {
+                this.literal = literal;
+            }
+
+            @Override
+            boolean first() {
+                if (isSatisfied(literal, assignment)) {
+                    solution[Math.abs(literal) - 1] = literal;
+                    return true;
+                }
+                return false;
+            }
+
+            @Override
+            boolean next() {
+                return false;
+            }
+        }
+
+        private final class GapEnumerator extends Enumerator {
+            private final int[] free;
+
+            private GapEnumerator(int[] variables, int from, int to) {
+                int[] freeVariables = new int[to - from];
+                int size = 0;
+                for (int i = from; i < to; i++) {
+                    if (assignment[variables[i]] == 0) {
+                        freeVariables[size++] = variables[i];
+                    }
+                }
+                free = Arrays.copyOf(freeVariables, size);
+            }
+
+            @Override
+            boolean first() {
+                for (int variable : free) {
+                    solution[variable - 1] = -variable;
+                }
+                return true;
+            }
+
+            @Override
+            boolean next() {
+                for (int variable : free) {
+                    if (solution[variable - 1] < 0) {
+                        solution[variable - 1] = variable;
+                        return true;
+                    }
+                    solution[variable - 1] = -variable;
+                }
+                return false;
+            }
+        }
+
+        private final class AndEnumerator extends Enumerator {
+            private final Enumerator[] parts;
+
+            private AndEnumerator(Enumerator... parts) {
+                this.parts = parts;
+            }
+
+            @Override
+            boolean first() {
+                for (Enumerator part : parts) {
+                    if (!part.first()) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            boolean next() {
+                for (int i = parts.length - 1; i >= 0; i--) {
+                    if (parts[i].next()) {
+                        for (int j = i + 1; j < parts.length; j++) {
+                            if (!parts[j].first()) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }
+                }
+                return false;
+            }
+        }
+
+        private final class OrEnumerator extends Enumerator {
+            private final int start;
+            private final int end;
+            private int edge;
+            private Enumerator current;
+
+            private OrEnumerator(int node) {
+                start = childOffsets[node];
+                end = childOffsets[node + 1];
+                edge = start;
+            }
+
+            @Override
+            boolean first() {
+                return select(start);
+            }
+
+            @Override
+            boolean next() {
+                return current != null && (current.next() || select(edge + 1));
+            }
+
+            private boolean select(int from) {
+                for (edge = from; edge < end; edge++) {
+                    int child = children[edge];
+                    if (values[child]) {
+                        current = create(child, gapOffsets[edge], gapOffsets[edge + 1], gapVariables);
+                        if (current.first()) {
+                            return true;
+                        }
+                    }
+                }
+                current = null;
+                return false;
+            }
+        }
+
+        private final byte[] assignment;
+        private final boolean[] values;
+        private final int[] solution;
+        private final Enumerator root;
+        private boolean hasNext;
+
+        private SolutionIterator(byte[] assignment, boolean[] values) {
+            this.assignment = assignment;
+            this.values = values;
+            solution = new int[variableCount];
+            for (int variable = 1; variable <= variableCount; variable++) {
+                solution[variable - 1] = assignment[variable] > 0 ? variable : -variable;
+            }
+            root = create(getRoot(), 0, rootGap.length, rootGap);
+            hasNext = root.first();
+        }
+
+        private Enumerator create(int node, int gapFrom, int gapTo, int[] gap) {
+            Enumerator enumerator;
+            switch (types[node]) {
+                case TRUE:
+                    enumerator = new ConstantEnumerator(true);
+                    break;
+                case LITERAL:
+                    enumerator = new LiteralEnumerator(literals[node]);
+                    break;
+                case AND: {
+                    int from = childOffsets[node];
+                    Enumerator[] parts = new Enumerator[childOffsets[node + 1] - from];
+                    for (int i = 0; i < parts.length; i++) {
+                        parts[i] = create(children[from + i], 0, 0, gap);
+                    }
+                    enumerator = new AndEnumerator(parts);
+                    break;
+                }
+                case OR:
+                    enumerator = new OrEnumerator(node);
+                    break;
+                default:
+                    enumerator = new ConstantEnumerator(false);
+                    break;
+            }
+            return gapFrom == gapTo
+                    ? enumerator
+                    : new AndEnumerator(enumerator, new GapEnumerator(gap, gapFrom, gapTo));
+        }
+
+        @Override
+        public boolean hasNext() {
+            return hasNext;
+        }
+
+        @Override
+        public int[] next() {
+            if (!hasNext) {
+                throw new NoSuchElementException();
+            }
+            checkCancelled();
+            int[] next = Arrays.copyOf(solution, solution.length);
+            hasNext = root.next();
+            return next;
+        }
+    }
+
+    /**
+     * Draws solutions uniformly at random under the given assumptions.
+     * The solution counts of all nodes are computed once, after which each sample is drawn in a single top-down pass over the circuit.
+     *
+     * @param random the source of randomness
+     * @param assumptions the assumed literals
+     * @return an endless iterator over solutions as arrays of literals ordered by variable, or an empty iterator if there is no solution
+     */
+    public Iterator<int[]> sample(Random random, int... assumptions) {
+        byte[] assignment = toAssignment(assumptions);
+        if (assignment == null) {
+            return Collections.emptyIterator();
+        }
+        BigInteger[] values = countBig(assignment);
+        if (values[getRoot()].signum() == 0) {
+            return Collections.emptyIterator();
+        }
+        int[] stack = new int[children.length + 1];
+        return new Iterator<int[]>() {
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public int[] next() {
+                return sample(random, assignment, values, stack);
+            }
+        };
+    }
+
+    private int[] sample(Random random, byte[] assignment, BigInteger[] values, int[] stack) {
+        int[] solution = new int[variableCount];
+        for (int variable = 1; variable <= variableCount; variable++) {
+            if (assignment[variable] != 0) {
+                solution[variable - 1] = assignment[variable] > 0 ? variable : -variable;
+            }
+        }
+        sampleFree(random, solution, rootGap, 0, rootGap.length);
+        int stackSize = 0;
+        stack[stackSize++] = getRoot();
+        for (int steps = 0; stackSize > 0; steps++) {
+            if ((steps & CHECK_MASK) == 0) {
+                checkCancelled();
+            }
+            int node = stack[--stackSize];
+            switch (types[node]) {
+                case LITERAL:
+                    solution[Math.abs(literals[node]) - 1] = literals[node];
+                    break;
+                case AND:
+                    for (int i = childOffsets[node], end = childOffsets[node + 1]; i < end; i++) {
+                        stack[stackSize++] = children[i];
+                    }
+                    break;
+                case OR: {
+                    BigInteger remaining = randomBelow(random, values[node]);
+                    int end = childOffsets[node + 1];
+                    int selected = end - 1;
+                    for (int i = childOffsets[node]; i < end; i++) {
+                        int free = countFree(gapVariables, gapOffsets[i], gapOffsets[i + 1], assignment);
+                        BigInteger weight = values[children[i]].shiftLeft(free);
+                        if (remaining.compareTo(weight) < 0) {
+                            selected = i;
+                            break;
+                        }
+                        remaining = remaining.subtract(weight);
+                    }
+                    stack[stackSize++] = children[selected];
+                    sampleFree(random, solution, gapVariables, gapOffsets[selected], gapOffsets[selected + 1]);
+                    break;
+                }
+                default:
+                    break;
+            }
+        }
+        for (int variable = 1; variable <= variableCount; variable++) {
+            if (solution[variable - 1] == 0) {
+                solution[variable - 1] = random.nextBoolean() ? variable : -variable;
+            }
+        }
+        return solution;
+    }
+
+    private static void sampleFree(Random random, int[] solution, int[] variables, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int variable = variables[i];
+            if (solution[variable - 1] == 0) {
+                solution[variable - 1] = random.nextBoolean() ? variable : -variable;
+            }
+        }
+    }
+
+    private static BigInteger randomBelow(Random random, BigInteger bound) {
+        BigInteger value;
+        do {
+            value = new BigInteger(bound.bitLength(), random);
+        } while (value.compareTo(bound) >= 0);
+        return value;
+    }
+
+    /**
+     * Collects the nodes and edges of a d-DNNF while it is read and converts them into the topologically ordered arrays of {@link Ddnnf}.
+     */
+    private static final class DdnnfBuilder {
+        private byte[] types = new byte[1024];
+        private int[] literals = new int[1024];
+        private int nodeCount;
+
+        private int[] edgeParents = new int[1024];
+        private int[] edgeChildren = new int[1024];
+        private int edgeCount;
+
+        private int[] idToNode = new int[0];
+        private int[] literalNodes = new int[0];
+
+        /**
+         * Returns the node for an identifier used in the input, creating it if necessary.
+         *
+         * @param id the identifier
+         * @return the node
+         */
+        int getNode(int id) {
+            if (id < 0) {
+                throw new IllegalArgumentException(String.valueOf(id));
+            }
+            if (id >= idToNode.length) {
+                int oldLength = idToNode.length;
+                idToNode = Arrays.copyOf(idToNode, Math.max(id + 1, oldLength * 2));
+                Arrays.fill(idToNode, oldLength, idToNode.length, -1);
+            }
+            if (idToNode[id] < 0) {
+                idToNode[id] = addNode((byte) -1, 0);
+            }
+            return idToNode[id];
+        }
+
+        void setType(int id, byte type, int literal) {
+            int node = getNode(id);
+            types[node] = type;
+            literals[node] = literal;
+        }
+
+        int addNode(byte type, int literal) {
+            if (nodeCount == types.length) {
+                types = Arrays.copyOf(types, nodeCount * 2);
+                literals = Arrays.copyOf(literals, nodeCount * 2);
+            }
+            types[nodeCount] = type;
+            literals[nodeCount] = literal;
+            return nodeCount++;
+        }
+
+        int getLiteralNode(int literal) {
+            int index = literal > 0 ? 2 * literal : -2 * literal + 1;
+            if (index >= literalNodes.length) {
+                int oldLength = literalNodes.length;
+                literalNodes = Arrays.copyOf(literalNodes, Math.max(index + 1, oldLength * 2));
+                Arrays.fill(literalNodes, oldLength, literalNodes.length, -1);
+            }
+            if (literalNodes[index] < 0) {
+                literalNodes[index] = addNode(LITERAL, literal);
+            }
+            return literalNodes[index];
+        }
+
+        void addEdge(int parent, int child) {
+            if (edgeCount == edgeParents.length) {
+                edgeParents = Arrays.copyOf(edgeParents, edgeCount * 2);
+                edgeChildren = Arrays.copyOf(edgeChildren, edgeCount * 2);
+            }
+            edgeParents[edgeCount] = parent;
+            edgeChildren[edgeCount] = child;
+            edgeCount++;
+        }
+
+        Ddnnf build(int root, int variableCount) throws IOException {
+            int[] offsets = new int[nodeCount + 1];
+            for (int i = 0; i < edgeCount; i++) {
+                offsets[edgeParents[i] + 1]++;
+            }
+            for (int i = 0; i < nodeCount; i++) {
+                offsets[i + 1] += offsets[i];
+            }
+            int[] targets = new int[edgeCount];
+            int[] position = Arrays.copyOf(offsets, nodeCount);
+            for (int i = 0; i < edgeCount; i++) {
+                targets[position[edgeParents[i]]++] = edgeChildren[i];
+            }
+
+            // post-order traversal from the root yields a topological order with children first
+            int[] order = new int[nodeCount];
+            Arrays.fill(order, -1);
+            int orderSize = 0;
+            int[] stack = new int[nodeCount];
+            int[] next = new int[nodeCount];
+            byte[] state = new byte[nodeCount];
+            int stackSize = 0;
+            stack[stackSize++] = root;
+            next[root] = offsets[root];
+            state[root] = 1;
+            while (stackSize > 0) {
+                int node = stack[stackSize - 1];
+                if (next[node] < offsets[node + 1]) {
+                    int child = targets[next[node]++];
+                    if (state[child] == 0) {
+                        state[child] = 1;
+                        next[child] = offsets[child];
+                        stack[stackSize++] = child;
+                    } else if (state[child] == 1) {
+                        throw new IOException("d-DNNF contains a cycle");
+                    }
+                } else {
+                    stackSize--;
+                    state[node] = 2;
+                    order[node] = orderSize++;
+                }
+            }
+
+            int maxVariable = variableCount;
+            byte[] newTypes = new byte[orderSize];
+            int[] newLiterals = new int[orderSize];
+            int[] newOffsets = new int[orderSize + 1];
+            for (int node = 0; node < nodeCount; node++) {
+                int index = order[node];
+                if (index >= 0) {
+                    if (types[node] < 0) {
+                        throw new IOException("Undefined node in d-DNNF");
+                    }
+                    newTypes[index] = types[node];
+                    newLiterals[index] = literals[node];
+                    newOffsets[index + 1] = offsets[node + 1] - offsets[node];
+                    maxVariable = Math.max(maxVariable, Math.abs(literals[node]));
+                }
+            }
+            for (int i = 0; i < orderSize; i++) {
+                newOffsets[i + 1] += newOffsets[i];
+            }
+            int[] newChildren = new int[newOffsets[orderSize]];
+            for (int node = 0; node < nodeCount; node++) {
+                int index = order[node];
+                if (index >= 0) {
+                    int target = newOffsets[index];
+                    for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+                        newChildren[target++] = order[targets[i]];
+                    }
+                }
+            }
+            return computeGaps(maxVariable, newTypes, newLiterals, newOffsets, newChildren);
+        }
+
+        private static Ddnnf computeGaps(
+                int variableCount, byte[] types, int[] literals, int[] offsets, int[] children) {
+            int nodeCount = types.length;
+            int[] parentCount = new int[nodeCount];
+            for (int child : children) {
+                parentCount[child]++;
+            }
+            BitSet[] variables = new BitSet[nodeCount];
+            int[] gapOffsets = new int[children.length + 1];
+            int[] gapVariables = new int[16];
+            int gapSize = 0;
+            for (int node = 0; node < nodeCount; node++) {
+                BitSet nodeVariables = new BitSet();
+                if (types[node] == LITERAL) {
+                    nodeVariables.set(Math.abs(literals[node]));
+                }
+                for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+                    nodeVariables.or(variables[children[i]]);
+                }
+                if (types[node] == OR) {
+                    for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+                        BitSet gap = (BitSet) nodeVariables.clone();
+                        gap.andNot(variables[children[i]]);
+                        int size = gap.cardinality();
+                        if (gapSize + size > gapVariables.length) {
+                            gapVariables = Arrays.copyOf(gapVariables, Math.max(gapSize + size, gapVariables.length * 2));
+                        }
+                        for (int v = gap.nextSetBit(0); v >= 0; v = gap.nextSetBit(v + 1)) {
+                            gapVariables[gapSize++] = v;
+                        }
+                        gapOffsets[i + 1] = gapSize;
+                    }
+                } else {
+                    for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+                        gapOffsets[i + 1] = gapSize;
+                    }
+                }
+                for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+                    int child = children[i];
+                    if (--parentCount[child] == 0) {
+                        variables[child] = null;
+                    }
+                }
+                variables[node] = nodeVariables;
+            }
+            BitSet rootVariables = variables[nodeCount - 1];
+            int[] rootGap = new int[variableCount - rootVariables.cardinality()];
+            int index = 0;
+            for (int v = 1; v <= variableCount; v++) {
+                if (!rootVariables.get(v)) {
+                    rootGap[index++] = v;
+                }
+            }
+            return new Ddnnf(
+                    variableCount,
+                    types,
+                    literals,
+                    offsets,
+                    children,
+                    gapOffsets,
+                    Arrays.copyOf(gapVariables, gapSize),
+                    rootGap);
+        }
+    }
+}
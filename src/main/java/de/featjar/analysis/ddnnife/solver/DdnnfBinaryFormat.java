@@ -0,0 +1,282 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-formula-analysis-ddnnife.
+ *
+ * formula-analysis-ddnnife is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * formula-analysis-ddnnife is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with formula-analysis-ddnnife. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatJAR/formula-analysis-ddnnife> for further information.
+ */
+package de.featjar.analysis.ddnnife.solver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary serialization of a {@link Ddnnf}.
+ * A fixed header holds the variable count, the array sizes, and a CRC32 checksum of the payload.
+ * The payload stores the nodes in topological order, each followed by the distances to its children and, for or nodes, the variables missing in each child.
+ * All numbers in the payload are variable-length integers, with literals zigzag encoded and variables delta encoded.
+ * As the missing variables are stored, a d-DNNF is loaded without computing them again.
+ *
+ * @author Sebastian Krieter
+ */
+final class DdnnfBinaryFormat {
+
+    private static final int MAGIC = 0x444E4E46;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8 * Integer.BYTES;
+
+    private DdnnfBinaryFormat() {}
+
+    /**
+     * Writes a d-DNNF to a file.
+     *
+     * @param ddnnf the d-DNNF
+     * @param file the file
+     * @throws IOException if the file cannot be written
+     */
+    static void write(Ddnnf ddnnf, Path file) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            write(ddnnf, out);
+        }
+    }
+
+    /**
+     * Writes a d-DNNF to a stream.
+     *
+     * @param ddnnf the d-DNNF
+     * @param out the stream
+     * @throws IOException if the stream cannot be written
+     */
+    static void write(Ddnnf ddnnf, OutputStream out) throws IOException {
+        byte[] types = ddnnf.getTypes();
+        int[] literals = ddnnf.getLiterals();
+        int[] childOffsets = ddnnf.getChildOffsets();
+        int[] children = ddnnf.getChildren();
+        int[] gapOffsets = ddnnf.getGapOffsets();
+        int[] gapVariables = ddnnf.getGapVariables();
+        int[] rootGap = ddnnf.getRootGap();
+
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(types.length * 4 + children.length * 2);
+        for (int node = 0; node < types.length; node++) {
+            byte type = types[node];
+            payload.write(type);
+            if (type == Ddnnf.LITERAL) {
+                writeVarint(payload, (literals[node] << 1) ^ (literals[node] >> 31));
+            } else if (type == Ddnnf.AND || type == Ddnnf.OR) {
+                writeVarint(payload, childOffsets[node + 1] - childOffsets[node]);
+                for (int i = childOffsets[node]; i < childOffsets[node + 1]; i++) {
+                    writeVarint(payload, node - children[i]);
+                }
+                if (type == Ddnnf.OR) {
+                    for (int i = childOffsets[node]; i < childOffsets[node + 1]; i++) {
+                        writeVariables(payload, gapVariables, gapOffsets[i], gapOffsets[i + 1]);
+                    }
+                }
+            }
+        }
+        writeVariables(payload, rootGap, 0, rootGap.length);
+
+        byte[] data = payload.toByteArray();
+        CRC32 checksum = new CRC32();
+        checksum.update(data);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(ddnnf.getVariableCount());
+        header.putInt(types.length);
+        header.putInt(children.length);
+        header.putInt(gapVariables.length);
+        header.putInt(rootGap.length);
+        header.putInt((int) checksum.getValue());
+        out.write(header.array());
+        out.write(data);
+    }
+
+    private static void writeVariables(ByteArrayOutputStream out, int[] variables, int from, int to) {
+        writeVarint(out, to - from);
+        int previous = 0;
+        for (int i = from; i < to; i++) {
+            writeVarint(out, variables[i] - previous);
+            previous = variables[i];
+        }
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Reads a d-DNNF from a file.
+     * The file is memory mapped instead of being read into an intermediate buffer, but the circuit is decoded into arrays on the heap, such that it occupies memory of its own once it is read.
+     * Files larger than {@link Integer#MAX_VALUE} bytes are not supported.
+     *
+     * @param file the file
+     * @return the d-DNNF
+     * @throws IOException if the file cannot be read, is malformed, or its checksum does not match
+     */
+    static Ddnnf read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Invalid size of binary d-DNNF " + file + ": " + size);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return read(buffer);
+        }
+    }
+
+    /**
+     * Reads a d-DNNF from a buffer, starting at its current position.
+     *
+     * @param buffer the buffer
+     * @return the d-DNNF
+     * @throws IOException if the buffer content is malformed or its checksum does not match
+     */
+    static Ddnnf read(ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a binary d-DNNF");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported binary d-DNNF version " + version);
+            }
+            int variableCount = buffer.getInt();
+            int nodeCount = buffer.getInt();
+            int edgeCount = buffer.getInt();
+            int gapVariableCount = buffer.getInt();
+            int rootGapLength = buffer.getInt();
+            int expectedChecksum = buffer.getInt();
+            if (variableCount < 0 || nodeCount <= 0 || edgeCount < 0 || gapVariableCount < 0 || rootGapLength < 0) {
+                throw new IOException("Malformed binary d-DNNF header");
+            }
+
+            CRC32 checksum = new CRC32();
+            checksum.update(buffer.duplicate());
+            if ((int) checksum.getValue() != expectedChecksum) {
+                throw new IOException("Checksum mismatch in binary d-DNNF");
+            }
+
+            byte[] types = new byte[nodeCount];
+            int[] literals = new int[nodeCount];
+            int[] childOffsets = new int[nodeCount + 1];
+            int[] children = new int[edgeCount];
+            int[] gapOffsets = new int[edgeCount + 1];
+            int[] gapVariables = new int[gapVariableCount];
+            int edge = 0;
+            int gapSize = 0;
+            for (int node = 0; node < nodeCount; node++) {
+                byte type = buffer.get();
+                types[node] = type;
+                switch (type) {
+                    case Ddnnf.TRUE:
+                    case Ddnnf.FALSE:
+                        break;
+                    case Ddnnf.LITERAL: {
+                        int value = readVarint(buffer);
+                        int literal = (value >>> 1) ^ -(value & 1);
+                        if (literal == 0 || Math.abs(literal) > variableCount) {
+                            throw new IOException("Invalid literal " + literal + " in binary d-DNNF");
+                        }
+                        literals[node] = literal;
+                        break;
+                    }
+                    case Ddnnf.AND:
+                    case Ddnnf.OR: {
+                        int count = readVarint(buffer);
+                        if (count < 0 || count > edgeCount - edge) {
+                            throw new IOException("Invalid child count in binary d-DNNF");
+                        }
+                        int first = edge;
+                        for (int i = 0; i < count; i++) {
+                            int distance = readVarint(buffer);
+                            if (distance <= 0 || distance > node) {
+                                throw new IOException("Invalid child in binary d-DNNF");
+                            }
+                            children[edge] = node - distance;
+                            gapOffsets[++edge] = gapSize;
+                        }
+                        if (type == Ddnnf.OR) {
+                            for (int i = first; i < edge; i++) {
+                                gapSize = readVariables(buffer, gapVariables, gapSize, variableCount);
+                                gapOffsets[i + 1] = gapSize;
+                            }
+                        }
+                        break;
+                    }
+                    default:
+                        throw new IOException("Invalid node type " + type + " in binary d-DNNF");
+                }
+                childOffsets[node + 1] = edge;
+            }
+            int[] rootGap = new int[rootGapLength];
+            if (readVariables(buffer, rootGap, 0, variableCount) != rootGapLength
+                    || edge != edgeCount
+                    || gapSize != gapVariableCount
+                    || buffer.hasRemaining()) {
+                throw new IOException("Inconsistent binary d-DNNF");
+            }
+            return new Ddnnf(
+                    variableCount, types, literals, childOffsets, children, gapOffsets, gapVariables, rootGap);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated binary d-DNNF", e);
+        }
+    }
+
+    private static int readVariables(ByteBuffer buffer, int[] variables, int offset, int variableCount)
+            throws IOException {
+        int count = readVarint(buffer);
+        if (count < 0 || count > variables.length - offset) {
+            throw new IOException("Invalid variable count in binary d-DNNF");
+        }
+        int variable = 0;
+        for (int i = 0; i < count; i++) {
+            int delta = readVarint(buffer);
+            variable += delta;
+            if (delta <= 0 || variable > variableCount) {
+                throw new IOException("Invalid variable in binary d-DNNF");
+            }
+            variables[offset++] = variable;
+        }
+        return offset;
+    }
+
+    private static int readVarint(ByteBuffer buffer) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable-length integer in binary d-DNNF");
+    }
+}
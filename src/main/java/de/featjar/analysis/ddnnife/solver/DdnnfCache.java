@@ -0,0 +1,629 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-formula-analysis-ddnnife.
+ *
+ * formula-analysis-ddnnife is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * formula-analysis-ddnnife is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with formula-analysis-ddnnife. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatJAR/formula-analysis-ddnnife> for further information.
+ */
+package de.featjar.analysis.ddnnife.solver;
+
+import de.featjar.base.FeatJAR;
+import de.featjar.formula.analysis.bool.BooleanClause;
+import de.featjar.formula.analysis.bool.BooleanClauseList;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Persistent store for compiled d-DNNF files.
+ * Files are addressed by a canonical hash of a clause list and its variable count, such that an unchanged formula is only compiled once.
+ * If incremental compilation is enabled, a formula that only adds few clauses to a previously requested formula is derived from the stored d-DNNF of that formula instead of being compiled by d4.
+ * Incremental compilation is disabled unless a maximum number of delta variables is passed to {@link #DdnnfCache(Path, long, int, int)}.
+ * A derived d-DNNF is never used as the base of another derivation, such that its growth does not compound.
+ * For evaluation within the JVM, a compiled file is additionally stored in a compact binary format.
+ * When the total size of the store exceeds its limit, the least recently used files are evicted.
+ * Files that are {@link #acquire(BooleanClauseList, Duration, IDdnnifeListener) acquired} are not evicted until they are {@link #release(Path) released}.
+ * Analyses only use a cache if one is set explicitly, for instance the {@link #getDefault() default cache}.
+ *
+ * @author Sebastian Krieter
+ */
+public class DdnnfCache {
+
+    public static final long DEFAULT_MAXIMUM_SIZE = 1L << 30;
+
+    /**
+     * A reasonable maximum number of delta variables for incremental compilation.
+     * It is not used by any constructor, as incremental compilation must be enabled explicitly.
+     */
+    public static final int DEFAULT_MAXIMUM_DELTA_VARIABLES = 8;
+
+    private static final String FILE_EXTENSION = ".nnf";
+    private static final String BINARY_FILE_EXTENSION = ".bnnf";
+
+    /**
+     * Placeholder for analyses that do not cache compiled files.
+     * Such analyses compile their formula on every computation.
+     * Solvers expect {@code null} instead, and this placeholder cannot store files.
+     */
+    public static final DdnnfCache NONE = new DdnnfCache();
+
+    private static DdnnfCache defaultCache;
+
+    /**
+     * Returns a persistent cache in the system's temporary directory that can be shared by all analyses of this and other JVMs.
+     * It is only used by analyses for which it is set explicitly.
+     *
+     * @return the default cache
+     */
+    public static synchronized DdnnfCache getDefault() {
+        if (defaultCache == null) {
+            defaultCache = new DdnnfCache(
+                    Paths.get(System.getProperty("java.io.tmpdir"), "featjar-ddnnife-cache"), DEFAULT_MAXIMUM_SIZE);
+        }
+        return defaultCache;
+    }
+
+    private final Path directory;
+    private final long maximumSize;
+    private final int cubeCount;
+    private final int maximumDeltaVariables;
+
+    private final AtomicReference<BooleanClauseList> previousFormula = new AtomicReference<>();
+    private final Set<String> derivedKeys = ConcurrentHashMap.newKeySet();
+
+    private final ConcurrentHashMap<String, Object> locks = new ConcurrentHashMap<>();
+    private final HashMap<Path, Integer> leases = new HashMap<>();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong incrementalCount = new AtomicLong();
+    private final AtomicLong compileTime = new AtomicLong();
+
+    private DdnnfCache() {
+        directory = null;
+        maximumSize = 0;
+        cubeCount = 1;
+        maximumDeltaVariables = 0;
+    }
+
+    /**
+     * Creates a new cache.
+     *
+     * @param directory the directory in which compiled files are stored
+     * @param maximumSize the maximum total size of all stored files in bytes
+     */
+    public DdnnfCache(Path directory, long maximumSize) {
+        this(directory, maximumSize, 1);
+    }
+
+    /**
+     * Creates a new cache that compiles formulas by splitting them into cubes that are compiled in parallel.
+     *
+     * @param directory the directory in which compiled files are stored
+     * @param maximumSize the maximum total size of all stored files in bytes
+     * @param cubeCount the number of cubes per formula, {@code 1} for a single d4 process
+     * @see DdnnifeWrapper#compile(BooleanClauseList, Path, int, Duration, IDdnnifeListener)
+     */
+    public DdnnfCache(Path directory, long maximumSize, int cubeCount) {
+        this(directory, maximumSize, cubeCount, 0);
+    }
+
+    /**
+     * Creates a new cache that compiles formulas incrementally if they extend a previously requested formula.
+     *
+     * @param directory the directory in which compiled files are stored
+     * @param maximumSize the maximum total size of all stored files in bytes
+     * @param cubeCount the number of cubes per formula, {@code 1} for a single d4 process
+     * @param maximumDeltaVariables the maximum number of variables in added clauses for which the previous d-DNNF is reused, {@code 0} to disable incremental compilation
+     * @see DdnnifeWrapper#compileIncrementally(BooleanClauseList, Path, BooleanClauseList, Path, int, IDdnnifeListener)
+     */
+    public DdnnfCache(Path directory, long maximumSize, int cubeCount, int maximumDeltaVariables) {
+        if (maximumSize < 0) {
+            throw new IllegalArgumentException(String.valueOf(maximumSize));
+        }
+        if (cubeCount < 1) {
+            throw new IllegalArgumentException(String.valueOf(cubeCount));
+        }
+        if (maximumDeltaVariables < 0) {
+            throw new IllegalArgumentException(String.valueOf(maximumDeltaVariables));
+        }
+        this.directory = directory;
+        this.maximumSize = maximumSize;
+        this.cubeCount = cubeCount;
+        this.maximumDeltaVariables = maximumDeltaVariables;
+    }
+
+    /**
+     * Computes the key of a formula.
+     * The key does not depend on the order of clauses or of literals within clauses.
+     *
+     * @param formula the formula
+     * @return a hexadecimal hash string
+     */
+    public static String computeKey(BooleanClauseList formula) {
+        List<int[]> clauses = new ArrayList<>(formula.size());
+        for (BooleanClause clause : formula.getAll()) {
+            int[] literals = Arrays.copyOf(clause.get(), clause.get().length);
+            Arrays.sort(literals);
+            clauses.add(literals);
+        }
+        clauses.sort(Arrays::compare);
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        buffer.putInt(formula.getVariableCount());
+        buffer.putInt(clauses.size());
+        for (int[] literals : clauses) {
+            if (buffer.remaining() < Integer.BYTES) {
+                flush(digest, buffer);
+            }
+            buffer.putInt(literals.length);
+            for (int literal : literals) {
+                if (buffer.remaining() < Integer.BYTES) {
+                    flush(digest, buffer);
+                }
+                buffer.putInt(literal);
+            }
+        }
+        flush(digest, buffer);
+
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private static void flush(MessageDigest digest, ByteBuffer buffer) {
+        buffer.flip();
+        digest.update(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Returns the compiled d-DNNF file for the given formula.
+     * If the store contains no such file, the formula is compiled first.
+     *
+     * @param formula the formula
+     * @return the path to the compiled file
+     * @throws IOException if the file cannot be read, written, or compiled
+     * @throws InterruptedException if the thread is interrupted during compilation
+     */
+    public Path get(BooleanClauseList formula) throws IOException, InterruptedException {
+        try {
+            return get(formula, Duration.ZERO);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the compiled d-DNNF file for the given formula.
+     * If the store contains no such file, the formula is compiled first.
+     *
+     * @param formula the formula
+     * @param compileTimeout the timeout for compiling the formula, {@link Duration#ZERO} for no timeout
+     * @return the path to the compiled file
+     * @throws IOException if the file cannot be read, written, or compiled
+     * @throws InterruptedException if the thread is interrupted during compilation
+     * @throws TimeoutException if the compilation exceeds the timeout
+     */
+    public Path get(BooleanClauseList formula, Duration compileTimeout)
+            throws IOException, InterruptedException, TimeoutException {
+        return get(formula, compileTimeout, IDdnnifeListener.NONE);
+    }
+
+    /**
+     * Returns the compiled d-DNNF file for the given formula.
+     * If the store contains no such file, the formula is compiled first and the compilation is reported to the given listener.
+     *
+     * @param formula the formula
+     * @param compileTimeout the timeout for compiling the formula, {@link Duration#ZERO} for no timeout
+     * @param listener the listener for compilation measurements
+     * @return the path to the compiled file
+     * @throws IOException if the file cannot be read, written, or compiled
+     * @throws InterruptedException if the thread is interrupted during compilation
+     * @throws TimeoutException if the compilation exceeds the timeout
+     */
+    public Path get(BooleanClauseList formula, Duration compileTimeout, IDdnnifeListener listener)
+            throws IOException, InterruptedException, TimeoutException {
+        return get(formula, previousFormula.get(), compileTimeout, listener);
+    }
+
+    /**
+     * Returns the compiled d-DNNF file for the given formula.
+     * If the store contains no such file, but a file for the given previous formula, and incremental compilation is enabled, the new file is derived from the previous one if the formula only adds few clauses.
+     * A file that was derived itself is not used as the base of a derivation.
+     * Otherwise, the formula is compiled first.
+     *
+     * @param formula the formula
+     * @param previousFormula a previous version of the formula, may be {@code null}
+     * @param compileTimeout the timeout for compiling the formula, {@link Duration#ZERO} for no timeout
+     * @param listener the listener for compilation measurements
+     * @return the path to the compiled file
+     * @throws IOException if the file cannot be read, written, or compiled
+     * @throws InterruptedException if the thread is interrupted during compilation
+     * @throws TimeoutException if the compilation exceeds the timeout
+     */
+    public Path get(
+            BooleanClauseList formula,
+            BooleanClauseList previousFormula,
+            Duration compileTimeout,
+            IDdnnifeListener listener)
+            throws IOException, InterruptedException, TimeoutException {
+        return get(computeKey(formula), formula, previousFormula, compileTimeout, listener, false);
+    }
+
+    /**
+     * Returns the compiled d-DNNF file for the given formula and prevents its eviction until it is {@link #release(Path) released}.
+     * A file returned by {@link #get(BooleanClauseList, Duration, IDdnnifeListener)} may be evicted as soon as another formula is compiled, so this method must be used if the file is opened later, for instance by a ddnnife process.
+     * Only eviction by this cache is prevented, not by other caches for the same directory.
+     *
+     * @param formula the formula
+     * @param compileTimeout the timeout for compiling the formula, {@link Duration#ZERO} for no timeout
+     * @param listener the listener for compilation measurements
+     * @return the path to the compiled file
+     * @throws IOException if the file cannot be read, written, or compiled
+     * @throws InterruptedException if the thread is interrupted during compilation
+     * @throws TimeoutException if the compilation exceeds the timeout
+     */
+    public Path acquire(BooleanClauseList formula, Duration compileTimeout, IDdnnifeListener listener)
+            throws IOException, InterruptedException, TimeoutException {
+        return get(computeKey(formula), formula, previousFormula.get(), compileTimeout, listener, true);
+    }
+
+    private Path get(
+            String key,
+            BooleanClauseList formula,
+            BooleanClauseList previousFormula,
+            Duration compileTimeout,
+            IDdnnifeListener listener,
+            boolean acquire)
+            throws IOException, InterruptedException, TimeoutException {
+        checkEnabled();
+        Path file = directory.resolve(key + FILE_EXTENSION);
+        if (acquire) {
+            lease(file);
+        }
+        boolean success = false;
+        Object lock = locks.computeIfAbsent(key, k -> new Object());
+        synchronized (lock) {
+            try {
+                compileIfAbsent(key, file, formula, previousFormula, compileTimeout, listener);
+                success = true;
+                return file;
+            } finally {
+                locks.remove(key, lock);
+                if (acquire && !success) {
+                    release(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the compiled d-DNNF file for the given formula in the binary format of {@link Ddnnf#writeBinary(Path)}.
+     * If the store contains no such file, it is converted from the d4 file, which is compiled first if necessary.
+     * Both files are kept, as the binary file is only read within the JVM.
+     *
+     * @param formula the formula
+     * @param compileTimeout the timeout for compiling the formula, {@link Duration#ZERO} for no timeout
+     * @param listener the listener for compilation measurements
+     * @return the path to the binary file
+     * @throws IOException if a file cannot be read, written, or compiled
+     * @throws InterruptedException if the thread is interrupted during compilation
+     * @throws TimeoutException if the compilation exceeds the timeout
+     * @see Ddnnf#readBinary(Path)
+     */
+    public Path getBinary(BooleanClauseList formula, Duration compileTimeout, IDdnnifeListener listener)
+            throws IOException, InterruptedException, TimeoutException {
+        return getBinary(computeKey(formula), formula, compileTimeout, listener, false);
+    }
+
+    /**
+     * Returns the compiled d-DNNF file for the given formula in binary format and prevents its eviction until it is {@link #release(Path) released}.
+     *
+     * @param formula the formula
+     * @param compileTimeout the timeout for compiling the formula, {@link Duration#ZERO} for no timeout
+     * @param listener the listener for compilation measurements
+     * @return the path to the binary file
+     * @throws IOException if a file cannot be read, written, or compiled
+     * @throws InterruptedException if the thread is interrupted during compilation
+     * @throws TimeoutException if the compilation exceeds the timeout
+     * @see #getBinary(BooleanClauseList, Duration, IDdnnifeListener)
+     */
+    public Path acquireBinary(BooleanClauseList formula, Duration compileTimeout, IDdnnifeListener listener)
+            throws IOException, InterruptedException, TimeoutException {
+        return getBinary(computeKey(formula), formula, compileTimeout, listener, true);
+    }
+
+    private Path getBinary(
+            String key, BooleanClauseList formula, Duration compileTimeout, IDdnnifeListener listener, boolean acquire)
+            throws IOException, InterruptedException, TimeoutException {
+        checkEnabled();
+        Path binaryFile = directory.resolve(key + BINARY_FILE_EXTENSION);
+        if (acquire) {
+            lease(binaryFile);
+        }
+        boolean success = false;
+        Object lock = locks.computeIfAbsent(key, k -> new Object());
+        synchronized (lock) {
+            try {
+                if (Files.isRegularFile(binaryFile)) {
+                    setPreviousFormula(key, formula);
+                    hitCount.incrementAndGet();
+                    FeatJAR.log().debug("binary d-DNNF cache hit for %s", key);
+                    Files.setLastModifiedTime(binaryFile, FileTime.fromMillis(System.currentTimeMillis()));
+                    success = true;
+                    return binaryFile;
+                }
+                Path file = directory.resolve(key + FILE_EXTENSION);
+                compileIfAbsent(key, file, formula, previousFormula.get(), compileTimeout, listener);
+                Path tempFile = Files.createTempFile(directory, key, ".tmp");
+                try {
+                    Ddnnf.read(file, formula.getVariableCount()).writeBinary(tempFile);
+                    Files.move(
+                            tempFile, binaryFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } finally {
+                    Files.deleteIfExists(tempFile);
+                }
+                evict(file, binaryFile);
+                success = true;
+                return binaryFile;
+            } finally {
+                locks.remove(key, lock);
+                if (acquire && !success) {
+                    release(binaryFile);
+                }
+            }
+        }
+    }
+
+    /**
+     * Releases a file that was acquired from this cache, such that it may be evicted again once it is no longer acquired by anyone.
+     *
+     * @param file the file returned by {@link #acquire(BooleanClauseList, Duration, IDdnnifeListener)} or {@link #acquireBinary(BooleanClauseList, Duration, IDdnnifeListener)}
+     */
+    public void release(Path file) {
+        synchronized (leases) {
+            leases.computeIfPresent(file, (f, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    private void lease(Path file) {
+        synchronized (leases) {
+            leases.merge(file, 1, Integer::sum);
+        }
+    }
+
+    private void checkEnabled() {
+        if (directory == null) {
+            throw new IllegalStateException("caching is disabled");
+        }
+    }
+
+    private void compileIfAbsent(
+            String key,
+            Path file,
+            BooleanClauseList formula,
+            BooleanClauseList previousFormula,
+            Duration compileTimeout,
+            IDdnnifeListener listener)
+            throws IOException, InterruptedException, TimeoutException {
+        if (Files.isRegularFile(file)) {
+            setPreviousFormula(key, formula);
+            hitCount.incrementAndGet();
+            FeatJAR.log().debug("d-DNNF cache hit for %s", key);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return;
+        }
+        missCount.incrementAndGet();
+        FeatJAR.log().debug("d-DNNF cache miss for %s", key);
+        Files.createDirectories(directory);
+        Path tempFile = Files.createTempFile(directory, key, ".tmp");
+        try {
+            long start = System.nanoTime();
+            boolean derived = compileIncrementally(formula, previousFormula, tempFile, listener);
+            if (derived) {
+                incrementalCount.incrementAndGet();
+                FeatJAR.log().debug("derived d-DNNF for %s from previous formula", key);
+            } else {
+                DdnnifeWrapper.compile(formula, tempFile, cubeCount, compileTimeout, listener);
+            }
+            compileTime.addAndGet(System.nanoTime() - start);
+            if (derived) {
+                derivedKeys.add(key);
+            } else {
+                derivedKeys.remove(key);
+            }
+            Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            setPreviousFormula(key, formula);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        evict(file);
+    }
+
+    /**
+     * Remembers a formula as the base for deriving the next formula, unless its d-DNNF was derived itself.
+     */
+    private void setPreviousFormula(String key, BooleanClauseList formula) {
+        if (!derivedKeys.contains(key)) {
+            previousFormula.set(formula);
+        }
+    }
+
+    private boolean compileIncrementally(
+            BooleanClauseList formula, BooleanClauseList previousFormula, Path ddnnfFile, IDdnnifeListener listener) {
+        if (maximumDeltaVariables == 0 || previousFormula == null || previousFormula == formula) {
+            return false;
+        }
+        String previousKey = computeKey(previousFormula);
+        if (derivedKeys.contains(previousKey)) {
+            return false;
+        }
+        Path previousFile = directory.resolve(previousKey + FILE_EXTENSION);
+        if (!Files.isRegularFile(previousFile)) {
+            return false;
+        }
+        try {
+            return DdnnifeWrapper.compileIncrementally(
+                    previousFormula, previousFile, formula, ddnnfFile, maximumDeltaVariables, listener);
+        } catch (IOException e) {
+            // previous file was evicted concurrently or is malformed
+            FeatJAR.log().debug("incremental compilation failed: %s", e.getMessage());
+            return false;
+        }
+    }
+
+    private void evict(Path... keep) throws IOException {
+        List<Path> kept = Arrays.asList(keep);
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.filter(DdnnfCache::isCacheFile).collect(Collectors.toList());
+        }
+        long totalSize = 0;
+        List<Path> candidates = new ArrayList<>(files.size());
+        for (Path file : files) {
+            try {
+                totalSize += Files.size(file);
+                if (!kept.contains(file)) {
+                    candidates.add(file);
+                }
+            } catch (IOException e) {
+                // file was removed concurrently
+            }
+        }
+        if (totalSize > maximumSize) {
+            candidates.sort(Comparator.comparing(DdnnfCache::getLastModifiedTime));
+            for (Path file : candidates) {
+                if (totalSize <= maximumSize) {
+                    break;
+                }
+                try {
+                    long size = Files.size(file);
+                    // acquired files may not have been opened yet
+                    synchronized (leases) {
+                        if (!leases.containsKey(file) && Files.deleteIfExists(file)) {
+                            totalSize -= size;
+                            FeatJAR.log().debug("evicted %s from d-DNNF cache", file);
+                        }
+                    }
+                } catch (IOException e) {
+                    FeatJAR.log().error(e);
+                }
+            }
+        }
+    }
+
+    private static boolean isCacheFile(Path file) {
+        String name = file.getFileName().toString();
+        return name.endsWith(FILE_EXTENSION) || name.endsWith(BINARY_FILE_EXTENSION);
+    }
+
+    private static FileTime getLastModifiedTime(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /**
+     * Removes all compiled files from this store.
+     *
+     * @throws IOException if a file cannot be deleted
+     */
+    public void clear() throws IOException {
+        if (directory != null && Files.isDirectory(directory)) {
+            try (Stream<Path> stream = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) stream::iterator) {
+                    if (isCacheFile(file)) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+        }
+        derivedKeys.clear();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public int getCubeCount() {
+        return cubeCount;
+    }
+
+    public int getMaximumDeltaVariables() {
+        return maximumDeltaVariables;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Returns the number of cache misses that were answered by deriving the d-DNNF from a previous formula instead of calling d4.
+     *
+     * @return the incremental compilation count
+     */
+    public long getIncrementalCount() {
+        return incrementalCount.get();
+    }
+
+    /**
+     * Returns the total time spent compiling formulas on cache misses.
+     *
+     * @return the compile time
+     */
+    public Duration getCompileTime() {
+        return Duration.ofNanos(compileTime.get());
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-formula-analysis-ddnnife.
+ *
+ * formula-analysis-ddnnife is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * formula-analysis-ddnnife is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with formula-analysis-ddnnife. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatJAR/formula-analysis-ddnnife> for further information.
+ */
+package de.featjar.analysis.ddnnife.solver;
+
+import de.featjar.base.FeatJAR;
+import de.featjar.base.data.Result;
+import de.featjar.formula.analysis.bool.ABooleanAssignment;
+import de.featjar.formula.analysis.bool.BooleanAssignment;
+import de.featjar.formula.analysis.bool.BooleanSolution;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Answers queries on a {@link Ddnnf} within the JVM, without starting a ddnnife process.
+ * Queries are cancelled when the thread is interrupted or the {@link #getTimeout() timeout} is exceeded.
+ * The timeout applies to each query, to each batch as a whole, and to each solution drawn from an iterator.
+ *
+ * @author Sebastian Krieter
+ */
+public class DdnnfSolver implements IDdnnfSolver {
+
+    protected Duration timeout = Duration.ZERO;
+
+    private volatile boolean timeoutOccurred;
+
+    private final Ddnnf ddnnf;
+
+    private final Ddnnf view;
+
+    private ABooleanAssignment assumptions;
+
+    public DdnnfSolver(Ddnnf ddnnf) {
+        this.ddnnf = Objects.requireNonNull(ddnnf);
+        view = ddnnf.cancellable();
+    }
+
+    public Ddnnf getDdnnf() {
+        return ddnnf;
+    }
+
+    @Override
+    public Result<Boolean> hasSolution() {
+        return compute(null, view::isSatisfiable);
+    }
+
+    @Override
+    public Result<BooleanSolution> getSolution() {
+        return compute(null, view::getSolution).flatMap(s -> s == null
+                ? Result.empty(new Exception("Formula has no solution!"))
+                : Result.of(new BooleanSolution(s)));
+    }
+
+    @Override
+    public Result<BigInteger> countSolutions() {
+        return compute(null, view::count);
+    }
+
+    @Override
+    public Result<BooleanAssignment> core() {
+        return compute(null, view::core).map(BooleanAssignment::new);
+    }
+
+    @Override
+    public List<Result<Boolean>> hasSolution(List<? extends ABooleanAssignment> assignments) {
+        return computeBatch(assignments, view::isSatisfiable);
+    }
+
+    @Override
+    public List<Result<BigInteger>> countSolutions(List<? extends ABooleanAssignment> assignments) {
+        return computeBatch(assignments, view::count);
+    }
+
+    @Override
+    public List<Result<BooleanAssignment>> core(List<? extends ABooleanAssignment> assignments) {
+        List<Result<BooleanAssignment>> results = new ArrayList<>(assignments.size());
+        for (Result<int[]> result : computeBatch(assignments, view::core)) {
+            results.add(result.map(BooleanAssignment::new));
+        }
+        return results;
+    }
+
+    @Override
+    public Result<BigInteger[]> countLiterals() {
+        return compute(null, view::countLiterals);
+    }
+
+    @Override
+    public Iterator<BooleanSolution> enumerateSolutions(int chunkSize) {
+        return toSolutions(
+                iterate("Enumeration", () -> view.enumerate(getAssumedLiterals(null))), "Enumeration");
+    }
+
+    @Override
+    public Iterator<BooleanSolution> sampleUniform(long seed, int chunkSize) {
+        return toSolutions(
+                iterate("Sampling", () -> view.sample(new Random(seed), getAssumedLiterals(null))), "Sampling");
+    }
+
+    private Iterator<BooleanSolution> toSolutions(Iterator<int[]> iterator, String operation) {
+        return new Iterator<BooleanSolution>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public BooleanSolution next() {
+                return new BooleanSolution(iterate(operation, iterator::next));
+            }
+        };
+    }
+
+    private <T> T iterate(String operation, Supplier<T> step) {
+        start();
+        try {
+            return step.get();
+        } catch (CancellationException e) {
+            throw new IllegalStateException(operation + " failed", cancelled());
+        }
+    }
+
+    private <T> List<Result<T>> computeBatch(
+            List<? extends ABooleanAssignment> assignments, Function<int[], T> query) {
+        start();
+        List<Result<T>> results = new ArrayList<>(assignments.size());
+        try {
+            for (ABooleanAssignment assignment : assignments) {
+                results.add(apply(assignment, query));
+            }
+        } catch (CancellationException e) {
+            Result<T> cancelled = Result.empty(cancelled());
+            while (results.size() < assignments.size()) {
+                results.add(cancelled);
+            }
+        }
+        return results;
+    }
+
+    private <T> Result<T> compute(ABooleanAssignment assignment, Function<int[], T> query) {
+        start();
+        try {
+            return apply(assignment, query);
+        } catch (CancellationException e) {
+            return Result.empty(cancelled());
+        }
+    }
+
+    private <T> Result<T> apply(ABooleanAssignment assignment, Function<int[], T> query) {
+        try {
+            return Result.of(query.apply(getAssumedLiterals(assignment)));
+        } catch (CancellationException e) {
+            throw e;
+        } catch (Exception e) {
+            return Result.empty(e);
+        }
+    }
+
+    private void start() {
+        timeoutOccurred = false;
+        view.setDeadline(timeout.isNegative() ? 0 : timeout.toNanos());
+    }
+
+    private Exception cancelled() {
+        if (view.isDeadlineExceeded()) {
+            timeoutOccurred = true;
+            return new TimeoutException("d-DNNF query exceeded timeout of " + timeout);
+        } else {
+            return new InterruptedException("d-DNNF query was cancelled");
+        }
+    }
+
+    /**
+     * Returns the {@link #getAssumptions() assumptions} of this solver combined with the given additional assignment.
+     *
+     * @param assignment the additional assumptions, may be {@code null}
+     * @return the assumed literals
+     */
+    protected int[] getAssumedLiterals(ABooleanAssignment assignment) {
+        int[] assumed = assumptions == null ? new int[0] : assumptions.get();
+        if (assignment == null || assignment.isEmpty()) {
+            return assumed;
+        }
+        int[] additional = assignment.get();
+        int[] literals = Arrays.copyOf(assumed, assumed.length + additional.length);
+        System.arraycopy(additional, 0, literals, assumed.length, additional.length);
+        return literals;
+    }
+
+    @Override
+    public int getVariableCount() {
+        return ddnnf.getVariableCount();
+    }
+
+    @Override
+    public ABooleanAssignment getAssumptions() {
+        return assumptions;
+    }
+
+    @Override
+    public void setAssumptions(ABooleanAssignment assumptions) {
+        this.assumptions = assumptions;
+    }
+
+    @Override
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    @Override
+    public void setTimeout(Duration timeout) {
+        Objects.requireNonNull(timeout);
+        FeatJAR.log().debug("setting timeout to " + timeout);
+        this.timeout = timeout;
+    }
+
+    @Override
+    public boolean isTimeoutOccurred() {
+        return timeoutOccurred;
+    }
+
+    @Override
+    public void close() {}
+}
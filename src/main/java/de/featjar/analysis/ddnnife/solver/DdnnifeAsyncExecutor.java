@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-formula-analysis-ddnnife.
+ *
+ * formula-analysis-ddnnife is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * formula-analysis-ddnnife is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with formula-analysis-ddnnife. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatJAR/formula-analysis-ddnnife> for further information.
+ */
+package de.featjar.analysis.ddnnife.solver;
+
+import de.featjar.base.computation.IComputation;
+import de.featjar.base.data.Result;
+import de.featjar.formula.analysis.bool.BooleanClauseList;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Compiles formulas and starts ddnnife processes without blocking the calling thread.
+ * All work runs on a given executor, which may be a thread pool or, on Java 21 and later, an executor that creates a virtual thread per task.
+ * At most a given number of compilations run at the same time; further compilations are queued until a running one is done.
+ * Starting processes and querying them is not limited, such that a formula can be compiled while another one is queried.
+ *
+ * @author Sebastian Krieter
+ */
+public class DdnnifeAsyncExecutor {
+
+    private final class Compilation<T> implements Runnable {
+
+        private final Callable<T> task;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private Compilation(Callable<T> task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            try {
+                future.complete(task.call());
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            } finally {
+                startNext();
+            }
+        }
+    }
+
+    private final Executor executor;
+    private final int compileLimit;
+    private final DdnnfCache cache;
+    private final DdnnifeWrapperPool pool;
+    private final Duration compileTimeout;
+    private final IDdnnifeListener listener;
+
+    private final ArrayDeque<Compilation<?>> pendingCompilations = new ArrayDeque<>();
+    private int runningCompilations;
+
+    /**
+     * Creates a new executor that neither caches compiled files nor pools processes.
+     *
+     * @param executor the executor that runs compilations, processes, and queries
+     * @param compileLimit the maximum number of concurrent compilations
+     */
+    public DdnnifeAsyncExecutor(Executor executor, int compileLimit) {
+        this(executor, compileLimit, null, DdnnifeWrapperPool.NONE, Duration.ZERO);
+    }
+
+    /**
+     * Creates a new executor.
+     *
+     * @param executor the executor that runs compilations, processes, and queries
+     * @param compileLimit the maximum number of concurrent compilations
+     * @param cache the cache of compiled d-DNNF files, may be {@code null}
+     * @param pool the pool from which solvers are leased
+     * @param compileTimeout the timeout for compiling a formula, {@link Duration#ZERO} for no timeout
+     */
+    public DdnnifeAsyncExecutor(
+            Executor executor, int compileLimit, DdnnfCache cache, DdnnifeWrapperPool pool, Duration compileTimeout) {
+        this(executor, compileLimit, cache, pool, compileTimeout, IDdnnifeListener.NONE);
+    }
+
+    /**
+     * Creates a new executor that reports measurements of all its solvers to a listener.
+     *
+     * @param executor the executor that runs compilations, processes, and queries
+     * @param compileLimit the maximum number of concurrent compilations
+     * @param cache the cache of compiled d-DNNF files, may be {@code null}
+     * @param pool the pool from which solvers are leased
+     * @param compileTimeout the timeout for compiling a formula, {@link Duration#ZERO} for no timeout
+     * @param listener the listener for compilation, process, and query measurements
+     */
+    public DdnnifeAsyncExecutor(
+            Executor executor,
+            int compileLimit,
+            DdnnfCache cache,
+            DdnnifeWrapperPool pool,
+            Duration compileTimeout,
+            IDdnnifeListener listener) {
+        if (compileLimit < 1) {
+            throw new IllegalArgumentException(String.valueOf(compileLimit));
+        }
+        this.executor = Objects.requireNonNull(executor);
+        this.compileLimit = compileLimit;
+        this.cache = cache;
+        this.pool = Objects.requireNonNull(pool);
+        this.compileTimeout = Objects.requireNonNull(compileTimeout);
+        this.listener = Objects.requireNonNull(listener);
+    }
+
+    /**
+     * Compiles a formula into the cache of this executor, unless it is already cached.
+     *
+     * @param formula the formula
+     * @return the future path to the compiled d-DNNF file
+     * @throws IllegalStateException if this executor has no cache
+     */
+    public CompletableFuture<Path> compile(BooleanClauseList formula) {
+        if (cache == null) {
+            throw new IllegalStateException("no cache");
+        }
+        return submitCompilation(() -> cache.get(formula, compileTimeout, listener));
+    }
+
+    /**
+     * Compiles a formula if necessary and starts a solver for it.
+     * The solver must be closed by the caller.
+     *
+     * @param formula the formula
+     * @return the future solver with an empty assumption
+     */
+    public CompletableFuture<DdnnifeWrapper> open(BooleanClauseList formula) {
+        if (cache == null) {
+            return submitCompilation(() -> lease(formula));
+        }
+        return compile(formula).thenApplyAsync(file -> {
+            try {
+                return lease(formula);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Compiles a formula if necessary, starts a solver for it, and applies a query to the solver.
+     * The solver is closed after the query.
+     *
+     * @param <T> the type of the result
+     * @param formula the formula
+     * @param query the query
+     * @return the future result of the query
+     */
+    public <T> CompletableFuture<T> query(
+            BooleanClauseList formula, Function<? super DdnnifeWrapper, ? extends T> query) {
+        return open(formula).thenApplyAsync(solver -> {
+            try (solver) {
+                return query.apply(solver);
+            }
+        }, executor);
+    }
+
+    /**
+     * Computes the result of an analysis.
+     * As analyses compile their formula on demand, they count towards the compilation limit.
+     *
+     * @param <T> the type of the result
+     * @param computation the analysis
+     * @return the future result of the analysis
+     */
+    public <T> CompletableFuture<Result<T>> computeResult(IComputation<T> computation) {
+        return submitCompilation(computation::computeResult);
+    }
+
+    private DdnnifeWrapper lease(BooleanClauseList formula) throws InterruptedException, TimeoutException {
+        DdnnifeWrapper solver = pool.lease(formula, cache, compileTimeout, listener);
+        if (!solver.isAlive()) {
+            boolean timeoutOccurred = solver.isTimeoutOccurred();
+            solver.close();
+            if (timeoutOccurred) {
+                throw new TimeoutException("d4 exceeded timeout of " + compileTimeout);
+            }
+            throw new IllegalStateException("could not start ddnnife");
+        }
+        return solver;
+    }
+
+    private <T> CompletableFuture<T> submitCompilation(Callable<T> task) {
+        Compilation<T> compilation = new Compilation<>(task);
+        synchronized (this) {
+            if (runningCompilations >= compileLimit) {
+                pendingCompilations.add(compilation);
+                return compilation.future;
+            }
+            runningCompilations++;
+        }
+        execute(compilation);
+        return compilation.future;
+    }
+
+    private void startNext() {
+        Compilation<?> next;
+        synchronized (this) {
+            next = pendingCompilations.poll();
+            if (next == null) {
+                runningCompilations--;
+                return;
+            }
+        }
+        execute(next);
+    }
+
+    private void execute(Compilation<?> compilation) {
+        try {
+            executor.execute(compilation);
+        } catch (RejectedExecutionException e) {
+            compilation.future.completeExceptionally(e);
+            startNext();
+        }
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public int getCompileLimit() {
+        return compileLimit;
+    }
+
+    public synchronized int getRunningCompilationCount() {
+        return runningCompilations;
+    }
+
+    public synchronized int getPendingCompilationCount() {
+        return pendingCompilations.size();
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-formula-analysis-ddnnife.
+ *
+ * formula-analysis-ddnnife is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * formula-analysis-ddnnife is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with formula-analysis-ddnnife. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatJAR/formula-analysis-ddnnife> for further information.
+ */
+package de.featjar.analysis.ddnnife.solver;
+
+import de.featjar.base.FeatJAR;
+import de.featjar.base.data.Result;
+import de.featjar.formula.analysis.bool.ABooleanAssignment;
+import de.featjar.formula.analysis.bool.BooleanAssignment;
+import de.featjar.formula.analysis.bool.BooleanClauseList;
+import de.featjar.formula.analysis.bool.BooleanSolution;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Thread-safe client for a single ddnnife process.
+ * In contrast to {@link DdnnifeWrapper}, assumptions are passed with each query instead of being stored in the client, such that many threads can share one process and one loaded d-DNNF.
+ * Queries are written to the process under a lock that is not held while waiting for the response.
+ * As ddnnife answers queries in the order in which they were sent, a dedicated thread decodes all responses in that order and routes each of them to the caller that sent the corresponding query.
+ *
+ * @author Sebastian Krieter
+ */
+public class DdnnifeClient implements AutoCloseable {
+
+    private static final class PendingQuery<T> {
+
+        private final DdnnifeResponseReader.Decoder<T> decoder;
+        private final CompletableFuture<Result<T>> future = new CompletableFuture<>();
+
+        private PendingQuery(DdnnifeResponseReader.Decoder<T> decoder) {
+            this.decoder = decoder;
+        }
+
+        private void answer(DdnnifeResponseReader reader) throws IOException {
+            try {
+                T response = decoder.decode(reader);
+                future.complete(response != null ? Result.of(response) : terminated());
+            } catch (NumberFormatException e) {
+                future.complete(Result.empty(e));
+            }
+        }
+
+        private void fail() {
+            future.complete(terminated());
+        }
+    }
+
+    private final Process process;
+    private final DdnnifeResponseReader prcIn;
+    private final BufferedWriter prcOut;
+    private final Thread responseThread;
+    private final int variableCount;
+
+    private DdnnfCache cache;
+    private Path ddnnfFile;
+
+    private final Object writeLock = new Object();
+    private final ArrayDeque<PendingQuery<?>> pendingQueries = new ArrayDeque<>();
+    private boolean closed;
+
+    /**
+     * Compiles a formula if it is not yet cached and starts a client for it.
+     * The compiled file is not evicted from the cache until the client is closed.
+     *
+     * @param formula the formula
+     * @param cache the cache of compiled d-DNNF files
+     * @param compileTimeout the timeout for compiling the formula, {@link Duration#ZERO} for no timeout
+     * @return the client
+     * @throws IOException if the formula cannot be compiled or the process cannot be started
+     * @throws InterruptedException if the thread is interrupted during compilation
+     * @throws TimeoutException if the compilation exceeds the timeout
+     */
+    public static DdnnifeClient open(BooleanClauseList formula, DdnnfCache cache, Duration compileTimeout)
+            throws IOException, InterruptedException, TimeoutException {
+        Path ddnnfFile = cache.acquire(formula, compileTimeout, IDdnnifeListener.NONE);
+        try {
+            DdnnifeClient client = new DdnnifeClient(ddnnfFile, formula.getVariableCount());
+            client.cache = cache;
+            client.ddnnfFile = ddnnfFile;
+            return client;
+        } catch (IOException e) {
+            cache.release(ddnnfFile);
+            throw e;
+        }
+    }
+
+    /**
+     * Starts a client for an already compiled d-DNNF file.
+     *
+     * @param ddnnfFile the d-DNNF file
+     * @param variableCount the number of variables of the compiled formula
+     * @throws IOException if the process cannot be started
+     */
+    public DdnnifeClient(Path ddnnfFile, int variableCount) throws IOException {
+        this.variableCount = variableCount;
+        process = DdnnifeWrapper.startProcess(ddnnfFile, variableCount);
+        if (process == null) {
+            throw new IOException("could not start ddnnife for " + ddnnfFile);
+        }
+        prcIn = new DdnnifeResponseReader(process.getInputStream());
+        prcOut = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()));
+        responseThread = new Thread(this::readResponses, "ddnnife-client");
+        responseThread.setDaemon(true);
+        responseThread.start();
+    }
+
+    private void readResponses() {
+        PendingQuery<?> query = null;
+        try {
+            while (true) {
+                synchronized (pendingQueries) {
+                    while (pendingQueries.isEmpty()) {
+                        if (closed) {
+                            return;
+                        }
+                        pendingQueries.wait();
+                    }
+                    query = pendingQueries.poll();
+                }
+                query.answer(prcIn);
+                query = null;
+            }
+        } catch (IOException e) {
+            if (process.isAlive()) {
+                FeatJAR.log().error(e);
+            }
+        } catch (InterruptedException e) {
+            FeatJAR.log().debug("ddnnife client was interrupted");
+        } finally {
+            if (query != null) {
+                query.fail();
+            }
+            synchronized (pendingQueries) {
+                closed = true;
+                for (PendingQuery<?> pendingQuery : pendingQueries) {
+                    pendingQuery.fail();
+                }
+                pendingQueries.clear();
+            }
+            process.destroyForcibly();
+        }
+    }
+
+    /**
+     * Sends a query without waiting for its response.
+     *
+     * @param <T> the type of the decoded response
+     * @param command the command, including its parameters
+     * @param assumptions the assumptions for this query, may be {@code null}
+     * @param decoder the decoder for the response, which is called on the response thread of this client
+     * @return the future response
+     */
+    public <T> CompletableFuture<Result<T>> submit(
+            String command, ABooleanAssignment assumptions, DdnnifeResponseReader.Decoder<T> decoder) {
+        PendingQuery<T> query = new PendingQuery<>(decoder);
+        String line = createQuery(command, assumptions);
+        synchronized (writeLock) {
+            synchronized (pendingQueries) {
+                if (closed) {
+                    query.fail();
+                    return query.future;
+                }
+                pendingQueries.add(query);
+                pendingQueries.notifyAll();
+            }
+            try {
+                prcOut.write(line);
+                prcOut.write('\n');
+                prcOut.flush();
+            } catch (IOException e) {
+                // the response thread fails all pending queries when the process has terminated
+                process.destroyForcibly();
+            }
+        }
+        return query.future;
+    }
+
+    /**
+     * Sends a query and waits for its response.
+     *
+     * @param <T> the type of the decoded response
+     * @param command the command, including its parameters
+     * @param assumptions the assumptions for this query, may be {@code null}
+     * @param decoder the decoder for the response
+     * @return the response
+     */
+    public <T> Result<T> compute(
+            String command, ABooleanAssignment assumptions, DdnnifeResponseReader.Decoder<T> decoder) {
+        try {
+            return submit(command, assumptions, decoder).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Result.empty(e);
+        } catch (ExecutionException e) {
+            return Result.empty(e);
+        }
+    }
+
+    public Result<Boolean> hasSolution(ABooleanAssignment assumptions) {
+        return compute("sat", assumptions, DdnnifeResponseReader::readBoolean);
+    }
+
+    public Result<BooleanSolution> getSolution(ABooleanAssignment assumptions) {
+        return compute("enum l 1", assumptions, DdnnifeWrapper::readSolution);
+    }
+
+    public Result<BigInteger> countSolutions(ABooleanAssignment assumptions) {
+        return compute("count", assumptions, DdnnifeResponseReader::readCount);
+    }
+
+    public Result<BooleanAssignment> core(ABooleanAssignment assumptions) {
+        return compute("core", assumptions, DdnnifeWrapper::readAssignment);
+    }
+
+    private static String createQuery(String command, ABooleanAssignment assumptions) {
+        if (assumptions == null || assumptions.isEmpty()) {
+            return command;
+        }
+        StringBuilder sb = new StringBuilder(command).append(" a");
+        for (int literal : assumptions.get()) {
+            sb.append(' ').append(literal);
+        }
+        return sb.toString();
+    }
+
+    private static <T> Result<T> terminated() {
+        return Result.empty(new Exception("Process was terminated!"));
+    }
+
+    public int getVariableCount() {
+        return variableCount;
+    }
+
+    /**
+     * Returns the number of queries that were sent but not yet answered.
+     *
+     * @return the number of pending queries
+     */
+    public int getPendingQueryCount() {
+        synchronized (pendingQueries) {
+            return pendingQueries.size();
+        }
+    }
+
+    public boolean isAlive() {
+        return process.isAlive();
+    }
+
+    /**
+     * Terminates the ddnnife process after all pending queries are answered.
+     */
+    @Override
+    public void close() {
+        synchronized (pendingQueries) {
+            if (!closed) {
+                closed = true;
+                pendingQueries.notifyAll();
+            }
+        }
+        try {
+            responseThread.join();
+            if (process.isAlive()) {
+                synchronized (writeLock) {
+                    prcOut.write("exit\n");
+                    prcOut.flush();
+                }
+                process.waitFor(1000, TimeUnit.MILLISECONDS);
+            }
+        } catch (IOException | InterruptedException e) {
+            FeatJAR.log().error(e);
+        } finally {
+            process.destroyForcibly();
+            try {
+                prcIn.close();
+                prcOut.close();
+            } catch (IOException e) {
+                FeatJAR.log().error(e);
+            }
+            if (cache != null) {
+                cache.release(ddnnfFile);
+                cache = null;
+            }
+        }
+    }
+}
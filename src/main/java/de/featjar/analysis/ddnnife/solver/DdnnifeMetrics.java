@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-formula-analysis-ddnnife.
+ *
+ * formula-analysis-ddnnife is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * formula-analysis-ddnnife is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with formula-analysis-ddnnife. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatJAR/formula-analysis-ddnnife> for further information.
+ */
+package de.featjar.analysis.ddnnife.solver;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the measurements of a {@link IDdnnifeListener} in memory.
+ * All counters are thread-safe and can be read while measurements are recorded.
+ * Latencies are recorded in histograms with power-of-two buckets, such that recording a measurement does not allocate memory.
+ *
+ * @author Sebastian Krieter
+ */
+public class DdnnifeMetrics implements IDdnnifeListener {
+
+    /**
+     * Histogram of durations with one bucket per power of two nanoseconds.
+     */
+    public static final class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+
+        void record(long nanos, boolean success) {
+            nanos = Math.max(0, nanos);
+            buckets.incrementAndGet(Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos | 1));
+            count.increment();
+            total.add(nanos);
+            if (!success) {
+                failures.increment();
+            }
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getFailureCount() {
+            return failures.sum();
+        }
+
+        public Duration getTotal() {
+            return Duration.ofNanos(total.sum());
+        }
+
+        public Duration getMean() {
+            long n = count.sum();
+            return n == 0 ? Duration.ZERO : Duration.ofNanos(total.sum() / n);
+        }
+
+        /**
+         * Returns an upper bound of the given percentile of the recorded durations.
+         * The bound is at most twice the exact percentile.
+         *
+         * @param percentile the percentile between {@code 0} and {@code 1}
+         * @return the upper bound
+         */
+        public Duration getPercentile(double percentile) {
+            long n = count.sum();
+            if (n == 0) {
+                return Duration.ZERO;
+            }
+            long rank = (long) Math.ceil(percentile * n);
+            long seen = 0;
+            for (int i = 0; i < Long.SIZE; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    return Duration.ofNanos(i >= Long.SIZE - 2 ? Long.MAX_VALUE : (2L << i) - 1);
+                }
+            }
+            return Duration.ofNanos(Long.MAX_VALUE);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "count=%d, failures=%d, mean=%s, p50<=%s, p99<=%s",
+                    getCount(), getFailureCount(), getMean(), getPercentile(0.5), getPercentile(0.99));
+        }
+    }
+
+    private final Map<Phase, Histogram> phases = new EnumMap<>(Phase.class);
+    private final ConcurrentHashMap<String, Histogram> queries = new ConcurrentHashMap<>();
+    private final Histogram processLifetimes = new Histogram();
+
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LongAdder ddnnfCount = new LongAdder();
+    private final LongAdder ddnnfSize = new LongAdder();
+    private final LongAdder processStarts = new LongAdder();
+    private final LongAdder processRestarts = new LongAdder();
+    private final AtomicLong pendingRestarts = new AtomicLong();
+
+    public DdnnifeMetrics() {
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, new Histogram());
+        }
+    }
+
+    @Override
+    public void phaseCompleted(Phase phase, long nanos) {
+        phases.get(phase).record(nanos, true);
+    }
+
+    @Override
+    public void ddnnfCompiled(long fileSize) {
+        ddnnfCount.increment();
+        ddnnfSize.add(fileSize);
+    }
+
+    @Override
+    public void queryCompleted(String command, long nanos, boolean success) {
+        queries.computeIfAbsent(command, c -> new Histogram()).record(nanos, success);
+    }
+
+    @Override
+    public void bytesSent(long bytes) {
+        bytesSent.add(bytes);
+    }
+
+    @Override
+    public void bytesReceived(long bytes) {
+        bytesReceived.add(bytes);
+    }
+
+    @Override
+    public void processStarted() {
+        processStarts.increment();
+        if (pendingRestarts.getAndUpdate(n -> n > 0 ? n - 1 : 0) > 0) {
+            processRestarts.increment();
+        }
+    }
+
+    @Override
+    public void processStopped(long lifetimeNanos, boolean failed) {
+        processLifetimes.record(lifetimeNanos, !failed);
+        if (failed) {
+            pendingRestarts.incrementAndGet();
+        }
+    }
+
+    public Histogram getPhase(Phase phase) {
+        return phases.get(phase);
+    }
+
+    /**
+     * Returns the latency histograms of all commands that were queried so far.
+     *
+     * @return a map from command to histogram, sorted by command
+     */
+    public Map<String, Histogram> getQueries() {
+        return Collections.unmodifiableMap(new TreeMap<>(queries));
+    }
+
+    /**
+     * Returns the lifetimes of all terminated processes. Processes that stopped on their own or were killed are counted as failures.
+     *
+     * @return the lifetime histogram
+     */
+    public Histogram getProcessLifetimes() {
+        return processLifetimes;
+    }
+
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    public long getDdnnfCount() {
+        return ddnnfCount.sum();
+    }
+
+    /**
+     * Returns the total size of all compiled d-DNNF files.
+     *
+     * @return the size in bytes
+     */
+    public long getDdnnfSize() {
+        return ddnnfSize.sum();
+    }
+
+    public long getProcessStartCount() {
+        return processStarts.sum();
+    }
+
+    public long getProcessFailureCount() {
+        return processLifetimes.getFailureCount();
+    }
+
+    /**
+     * Returns the number of processes that were started after a process had failed.
+     *
+     * @return the restart count
+     */
+    public long getProcessRestartCount() {
+        return processRestarts.sum();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Phase phase : Phase.values()) {
+            Histogram histogram = phases.get(phase);
+            if (histogram.getCount() > 0) {
+                sb.append(phase).append(": ").append(histogram).append('\n');
+            }
+        }
+        getQueries().forEach((command, histogram) -> sb.append("query ")
+                .append(command)
+                .append(": ")
+                .append(histogram)
+                .append('\n'));
+        sb.append("processes: started=").append(getProcessStartCount());
+        sb.append(", failed=").append(getProcessFailureCount());
+        sb.append(", restarted=").append(getProcessRestartCount());
+        sb.append(", lifetime=").append(processLifetimes.getMean()).append('\n');
+        sb.append("d-DNNF: compiled=").append(getDdnnfCount());
+        sb.append(", bytes=").append(getDdnnfSize()).append('\n');
+        sb.append("pipe: sent=").append(getBytesSent());
+        sb.append(", received=").append(getBytesReceived());
+        return sb.toString();
+    }
+}
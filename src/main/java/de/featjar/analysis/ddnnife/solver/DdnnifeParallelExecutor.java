@@ -0,0 +1,508 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-formula-analysis-ddnnife.
+ *
+ * formula-analysis-ddnnife is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * formula-analysis-ddnnife is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with formula-analysis-ddnnife. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatJAR/formula-analysis-ddnnife> for further information.
+ */
+package de.featjar.analysis.ddnnife.solver;
+
+import de.featjar.base.FeatJAR;
+import de.featjar.base.data.Result;
+import de.featjar.formula.analysis.bool.ABooleanAssignment;
+import de.featjar.formula.analysis.bool.BooleanAssignment;
+import de.featjar.formula.analysis.bool.BooleanClauseList;
+import de.featjar.formula.analysis.bool.BooleanSolution;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Distributes batches of queries over multiple ddnnife processes that share the same compiled d-DNNF.
+ * Each process is driven by its own thread, which repeatedly takes the next chunk of unanswered queries, such that fast processes take over work from slow ones.
+ * Results are returned in the order of the queries.
+ * A process that dies is retired, and its unanswered queries are answered by the remaining processes.
+ * Single queries are answered by the first process that is alive.
+ * The {@link #getTimeout() timeout} applies to each single query and to each batch as a whole.
+ *
+ * @author Sebastian Krieter
+ */
+public class DdnnifeParallelExecutor implements IDdnnfSolver {
+
+    /**
+     * Estimated memory used by a ddnnife process relative to the size of the d-DNNF file it loaded.
+     */
+    public static final int MEMORY_FACTOR = 4;
+
+    /**
+     * Default memory that may be used by all processes of an executor together.
+     */
+    public static final long DEFAULT_MEMORY_BUDGET = 8L << 30;
+
+    private static final int MAXIMUM_CHUNK_SIZE = DdnnifeWrapper.DEFAULT_WINDOW;
+
+    protected Duration timeout = Duration.ZERO;
+
+    private volatile boolean timeoutOccurred;
+
+    private final DdnnifeWrapper[] replicas;
+    private final ExecutorService threads;
+
+    private Path ddnnfFile;
+    private boolean deleteOnClose;
+    private DdnnfCache cache;
+
+    private ABooleanAssignment assumptions;
+
+    /**
+     * Computes the number of processes for a d-DNNF file, based on the number of available processors and the estimated memory used per process.
+     *
+     * @param ddnnfFile the d-DNNF file
+     * @return the number of processes, at least one
+     */
+    public static int computeReplicaCount(Path ddnnfFile) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        long size;
+        try {
+            size = Files.size(ddnnfFile);
+        } catch (IOException e) {
+            size = 0;
+        }
+        long perReplica = Math.max(1, size * MEMORY_FACTOR);
+        long byMemory = DEFAULT_MEMORY_BUDGET / perReplica;
+        return (int) Math.max(1, Math.min(processors, byMemory));
+    }
+
+    /**
+     * Creates a new executor for the given formula.
+     *
+     * @param formula the formula
+     * @param cache the cache of compiled d-DNNF files, may be {@code null}
+     * @param replicaCount the number of processes, {@code 0} to choose automatically
+     * @param compileTimeout the timeout for compiling the formula, {@link Duration#ZERO} for no timeout
+     * @throws IOException if the formula cannot be compiled
+     * @throws InterruptedException if the thread is interrupted during compilation
+     * @throws TimeoutException if the compilation exceeds the timeout
+     */
+    public DdnnifeParallelExecutor(
+            BooleanClauseList formula, DdnnfCache cache, int replicaCount, Duration compileTimeout)
+            throws IOException, InterruptedException, TimeoutException {
+        this(formula, cache, replicaCount, compileTimeout, IDdnnifeListener.NONE);
+    }
+
+    /**
+     * Creates a new executor for the given formula whose processes report measurements to a listener.
+     *
+     * @param formula the formula
+     * @param cache the cache of compiled d-DNNF files, may be {@code null}
+     * @param replicaCount the number of processes, {@code 0} to choose automatically
+     * @param compileTimeout the timeout for compiling the formula, {@link Duration#ZERO} for no timeout
+     * @param listener the listener for compilation, process, and query measurements
+     * @throws IOException if the formula cannot be compiled
+     * @throws InterruptedException if the thread is interrupted during compilation
+     * @throws TimeoutException if the compilation exceeds the timeout
+     */
+    public DdnnifeParallelExecutor(
+            BooleanClauseList formula,
+            DdnnfCache cache,
+            int replicaCount,
+            Duration compileTimeout,
+            IDdnnifeListener listener)
+            throws IOException, InterruptedException, TimeoutException {
+        if (cache != null) {
+            ddnnfFile = cache.acquire(formula, compileTimeout, listener);
+            this.cache = cache;
+            deleteOnClose = false;
+        } else {
+            ddnnfFile = Files.createTempFile("ddnnifeInput", ".nnf");
+            ddnnfFile.toFile().deleteOnExit();
+            deleteOnClose = true;
+        }
+        ExecutorService pool = null;
+        List<DdnnifeWrapper> started = new ArrayList<>();
+        AtomicBoolean aborted = new AtomicBoolean();
+        try {
+            if (cache == null) {
+                DdnnifeWrapper.compile(formula, ddnnfFile, compileTimeout, listener);
+            }
+            int count = replicaCount > 0 ? replicaCount : computeReplicaCount(ddnnfFile);
+            FeatJAR.log().debug("starting %d ddnnife processes", count);
+            pool = Executors.newFixedThreadPool(count, r -> {
+                Thread thread = new Thread(r, "ddnnife-replica");
+                thread.setDaemon(true);
+                return thread;
+            });
+            int variableCount = formula.getVariableCount();
+            List<Future<DdnnifeWrapper>> starts = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                starts.add(pool.submit(() -> {
+                    DdnnifeWrapper replica = new DdnnifeWrapper(ddnnfFile, variableCount, listener);
+                    synchronized (started) {
+                        if (aborted.get()) {
+                            replica.terminate();
+                        } else {
+                            started.add(replica);
+                        }
+                    }
+                    return replica;
+                }));
+            }
+            DdnnifeWrapper[] replicas = new DdnnifeWrapper[count];
+            for (int i = 0; i < count; i++) {
+                try {
+                    replicas[i] = starts.get(i).get();
+                } catch (ExecutionException e) {
+                    throw new IOException(e.getCause());
+                }
+            }
+            this.replicas = replicas;
+            threads = pool;
+        } catch (Exception e) {
+            // processes that are still starting terminate themselves once they are started
+            synchronized (started) {
+                aborted.set(true);
+                started.forEach(DdnnifeWrapper::terminate);
+            }
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+            close();
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw e;
+        }
+    }
+
+    public int getReplicaCount() {
+        return replicas.length;
+    }
+
+    /**
+     * Returns a replica of this executor, for instance to {@link DdnnifeWrapper#cancel() cancel} its process.
+     *
+     * @param index the index of the replica
+     * @return the replica
+     */
+    public DdnnifeWrapper getReplica(int index) {
+        return replicas[index];
+    }
+
+    /**
+     * Sends all queries to the ddnnife processes of this executor.
+     *
+     * @param queries the queries
+     * @return the responses in the order of the queries
+     */
+    public List<Result<String>> compute(List<String> queries) {
+        return computeParallel(queries, DdnnifeResponseReader::readLine);
+    }
+
+    private <T> List<Result<T>> computeParallel(List<String> queries, DdnnifeResponseReader.Decoder<T> decoder) {
+        int size = queries.size();
+        @SuppressWarnings("unchecked")
+        Result<T>[] results = (Result<T>[]) new Result<?>[size];
+        timeoutOccurred = false;
+        boolean hasDeadline = !timeout.isZero() && !timeout.isNegative();
+        long deadline = hasDeadline ? System.nanoTime() + timeout.toNanos() : 0;
+        int chunkSize = Math.max(1, Math.min(MAXIMUM_CHUNK_SIZE, size / (4 * replicas.length)));
+        AtomicInteger next = new AtomicInteger();
+        Queue<int[]> retries = new ConcurrentLinkedQueue<>();
+        List<Future<?>> tasks = new ArrayList<>(replicas.length);
+        for (DdnnifeWrapper replica : replicas) {
+            if (!replica.isAlive()) {
+                continue;
+            }
+            tasks.add(threads.submit(() -> {
+                int[] chunk;
+                while ((chunk = nextChunk(next, retries, chunkSize, size)) != null) {
+                    if (!limitTimeout(replica, hasDeadline, deadline)
+                            || !computeChunk(replica, queries, chunk, decoder, results, retries)) {
+                        break;
+                    }
+                }
+            }));
+        }
+        try {
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+            // chunks of replicas that died after all other replicas had finished
+            int[] chunk;
+            while ((chunk = retries.poll()) != null) {
+                DdnnifeWrapper replica = getLiveReplica();
+                if (replica == null || !limitTimeout(replica, hasDeadline, deadline)) {
+                    break;
+                }
+                computeChunk(replica, queries, chunk, decoder, results, retries);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            tasks.forEach(t -> t.cancel(true));
+        } catch (ExecutionException e) {
+            FeatJAR.log().error(e);
+        } finally {
+            if (hasDeadline) {
+                for (DdnnifeWrapper replica : replicas) {
+                    replica.setTimeout(timeout);
+                }
+            }
+        }
+        Exception unanswered = isTimeoutOccurred()
+                ? new TimeoutException("ddnnife exceeded timeout of " + timeout)
+                : new Exception("Query was not answered!");
+        for (int i = 0; i < size; i++) {
+            if (results[i] == null) {
+                results[i] = Result.empty(unanswered);
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Limits the timeout of a replica to the time that remains until the deadline of the current batch.
+     *
+     * @return {@code true} if time remains, {@code false} if the deadline has passed
+     */
+    private boolean limitTimeout(DdnnifeWrapper replica, boolean hasDeadline, long deadline) {
+        if (!hasDeadline) {
+            return true;
+        }
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            timeoutOccurred = true;
+            return false;
+        }
+        replica.setTimeout(Duration.ofNanos(remaining));
+        return true;
+    }
+
+    private static int[] nextChunk(AtomicInteger next, Queue<int[]> retries, int chunkSize, int size) {
+        int[] retry = retries.poll();
+        if (retry != null) {
+            return retry;
+        }
+        int start = next.getAndAdd(chunkSize);
+        return start < size ? new int[] {start, Math.min(size, start + chunkSize)} : null;
+    }
+
+    /**
+     * Sends a chunk of queries to a replica.
+     * If the process of the replica dies, the unanswered part of the chunk is queued to be retried by another replica, unless the process was destroyed due to a timeout or an interrupt.
+     *
+     * @return {@code true} if the replica is still alive, {@code false} if it must not receive further chunks
+     */
+    private <T> boolean computeChunk(
+            DdnnifeWrapper replica,
+            List<String> queries,
+            int[] chunk,
+            DdnnifeResponseReader.Decoder<T> decoder,
+            Result<T>[] results,
+            Queue<int[]> retries) {
+        int start = chunk[0];
+        int end = chunk[1];
+        int[] index = {start};
+        replica.compute(
+                queries.subList(start, end).iterator(),
+                DdnnifeWrapper.DEFAULT_WINDOW,
+                decoder,
+                result -> results[index[0]++] = result);
+        if (replica.isAlive()) {
+            return true;
+        }
+        FeatJAR.log().debug("retiring dead ddnnife process");
+        if (!replica.isTimeoutOccurred() && !Thread.currentThread().isInterrupted()) {
+            int unanswered = end;
+            while (unanswered > start && !results[unanswered - 1].isPresent()) {
+                unanswered--;
+            }
+            if (unanswered < end) {
+                retries.add(new int[] {unanswered, end});
+            }
+        }
+        return false;
+    }
+
+    private DdnnifeWrapper getLiveReplica() {
+        for (DdnnifeWrapper replica : replicas) {
+            if (replica.isAlive()) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the replica that answers single queries, which is the first replica whose process is alive.
+     *
+     * @return the replica
+     */
+    private DdnnifeWrapper getPrimary() {
+        DdnnifeWrapper replica = getLiveReplica();
+        return replica != null ? replica : replicas[0];
+    }
+
+    private <T> List<Result<T>> computeBatch(
+            String command, List<? extends ABooleanAssignment> assignments, DdnnifeResponseReader.Decoder<T> decoder) {
+        List<String> queries = new ArrayList<>(assignments.size());
+        for (ABooleanAssignment assignment : assignments) {
+            queries.add(replicas[0].createQuery(command, assignment));
+        }
+        return computeParallel(queries, decoder);
+    }
+
+    @Override
+    public Result<Boolean> hasSolution() {
+        return getPrimary().hasSolution();
+    }
+
+    @Override
+    public Result<BooleanSolution> getSolution() {
+        return getPrimary().getSolution();
+    }
+
+    @Override
+    public Result<BigInteger> countSolutions() {
+        return getPrimary().countSolutions();
+    }
+
+    @Override
+    public Result<BooleanAssignment> core() {
+        return getPrimary().core();
+    }
+
+    @Override
+    public List<Result<Boolean>> hasSolution(List<? extends ABooleanAssignment> assignments) {
+        return computeBatch("sat", assignments, DdnnifeResponseReader::readBoolean);
+    }
+
+    @Override
+    public List<Result<BigInteger>> countSolutions(List<? extends ABooleanAssignment> assignments) {
+        return computeBatch("count", assignments, DdnnifeResponseReader::readCount);
+    }
+
+    @Override
+    public List<Result<BooleanAssignment>> core(List<? extends ABooleanAssignment> assignments) {
+        return computeBatch("core", assignments, DdnnifeWrapper::readAssignment);
+    }
+
+    @Override
+    public Iterator<BooleanSolution> enumerateSolutions(int chunkSize) {
+        return getPrimary().enumerateSolutions(chunkSize);
+    }
+
+    @Override
+    public Iterator<BooleanSolution> sampleUniform(long seed, int chunkSize) {
+        return getPrimary().sampleUniform(seed, chunkSize);
+    }
+
+    @Override
+    public int getVariableCount() {
+        return replicas[0].getVariableCount();
+    }
+
+    @Override
+    public ABooleanAssignment getAssumptions() {
+        return assumptions;
+    }
+
+    @Override
+    public void setAssumptions(ABooleanAssignment assumptions) {
+        this.assumptions = assumptions;
+        for (DdnnifeWrapper replica : replicas) {
+            replica.setAssumptions(assumptions);
+        }
+    }
+
+    @Override
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    @Override
+    public void setTimeout(Duration timeout) {
+        Objects.requireNonNull(timeout);
+        this.timeout = timeout;
+        for (DdnnifeWrapper replica : replicas) {
+            replica.setTimeout(timeout);
+        }
+    }
+
+    @Override
+    public boolean isTimeoutOccurred() {
+        if (timeoutOccurred) {
+            return true;
+        }
+        for (DdnnifeWrapper replica : replicas) {
+            if (replica.isTimeoutOccurred()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Cancels all pending queries by destroying the ddnnife processes. May be called from any thread.
+     */
+    public void cancel() {
+        for (DdnnifeWrapper replica : replicas) {
+            if (replica != null) {
+                replica.cancel();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (replicas != null) {
+            for (DdnnifeWrapper replica : replicas) {
+                if (replica != null) {
+                    replica.terminate();
+                }
+            }
+        }
+        if (threads != null) {
+            threads.shutdownNow();
+        }
+        if (cache != null) {
+            cache.release(ddnnfFile);
+            cache = null;
+        }
+        if (deleteOnClose) {
+            try {
+                Files.deleteIfExists(ddnnfFile);
+            } catch (IOException e) {
+                FeatJAR.log().error(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-formula-analysis-ddnnife.
+ *
+ * formula-analysis-ddnnife is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * formula-analysis-ddnnife is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with formula-analysis-ddnnife. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatJAR/formula-analysis-ddnnife> for further information.
+ */
+package de.featjar.analysis.ddnnife.solver;
+
+import de.featjar.base.data.Result;
+import de.featjar.formula.analysis.bool.ABooleanAssignment;
+import de.featjar.formula.analysis.bool.BooleanClauseList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.function.Supplier;
+
+/**
+ * Bounded in-memory cache of query results.
+ * Results are keyed by the compiled formula, the kind of query, and the assumptions, such that repeated queries under the same partial configuration are answered without contacting a solver.
+ * Formulas are identified by a hash of their content, which is computed for each query, such that a formula that is modified in place does not receive stale results.
+ * Assumptions are canonicalized by sorting their literals, so their order does not matter.
+ * When the number of results exceeds its limit, the least recently used result is evicted.
+ *
+ * @author Sebastian Krieter
+ */
+public class DdnnifeQueryCache {
+
+    /**
+     * Cache that does not store any result.
+     */
+    public static final DdnnifeQueryCache NONE = new DdnnifeQueryCache(0);
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 1 << 16;
+
+    /**
+     * The kind of a cached query.
+     */
+    public enum Kind {
+        SAT,
+        COUNT,
+        CORE
+    }
+
+    private static final class Key {
+
+        private final String formula;
+        private final int kind;
+        private final int[] literals;
+        private final int hashCode;
+
+        private Key(String formula, Kind kind, int[] literals) {
+            this.formula = formula;
+            this.kind = kind.ordinal();
+            this.literals = literals;
+            hashCode = (31 * (31 * formula.hashCode() + this.kind)) + Arrays.hashCode(literals);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hashCode == other.hashCode
+                    && kind == other.kind
+                    && formula.equals(other.formula)
+                    && Arrays.equals(literals, other.literals);
+        }
+    }
+
+    private final int maximumSize;
+
+    private final LinkedHashMap<Key, Object> results;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maximumSize the maximum number of cached results, {@code 0} disables caching
+     */
+    public DdnnifeQueryCache(int maximumSize) {
+        if (maximumSize < 0) {
+            throw new IllegalArgumentException(String.valueOf(maximumSize));
+        }
+        this.maximumSize = maximumSize;
+        results = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Entry<Key, Object> eldest) {
+                if (size() > DdnnifeQueryCache.this.maximumSize) {
+                    evictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached result of a query or, if there is none, computes and caches it.
+     * Empty results are not cached.
+     * The lock of this cache is not held while the result is computed, such that concurrent misses for the same key may compute the result more than once.
+     *
+     * @param <T> the type of the result
+     * @param formula the formula
+     * @param kind the kind of query, which must determine the type of the result
+     * @param assumptions the assumptions of the query, may be {@code null}
+     * @param query computes the result on a cache miss
+     * @return the result
+     */
+    public <T> Result<T> computeIfAbsent(
+            BooleanClauseList formula, Kind kind, ABooleanAssignment assumptions, Supplier<Result<T>> query) {
+        return computeIfAbsent(formula, null, kind, assumptions, query);
+    }
+
+    /**
+     * Returns the cached result of a query on the {@link Projection projection} of a formula or, if there is none, computes and caches it.
+     *
+     * @param <T> the type of the result
+     * @param formula the formula
+     * @param projection the projected variables, {@code null} or empty if the formula is not projected
+     * @param kind the kind of query, which must determine the type of the result
+     * @param assumptions the assumptions of the query, may be {@code null}
+     * @param query computes the result on a cache miss
+     * @return the result
+     * @see #computeIfAbsent(BooleanClauseList, Kind, ABooleanAssignment, Supplier)
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Result<T> computeIfAbsent(
+            BooleanClauseList formula,
+            ABooleanAssignment projection,
+            Kind kind,
+            ABooleanAssignment assumptions,
+            Supplier<Result<T>> query) {
+        if (maximumSize == 0) {
+            return query.get();
+        }
+        Key key = new Key(getFormulaKey(formula, projection), kind, canonicalize(assumptions));
+        synchronized (this) {
+            Object value = results.get(key);
+            if (value != null) {
+                hitCount++;
+                return Result.of((T) value);
+            }
+            missCount++;
+        }
+        Result<T> result = query.get();
+        if (result.isPresent()) {
+            synchronized (this) {
+                results.put(key, result.get());
+            }
+        }
+        return result;
+    }
+
+    private static String getFormulaKey(BooleanClauseList formula, ABooleanAssignment projection) {
+        String formulaKey = DdnnfCache.computeKey(formula);
+        int[] projectedVariables = canonicalize(projection);
+        return projectedVariables.length > 0 ? formulaKey + Arrays.toString(projectedVariables) : formulaKey;
+    }
+
+    private static int[] canonicalize(ABooleanAssignment assumptions) {
+        if (assumptions == null || assumptions.isEmpty()) {
+            return new int[0];
+        }
+        int[] literals = Arrays.copyOf(assumptions.get(), assumptions.get().length);
+        Arrays.sort(literals);
+        int size = 0;
+        for (int i = 0; i < literals.length; i++) {
+            if (i == 0 || literals[i] != literals[i - 1]) {
+                literals[size++] = literals[i];
+            }
+        }
+        return size == literals.length ? literals : Arrays.copyOf(literals, size);
+    }
+
+    /**
+     * Removes all cached results and resets the statistics.
+     */
+    public synchronized void clear() {
+        results.clear();
+        hitCount = 0;
+        missCount = 0;
+        evictionCount = 0;
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public synchronized int getSize() {
+        return results.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Returns the fraction of queries that were answered from this cache.
+     *
+     * @return the hit rate, {@code 0} if there were no queries
+     */
+    public synchronized double getHitRate() {
+        long total = hitCount + missCount;
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+}
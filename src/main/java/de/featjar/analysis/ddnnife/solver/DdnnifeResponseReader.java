@@ -0,0 +1,307 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-formula-analysis-ddnnife.
+ *
+ * formula-analysis-ddnnife is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * formula-analysis-ddnnife is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with formula-analysis-ddnnife. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatJAR/formula-analysis-ddnnife> for further information.
+ */
+package de.featjar.analysis.ddnnife.solver;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Decodes responses of the ddnnife stream API directly from the bytes of its output.
+ * Literals are read into a reusable buffer and counts are parsed without creating intermediate strings, such that decoding a response does not allocate memory apart from its result.
+ * Each response occupies one line. Solutions within one line are separated by {@code ;}.
+ * If a response cannot be decoded, the rest of its line is skipped and a {@link NumberFormatException} is thrown, such that subsequent responses can still be read.
+ *
+ * @author Sebastian Krieter
+ */
+public final class DdnnifeResponseReader implements Closeable {
+
+    /**
+     * Decodes one response.
+     *
+     * @param <T> the type of the decoded response
+     */
+    @FunctionalInterface
+    public interface Decoder<T> {
+        /**
+         * Decodes the next response of the given reader.
+         *
+         * @param reader the reader
+         * @return the decoded response
+         * @throws IOException if the response cannot be read
+         */
+        T decode(DdnnifeResponseReader reader) throws IOException;
+    }
+
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    private static final int LONG_DIGITS = 18;
+
+    private static final long[] POWERS_OF_TEN = new long[LONG_DIGITS + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+
+    private final InputStream in;
+    private final byte[] buffer;
+    private int position;
+    private int limit;
+    private long bytesRead;
+
+    private int[] literals = new int[64];
+    private boolean endOfLine = true;
+
+    public DdnnifeResponseReader(InputStream in) {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    public DdnnifeResponseReader(InputStream in, int bufferSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException(String.valueOf(bufferSize));
+        }
+        this.in = in;
+        buffer = new byte[bufferSize];
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            int read = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if (read <= 0) {
+                limit = 0;
+                return -1;
+            }
+            limit = read;
+            bytesRead += read;
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    private int readRequired() throws IOException {
+        int c = read();
+        if (c < 0) {
+            throw new EOFException("ddnnife closed its output");
+        }
+        return c;
+    }
+
+    private int skipBlanks() throws IOException {
+        int c;
+        do {
+            c = readRequired();
+        } while (c == ' ' || c == '\t' || c == '\r');
+        return c;
+    }
+
+    private void expectEndOfLine() throws IOException {
+        int c = skipBlanks();
+        if (c != '\n') {
+            throw unexpected(c);
+        }
+    }
+
+    /**
+     * Skips the rest of the current line and creates an exception containing it.
+     *
+     * @param c the first unexpected character
+     * @return the exception
+     * @throws IOException if the line cannot be read
+     */
+    private NumberFormatException unexpected(int c) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        while (c >= 0 && c != '\n') {
+            sb.append((char) c);
+            c = read();
+        }
+        endOfLine = true;
+        return new NumberFormatException("Unexpected ddnnife response: " + sb);
+    }
+
+    /**
+     * Returns the number of bytes read from the underlying stream so far.
+     *
+     * @return the number of bytes
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Returns the number of bytes that can be read without blocking.
+     *
+     * @return the number of bytes
+     * @throws IOException if the underlying stream cannot be read
+     */
+    public int available() throws IOException {
+        return limit - position + in.available();
+    }
+
+    /**
+     * Reads the rest of the current line as a string.
+     *
+     * @return the line without its line terminator, or {@code null} if the end of the stream is reached
+     * @throws IOException if the underlying stream cannot be read
+     */
+    public String readLine() throws IOException {
+        int c = read();
+        if (c < 0) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        while (c >= 0 && c != '\n') {
+            if (c != '\r') {
+                sb.append((char) c);
+            }
+            c = read();
+        }
+        endOfLine = true;
+        return sb.toString();
+    }
+
+    /**
+     * Reads a response consisting of {@code true} or {@code false}, ignoring case.
+     *
+     * @return the value of the response
+     * @throws IOException if the underlying stream cannot be read or ends
+     */
+    public boolean readBoolean() throws IOException {
+        int c = skipBlanks();
+        byte[] expected = (c | 0x20) == 't' ? TRUE : FALSE;
+        for (int i = 0; i < expected.length; i++) {
+            if ((c | 0x20) != expected[i]) {
+                throw unexpected(c);
+            }
+            c = i + 1 < expected.length ? readRequired() : c;
+        }
+        expectEndOfLine();
+        return expected == TRUE;
+    }
+
+    /**
+     * Reads a response consisting of a non-negative decimal number.
+     * Numbers are accumulated in a {@code long} and only converted to a {@link BigInteger} if they do not fit into it.
+     *
+     * @return the number
+     * @throws IOException if the underlying stream cannot be read or ends
+     */
+    public BigInteger readCount() throws IOException {
+        int c = skipBlanks();
+        if (c < '0' || c > '9') {
+            throw unexpected(c);
+        }
+        long value = 0;
+        int digits = 0;
+        BigInteger bigValue = null;
+        do {
+            if (digits == LONG_DIGITS) {
+                bigValue = bigValue == null
+                        ? BigInteger.valueOf(value)
+                        : bigValue.multiply(BigInteger.valueOf(POWERS_OF_TEN[LONG_DIGITS]))
+                                .add(BigInteger.valueOf(value));
+                value = 0;
+                digits = 0;
+            }
+            value = value * 10 + (c - '0');
+            digits++;
+            c = readRequired();
+        } while (c >= '0' && c <= '9');
+        position--;
+        expectEndOfLine();
+        if (bigValue == null) {
+            return BigInteger.valueOf(value);
+        }
+        return bigValue.multiply(BigInteger.valueOf(POWERS_OF_TEN[digits])).add(BigInteger.valueOf(value));
+    }
+
+    /**
+     * Reads literals until the next {@code ;} or the end of the line into the {@link #getLiterals() literal buffer}.
+     * Whether the line ended is returned by {@link #isEndOfLine()} afterwards.
+     *
+     * @return the number of literals read
+     * @throws IOException if the underlying stream cannot be read or ends
+     */
+    public int readLiterals() throws IOException {
+        int count = 0;
+        while (true) {
+            int c = skipBlanks();
+            if (c == '\n') {
+                endOfLine = true;
+                return count;
+            } else if (c == ';') {
+                endOfLine = false;
+                return count;
+            }
+            boolean negative = c == '-';
+            if (negative) {
+                c = readRequired();
+            }
+            if (c < '0' || c > '9') {
+                throw unexpected(c);
+            }
+            int value = 0;
+            do {
+                value = value * 10 + (c - '0');
+                c = readRequired();
+            } while (c >= '0' && c <= '9');
+            position--;
+            if (value != 0) {
+                if (count == literals.length) {
+                    literals = Arrays.copyOf(literals, count << 1);
+                }
+                literals[count++] = negative ? -value : value;
+            }
+        }
+    }
+
+    /**
+     * Returns the buffer that contains the literals of the last call to {@link #readLiterals()}.
+     * The buffer is reused and overwritten by subsequent calls.
+     *
+     * @return the literal buffer
+     */
+    public int[] getLiterals() {
+        return literals;
+    }
+
+    /**
+     * Returns whether the last call to {@link #readLiterals()} reached the end of the line.
+     *
+     * @return {@code true} if the response is completely read, {@code false} if further solutions follow
+     */
+    public boolean isEndOfLine() {
+        return endOfLine;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
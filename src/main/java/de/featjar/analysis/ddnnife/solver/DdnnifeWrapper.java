@@ -25,49 +25,388 @@ import de.featjar.base.data.Result;
 import de.featjar.base.io.IO;
 import de.featjar.bin.ddnnife.D4Binary;
 import de.featjar.bin.ddnnife.DdnnifeBinary;
-import de.featjar.formula.analysis.ISolver;
 import de.featjar.formula.analysis.bool.ABooleanAssignment;
 import de.featjar.formula.analysis.bool.BooleanAssignment;
+import de.featjar.formula.analysis.bool.BooleanClause;
 import de.featjar.formula.analysis.bool.BooleanClauseList;
 import de.featjar.formula.analysis.bool.BooleanSolution;
 import de.featjar.formula.io.dimacs.CnfDimacsFormat;
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.Closeable;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.lang.ProcessBuilder.Redirect;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
-public class DdnnifeWrapper implements ISolver, AutoCloseable {
+public class DdnnifeWrapper implements IDdnnfSolver {
+
+    /**
+     * Default number of queries that are sent to ddnnife before waiting for a response in a batch.
+     */
+    public static final int DEFAULT_WINDOW = 256;
+
+    private static final Object BATCH_END = new Object();
+
+    /**
+     * Query of a batch that was sent at a certain time. Only used if a {@link IDdnnifeListener listener} is set.
+     */
+    private static final class SentQuery {
+        private final String query;
+        private final long time;
+
+        private SentQuery(String query, long time) {
+            this.query = query;
+            this.time = time;
+        }
+    }
+
+    private static final long WATCHDOG_PERIOD = 100;
+
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "ddnnife-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final ExecutorService WRITERS = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "ddnnife-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     protected Duration timeout = Duration.ZERO;
 
+    private volatile boolean timeoutOccurred;
+
     private Process process;
 
-    private BufferedReader prcIn;
+    private DdnnifeResponseReader prcIn;
     private BufferedWriter prcOut;
 
     private Path ddnifeFile;
+    private boolean deleteOnClose;
+    private DdnnfCache cache;
+    private int variableCount;
+
+    private DdnnifeWrapperPool pool;
+    private String poolKey;
 
     private ABooleanAssignment assumptions;
 
+    private IDdnnifeListener listener = IDdnnifeListener.NONE;
+    private long processStartTime;
+    private boolean answered;
+
     public DdnnifeWrapper(BooleanClauseList formula) {
+        this(formula, null, Duration.ZERO);
+    }
+
+    public DdnnifeWrapper(BooleanClauseList formula, DdnnfCache cache) {
+        this(formula, cache, Duration.ZERO);
+    }
+
+    /**
+     * Creates a new solver for the given formula.
+     * If a cache is given, a previously compiled d-DNNF is reused and the formula is only compiled on a cache miss.
+     * If the compilation exceeds the given timeout, the compiler is terminated and {@link #isTimeoutOccurred()} returns {@code true}.
+     *
+     * @param formula the formula
+     * @param cache the cache of compiled d-DNNF files, may be {@code null}
+     * @param compileTimeout the timeout for compiling the formula, {@link Duration#ZERO} for no timeout
+     */
+    public DdnnifeWrapper(BooleanClauseList formula, DdnnfCache cache, Duration compileTimeout) {
+        this(formula, cache, compileTimeout, IDdnnifeListener.NONE);
+    }
+
+    /**
+     * Creates a new solver for the given formula that reports measurements to a listener.
+     *
+     * @param formula the formula
+     * @param cache the cache of compiled d-DNNF files, may be {@code null}
+     * @param compileTimeout the timeout for compiling the formula, {@link Duration#ZERO} for no timeout
+     * @param listener the listener for compilation, process, and query measurements
+     * @see #DdnnifeWrapper(BooleanClauseList, DdnnfCache, Duration)
+     */
+    public DdnnifeWrapper(
+            BooleanClauseList formula, DdnnfCache cache, Duration compileTimeout, IDdnnifeListener listener) {
+        this.listener = Objects.requireNonNull(listener);
         int features = formula.getVariableCount();
         try {
-            Path d4File = Files.createTempFile("d4Input", ".dimacs");
+            if (cache != null) {
+                ddnifeFile = cache.acquire(formula, compileTimeout, listener);
+                this.cache = cache;
+                deleteOnClose = false;
+            } else {
+                ddnifeFile = Files.createTempFile("ddnnifeInput", ".nnf");
+                ddnifeFile.toFile().deleteOnExit();
+                deleteOnClose = true;
+                compile(formula, ddnifeFile, compileTimeout, listener);
+            }
+            start(features);
+        } catch (Exception e) {
+            if (e instanceof TimeoutException) {
+                timeoutOccurred = true;
+            } else if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            FeatJAR.log().error(e);
+            close();
+        }
+    }
 
-            ddnifeFile = Files.createTempFile("ddnnifeInput", ".nnf");
-            d4File.toFile().deleteOnExit();
-            ddnifeFile.toFile().deleteOnExit();
+    /**
+     * Creates a new solver for an already compiled d-DNNF file.
+     * The file is not deleted when this solver is closed.
+     *
+     * @param ddnnfFile the d-DNNF file
+     * @param features the number of variables of the compiled formula
+     */
+    public DdnnifeWrapper(Path ddnnfFile, int features) {
+        this(ddnnfFile, features, IDdnnifeListener.NONE);
+    }
 
-            IO.save(formula, d4File, new CnfDimacsFormat());
+    /**
+     * Creates a new solver for an already compiled d-DNNF file that reports measurements to a listener.
+     *
+     * @param ddnnfFile the d-DNNF file
+     * @param features the number of variables of the compiled formula
+     * @param listener the listener for process and query measurements
+     */
+    public DdnnifeWrapper(Path ddnnfFile, int features, IDdnnifeListener listener) {
+        this.listener = Objects.requireNonNull(listener);
+        ddnifeFile = ddnnfFile;
+        deleteOnClose = false;
+        try {
+            start(features);
+        } catch (Exception e) {
+            FeatJAR.log().error(e);
+            close();
+        }
+    }
+
+    public static void compile(BooleanClauseList formula, Path ddnnfFile) throws IOException, InterruptedException {
+        try {
+            compile(formula, ddnnfFile, Duration.ZERO);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Compiles a formula into a d-DNNF file using d4.
+     * The compiler is terminated if it exceeds the timeout or the thread is interrupted.
+     *
+     * @param formula the formula
+     * @param ddnnfFile the output file
+     * @param timeout the timeout, {@link Duration#ZERO} for no timeout
+     * @throws IOException if the formula cannot be written or d4 produced no output
+     * @throws InterruptedException if the thread is interrupted while waiting for d4
+     * @throws TimeoutException if the compilation exceeds the timeout
+     */
+    public static void compile(BooleanClauseList formula, Path ddnnfFile, Duration timeout)
+            throws IOException, InterruptedException, TimeoutException {
+        compile(formula, ddnnfFile, timeout, IDdnnifeListener.NONE);
+    }
+
+    /**
+     * Compiles a formula into a d-DNNF file using d4 and reports the duration of exporting and compiling the formula and the size of the d-DNNF to a listener.
+     * If named pipes are enabled by the system property {@code featjar.ddnnife.namedPipes}, the formula is streamed to d4 without writing it to disk, and exporting overlaps with compiling.
+     *
+     * @param formula the formula
+     * @param ddnnfFile the output file
+     * @param timeout the timeout, {@link Duration#ZERO} for no timeout
+     * @param listener the listener
+     * @throws IOException if the formula cannot be written or d4 produced no output
+     * @throws InterruptedException if the thread is interrupted while waiting for d4
+     * @throws TimeoutException if the compilation exceeds the timeout
+     * @see #compile(BooleanClauseList, Path, Duration)
+     */
+    public static void compile(BooleanClauseList formula, Path ddnnfFile, Duration timeout, IDdnnifeListener listener)
+            throws IOException, InterruptedException, TimeoutException {
+        runD4(formula, ddnnfFile, timeout, listener);
+        long size = Files.isRegularFile(ddnnfFile) ? Files.size(ddnnfFile) : 0;
+        if (size == 0) {
+            throw new IOException("d4 did not produce a d-DNNF for " + ddnnfFile);
+        }
+        listener.ddnnfCompiled(size);
+    }
+
+    /**
+     * Compiles a formula into a d-DNNF file by splitting it into cubes that are compiled by parallel d4 processes.
+     * The cubes assign the variables that occur in the most clauses, and their d-DNNFs are combined into one deterministic disjunction, which is equivalent to compiling the formula at once.
+     *
+     * @param formula the formula
+     * @param ddnnfFile the output file
+     * @param cubeCount the number of cubes, which is rounded up to the next power of two, {@code 1} for a single d4 process
+     * @param timeout the timeout for the whole compilation, {@link Duration#ZERO} for no timeout
+     * @param listener the listener
+     * @throws IOException if the formula cannot be written or d4 produced no output
+     * @throws InterruptedException if the thread is interrupted while waiting for d4
+     * @throws TimeoutException if the compilation exceeds the timeout
+     * @see #compile(BooleanClauseList, Path, Duration, IDdnnifeListener)
+     */
+    public static void compile(
+            BooleanClauseList formula, Path ddnnfFile, int cubeCount, Duration timeout, IDdnnifeListener listener)
+            throws IOException, InterruptedException, TimeoutException {
+        if (cubeCount <= 1) {
+            compile(formula, ddnnfFile, timeout, listener);
+            return;
+        }
+        long compileStart = System.nanoTime();
+        new CubeCompiler(formula, cubeCount).compile(ddnnfFile, timeout);
+        listener.phaseCompleted(IDdnnifeListener.Phase.COMPILE, System.nanoTime() - compileStart);
+        long size = Files.isRegularFile(ddnnfFile) ? Files.size(ddnnfFile) : 0;
+        if (size == 0) {
+            throw new IOException("d4 did not produce a d-DNNF for " + ddnnfFile);
+        }
+        listener.ddnnfCompiled(size);
+    }
+
+    /**
+     * Derives the d-DNNF file of a formula from the d-DNNF file of a previous version of the formula, without calling d4.
+     * This succeeds if the formula only adds clauses to the previous formula, and the added clauses that are not implied units contain at most the given number of variables.
+     * Units condition the previous d-DNNF, and the other added clauses are conjoined by conditioning it on each of their satisfying assignments.
+     * As this copies the parts of the previous d-DNNF that mention conditioned variables, the derivation is also rejected if the result would be considerably larger than the previous d-DNNF.
+     *
+     * @param previousFormula the previous formula
+     * @param previousDdnnfFile the d-DNNF file of the previous formula
+     * @param formula the formula
+     * @param ddnnfFile the output file
+     * @param maximumDeltaVariables the maximum number of variables in added clauses
+     * @param listener the listener
+     * @return {@code true} if the d-DNNF was written, {@code false} if the formula must be compiled from scratch
+     * @throws IOException if a file cannot be read or written
+     */
+    public static boolean compileIncrementally(
+            BooleanClauseList previousFormula,
+            Path previousDdnnfFile,
+            BooleanClauseList formula,
+            Path ddnnfFile,
+            int maximumDeltaVariables,
+            IDdnnifeListener listener)
+            throws IOException {
+        long compileStart = System.nanoTime();
+        IncrementalCompiler compiler = new IncrementalCompiler(previousFormula, formula, maximumDeltaVariables);
+        if (!compiler.isApplicable()) {
+            return false;
+        }
+        if (!compiler.compile(previousDdnnfFile, ddnnfFile)) {
+            return false;
+        }
+        listener.phaseCompleted(IDdnnifeListener.Phase.COMPILE, System.nanoTime() - compileStart);
+        listener.ddnnfCompiled(Files.size(ddnnfFile));
+        return true;
+    }
+
+    /**
+     * Compiles a formula using d4 and writes the d-DNNF to a stream.
+     * If named pipes are enabled by the system property {@code featjar.ddnnife.namedPipes}, neither the formula nor the d-DNNF is written to disk.
+     * Otherwise, temporary files are used and deleted afterwards.
+     *
+     * @param formula the formula
+     * @param ddnnf the stream to which the d-DNNF is written, is not closed by this method
+     * @param timeout the timeout, {@link Duration#ZERO} for no timeout
+     * @param listener the listener
+     * @throws IOException if the formula cannot be written or d4 produced no output
+     * @throws InterruptedException if the thread is interrupted while waiting for d4
+     * @throws TimeoutException if the compilation exceeds the timeout
+     */
+    public static void compile(
+            BooleanClauseList formula, OutputStream ddnnf, Duration timeout, IDdnnifeListener listener)
+            throws IOException, InterruptedException, TimeoutException {
+        long size;
+        if (NamedPipe.isSupported()) {
+            try (NamedPipe output = NamedPipe.create("d4Output.nnf")) {
+                Future<Long> transfer = output.transfer("d4-output", () -> {
+                    try (InputStream in = Files.newInputStream(output.getPath())) {
+                        return in.transferTo(ddnnf);
+                    }
+                });
+                try {
+                    runD4(formula, output.getPath(), timeout, listener);
+                    size = output.finish(transfer);
+                } finally {
+                    output.cancel(transfer);
+                }
+            }
+        } else {
+            Path ddnnfFile = Files.createTempFile("d4Output", ".nnf");
+            ddnnfFile.toFile().deleteOnExit();
+            try {
+                runD4(formula, ddnnfFile, timeout, listener);
+                size = Files.copy(ddnnfFile, ddnnf);
+            } finally {
+                Files.deleteIfExists(ddnnfFile);
+            }
+        }
+        if (size == 0) {
+            throw new IOException("d4 did not produce a d-DNNF");
+        }
+        listener.ddnnfCompiled(size);
+    }
+
+    static void runD4(BooleanClauseList formula, Path ddnnfFile, Duration timeout, IDdnnifeListener listener)
+            throws IOException, InterruptedException, TimeoutException {
+        boolean listening = listener != IDdnnifeListener.NONE;
+        int maximumVariable = getMaximumVariable(formula);
+        NamedPipe inputPipe = NamedPipe.isSupported() ? NamedPipe.create("d4Input.dimacs") : null;
+        Path d4File;
+        Future<Void> export = null;
+        if (inputPipe != null) {
+            d4File = inputPipe.getPath();
+            export = inputPipe.transfer("d4-input", () -> {
+                long exportStart = listening ? System.nanoTime() : 0;
+                try (OutputStream out = Files.newOutputStream(d4File)) {
+                    export(formula, maximumVariable, out);
+                }
+                if (listening) {
+                    listener.phaseCompleted(IDdnnifeListener.Phase.EXPORT, System.nanoTime() - exportStart);
+                }
+                return null;
+            });
+        } else {
+            d4File = Files.createTempFile("d4Input", ".dimacs");
+            d4File.toFile().deleteOnExit();
+        }
+        try {
+            if (inputPipe == null) {
+                long exportStart = listening ? System.nanoTime() : 0;
+                try (OutputStream out = Files.newOutputStream(d4File)) {
+                    export(formula, maximumVariable, out);
+                }
+                if (listening) {
+                    listener.phaseCompleted(IDdnnifeListener.Phase.EXPORT, System.nanoTime() - exportStart);
+                }
+            }
 
             D4Binary extension = FeatJAR.extension(D4Binary.class);
             ProcessBuilder processBuilder = new ProcessBuilder(
@@ -75,33 +414,108 @@ public class DdnnifeWrapper implements ISolver, AutoCloseable {
                     "-i",
                     d4File.toString(),
                     "-m",
-                    "ddnnf-compiler",
+                    maximumVariable > formula.getVariableCount() ? "proj-ddnnf-compiler" : "ddnnf-compiler",
                     "--dump-ddnnf",
-                    ddnifeFile.toString());
+                    ddnnfFile.toString());
+            processBuilder.redirectOutput(Redirect.DISCARD);
+            processBuilder.redirectError(Redirect.DISCARD);
             FeatJAR.log().debug(() -> String.join(" ", processBuilder.command()));
+            long compileStart = listening ? System.nanoTime() : 0;
             Process start = processBuilder.start();
-            start.waitFor();
-            Files.deleteIfExists(d4File);
+            try {
+                if (timeout.isZero() || timeout.isNegative()) {
+                    start.waitFor();
+                } else if (!start.waitFor(timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                    throw new TimeoutException("d4 exceeded timeout of " + timeout);
+                }
+            } finally {
+                if (start.isAlive()) {
+                    start.destroyForcibly();
+                }
+            }
+            if (inputPipe != null) {
+                inputPipe.finish(export);
+            }
+            if (listening) {
+                listener.phaseCompleted(IDdnnifeListener.Phase.COMPILE, System.nanoTime() - compileStart);
+            }
+        } finally {
+            if (inputPipe != null) {
+                inputPipe.cancel(export);
+                inputPipe.close();
+            } else {
+                Files.deleteIfExists(d4File);
+            }
+        }
+    }
 
-            process = startProcess(ddnifeFile, features);
-            prcIn = new BufferedReader(new InputStreamReader(process.getInputStream()));
-            prcOut = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()));
+    private void start(int features) throws Exception {
+        variableCount = features;
+        processStartTime = System.nanoTime();
+        process = startProcess(ddnifeFile, features);
+        if (process != null) {
+            listener.processStarted();
+        }
+        prcIn = new DdnnifeResponseReader(process.getInputStream());
+        prcOut = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()));
 
-            if (prcIn.ready()) {
-                FeatJAR.log().error(prcIn.lines().reduce("", (s1, s2) -> s1 + s2 + "\n"));
-                close();
+        if (prcIn.available() > 0) {
+            StringBuilder sb = new StringBuilder();
+            for (String line = prcIn.readLine(); line != null; line = prcIn.readLine()) {
+                sb.append(line).append('\n');
             }
-        } catch (Exception e) {
-            FeatJAR.log().error(e);
-            try {
-                close();
-            } catch (Exception e1) {
-                FeatJAR.log().error(e);
+            FeatJAR.log().error(sb.toString());
+            close();
+        }
+    }
+
+    private static int getMaximumVariable(BooleanClauseList formula) {
+        int maximumVariable = formula.getVariableCount();
+        for (BooleanClause clause : formula.getAll()) {
+            for (int literal : clause.get()) {
+                maximumVariable = Math.max(maximumVariable, Math.abs(literal));
+            }
+        }
+        return maximumVariable;
+    }
+
+    /**
+     * Writes a formula in DIMACS format.
+     * Variables that exceed the variable count of the formula are existentially quantified by declaring only the other variables as projected variables.
+     *
+     * @see Projection
+     */
+    private static void export(BooleanClauseList formula, int maximumVariable, OutputStream out) throws IOException {
+        if (maximumVariable <= formula.getVariableCount()) {
+            IO.save(formula, out, new CnfDimacsFormat());
+            return;
+        }
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.US_ASCII));
+        writer.write("p cnf " + maximumVariable + " " + formula.size() + "\n");
+        writer.write("c p show");
+        for (int variable = 1; variable <= formula.getVariableCount(); variable++) {
+            writer.write(' ');
+            writer.write(Integer.toString(variable));
+        }
+        writer.write(" 0\n");
+        for (BooleanClause clause : formula.getAll()) {
+            for (int literal : clause.get()) {
+                writer.write(Integer.toString(literal));
+                writer.write(' ');
             }
+            writer.write("0\n");
         }
+        writer.flush();
     }
 
-    private Process startProcess(Path ddnifeFile, int features) {
+    /**
+     * Starts a ddnnife process in stream mode.
+     *
+     * @param ddnifeFile the d-DNNF file
+     * @param features the number of variables of the compiled formula, {@code -1} if unknown
+     * @return the process, {@code null} if it could not be started
+     */
+    static Process startProcess(Path ddnifeFile, int features) {
         try {
             if (features > -1) {
                 DdnnifeBinary extension = FeatJAR.extension(DdnnifeBinary.class);
@@ -123,19 +537,109 @@ public class DdnnifeWrapper implements ISolver, AutoCloseable {
     }
 
     public Result<String> compute(String query) {
-        if (process != null && process.isAlive()) {
+        return compute(query, DdnnifeResponseReader::readLine);
+    }
+
+    /**
+     * Sends a query to the ddnnife process and decodes its response directly from the output of the process.
+     *
+     * @param <T> the type of the decoded response
+     * @param query the query
+     * @param decoder the decoder for the response
+     * @return the decoded response
+     */
+    public <T> Result<T> compute(String query, DdnnifeResponseReader.Decoder<T> decoder) {
+        if (isAlive()) {
+            timeoutOccurred = false;
+            ScheduledFuture<?> watchdog = startWatchdog();
+            boolean listening = listener != IDdnnifeListener.NONE;
+            long start = listening ? System.nanoTime() : 0;
+            long bytesRead = listening ? prcIn.getBytesRead() : 0;
+            boolean success = false;
             try {
-                prcOut.write(query + "\n");
+                prcOut.write(query);
+                prcOut.write('\n');
                 prcOut.flush();
-                return Result.of(prcIn.readLine());
-            } catch (IOException e) {
+                T response = decoder.decode(prcIn);
+                success = response != null;
+                return success ? Result.of(response) : terminated();
+            } catch (NumberFormatException e) {
                 return Result.empty(e);
+            } catch (EOFException e) {
+                return terminated();
+            } catch (IOException e) {
+                return isAlive() ? Result.empty(e) : terminated();
+            } finally {
+                watchdog.cancel(false);
+                if (listening) {
+                    recordQuery(query, start, success);
+                    listener.bytesReceived(prcIn.getBytesRead() - bytesRead);
+                }
             }
+        } else {
+            return terminated();
+        }
+    }
+
+    private void recordQuery(String query, long start, boolean success) {
+        long now = System.nanoTime();
+        if (!answered && success) {
+            answered = true;
+            listener.phaseCompleted(IDdnnifeListener.Phase.START, now - processStartTime);
+        }
+        int end = query.indexOf(' ');
+        listener.queryCompleted(end < 0 ? query : query.substring(0, end), now - start, success);
+        listener.bytesSent(query.length() + 1);
+    }
+
+    private <T> Result<T> terminated() {
+        if (timeoutOccurred) {
+            return Result.empty(new TimeoutException("ddnnife exceeded timeout of " + timeout));
+        } else if (Thread.currentThread().isInterrupted()) {
+            return Result.empty(new InterruptedException("ddnnife query was cancelled"));
         } else {
             return Result.empty(new Exception("Process was terminated!"));
         }
     }
 
+    /**
+     * Starts to monitor a query of the current thread.
+     * The ddnnife process is destroyed when the {@link #getTimeout() timeout} is exceeded or the thread is interrupted, which unblocks any pending read.
+     *
+     * @return the monitoring task, which must be cancelled when the query is answered
+     */
+    private ScheduledFuture<?> startWatchdog() {
+        Thread owner = Thread.currentThread();
+        boolean hasDeadline = !timeout.isZero() && !timeout.isNegative();
+        long deadline = hasDeadline ? System.nanoTime() + timeout.toNanos() : 0;
+        long period = hasDeadline ? Math.max(1, Math.min(WATCHDOG_PERIOD, timeout.toMillis())) : WATCHDOG_PERIOD;
+        return WATCHDOG.scheduleAtFixedRate(
+                () -> {
+                    if (hasDeadline && System.nanoTime() - deadline >= 0) {
+                        FeatJAR.log().debug("ddnnife exceeded timeout of " + timeout);
+                        timeoutOccurred = true;
+                        cancel();
+                    } else if (owner.isInterrupted()) {
+                        FeatJAR.log().debug("ddnnife query was cancelled");
+                        cancel();
+                    }
+                },
+                period,
+                period,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Cancels all pending queries by destroying the ddnnife process. May be called from any thread.
+     * Subsequent queries of this solver fail.
+     */
+    public void cancel() {
+        Process current = process;
+        if (current != null) {
+            current.destroyForcibly();
+        }
+    }
+
     private static void closeStream(Closeable stream) {
         if (stream != null) {
             try {
@@ -146,57 +650,501 @@ public class DdnnifeWrapper implements ISolver, AutoCloseable {
         }
     }
 
+    /**
+     * Sends multiple queries to the ddnnife process without waiting for each response before sending the next query.
+     * At most {@link #DEFAULT_WINDOW} queries are in flight at the same time.
+     *
+     * @param queries the queries
+     * @return the responses in the order of the queries
+     */
+    public List<Result<String>> compute(List<String> queries) {
+        return compute(queries, DEFAULT_WINDOW);
+    }
+
+    /**
+     * Sends multiple queries to the ddnnife process without waiting for each response before sending the next query.
+     *
+     * @param queries the queries
+     * @param window the maximum number of queries that are sent but not yet answered
+     * @return the responses in the order of the queries
+     */
+    public List<Result<String>> compute(List<String> queries, int window) {
+        List<Result<String>> results = new ArrayList<>(queries.size());
+        compute(queries.iterator(), window, results::add);
+        return results;
+    }
+
+    /**
+     * Sends multiple queries to the ddnnife process without waiting for each response before sending the next query.
+     * Queries are written by a pooled thread, while responses are read and passed to the consumer on the calling thread in the order of the queries.
+     * As the writer is at most {@code window} queries ahead of the reader, the memory used is bounded independently of the number of queries.
+     * The {@link #getTimeout() timeout} applies to the whole batch.
+     * The consumer receives exactly one result per query. If the batch fails, for instance because the timeout is exceeded or the process dies, the process is terminated and every unanswered query receives an empty result.
+     *
+     * @param queries the queries, which are consumed lazily and must be finite
+     * @param window the maximum number of queries that are sent but not yet answered
+     * @param consumer the consumer of the responses
+     */
+    public void compute(Iterator<String> queries, int window, Consumer<Result<String>> consumer) {
+        compute(queries, window, DdnnifeResponseReader::readLine, consumer);
+    }
+
+    /**
+     * Sends multiple queries to the ddnnife process without waiting for each response before sending the next query.
+     * Responses are decoded directly from the output of the process and passed to the consumer in the order of the queries.
+     * A response that cannot be decoded results in an empty result for its query, without affecting subsequent queries.
+     *
+     * @param <T> the type of the decoded responses
+     * @param queries the queries, which are consumed lazily and must be finite
+     * @param window the maximum number of queries that are sent but not yet answered
+     * @param decoder the decoder for the responses
+     * @param consumer the consumer of the decoded responses
+     * @see #compute(Iterator, int, Consumer)
+     */
+    public <T> void compute(
+            Iterator<String> queries,
+            int window,
+            DdnnifeResponseReader.Decoder<T> decoder,
+            Consumer<Result<T>> consumer) {
+        if (window < 1) {
+            throw new IllegalArgumentException(String.valueOf(window));
+        }
+        if (!isAlive()) {
+            while (queries.hasNext()) {
+                queries.next();
+                consumer.accept(terminated());
+            }
+            return;
+        }
+        timeoutOccurred = false;
+        ScheduledFuture<?> watchdog = startWatchdog();
+        boolean listening = listener != IDdnnifeListener.NONE;
+        long bytesRead = listening ? prcIn.getBytesRead() : 0;
+        Semaphore permits = new Semaphore(window);
+        BlockingQueue<Object> sent = new LinkedBlockingQueue<>();
+        BatchWriter writer = new BatchWriter(() -> {
+            try {
+                while (queries.hasNext() && !Thread.currentThread().isInterrupted()) {
+                    if (!permits.tryAcquire()) {
+                        prcOut.flush();
+                        permits.acquire();
+                    }
+                    String query = queries.next();
+                    sent.add(listening ? new SentQuery(query, System.nanoTime()) : Boolean.TRUE);
+                    prcOut.write(query);
+                    prcOut.write('\n');
+                }
+                prcOut.flush();
+                sent.add(BATCH_END);
+            } catch (IOException e) {
+                // unblocks the reader, which waits for the response of the query that was not sent
+                cancel();
+                sent.add(e);
+            } catch (InterruptedException e) {
+                sent.add(BATCH_END);
+            }
+        });
+        Object token = null;
+        Result<T> failure = null;
+        boolean completed = false;
+        try {
+            while (true) {
+                token = sent.take();
+                if (token == BATCH_END) {
+                    token = null;
+                    completed = true;
+                    break;
+                } else if (token instanceof Exception) {
+                    failure = Result.empty((Exception) token);
+                    token = null;
+                    break;
+                }
+                T response;
+                try {
+                    response = decoder.decode(prcIn);
+                } catch (NumberFormatException e) {
+                    recordQuery(token, false);
+                    token = null;
+                    consumer.accept(Result.empty(e));
+                    permits.release();
+                    continue;
+                }
+                if (response == null) {
+                    failure = terminated();
+                    break;
+                }
+                recordQuery(token, true);
+                token = null;
+                consumer.accept(Result.of(response));
+                permits.release();
+            }
+        } catch (EOFException e) {
+            failure = terminated();
+        } catch (IOException e) {
+            failure = isAlive() ? Result.empty(e) : terminated();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure = Result.empty(e);
+        } finally {
+            watchdog.cancel(false);
+            if (!completed) {
+                // unread responses would be attributed to subsequent queries
+                cancel();
+            }
+            writer.stop();
+            if (listening) {
+                listener.bytesReceived(prcIn.getBytesRead() - bytesRead);
+            }
+        }
+        if (failure != null) {
+            if (token != null) {
+                recordQuery(token, false);
+                consumer.accept(failure);
+            }
+            for (Object pending : sent) {
+                if (pending instanceof SentQuery || pending == Boolean.TRUE) {
+                    recordQuery(pending, false);
+                    consumer.accept(failure);
+                }
+            }
+            while (queries.hasNext()) {
+                queries.next();
+                consumer.accept(failure);
+            }
+        }
+    }
+
+    /**
+     * Writes the queries of a batch on a pooled thread, such that a batch does not start a thread of its own.
+     */
+    private static final class BatchWriter implements Runnable {
+        private final Runnable body;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CountDownLatch stopped = new CountDownLatch(1);
+        private final Future<?> future;
+
+        private BatchWriter(Runnable body) {
+            this.body = body;
+            future = WRITERS.submit(this);
+        }
+
+        @Override
+        public void run() {
+            if (claimed.compareAndSet(false, true)) {
+                try {
+                    body.run();
+                } finally {
+                    stopped.countDown();
+                }
+            }
+        }
+
+        /**
+         * Stops the writer and waits until it terminated, such that it does not write to the process after the batch.
+         * The writer is not blocked by a full pipe at this point, as the batch either completed or the process was destroyed.
+         * A writer that has not started yet is prevented from starting.
+         */
+        private void stop() {
+            if (claimed.compareAndSet(false, true)) {
+                return;
+            }
+            future.cancel(true);
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    stopped.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void recordQuery(Object token, boolean success) {
+        if (token instanceof SentQuery) {
+            SentQuery sentQuery = (SentQuery) token;
+            recordQuery(sentQuery.query, sentQuery.time, success);
+        }
+    }
+
+    @Override
     public Result<Boolean> hasSolution() {
-        StringBuilder sb = new StringBuilder("sat");
-        writeAssumptions(sb);
-        return compute(sb.toString()).map("true"::equalsIgnoreCase);
+        return compute(createQuery("sat", null), DdnnifeResponseReader::readBoolean);
     }
 
+    @Override
     public Result<BooleanSolution> getSolution() {
-        StringBuilder sb = new StringBuilder("enum l 1");
-        writeAssumptions(sb);
-        return compute(sb.toString())
-                .map(s -> new BooleanSolution(Arrays.stream(s.split("\\w+"))
-                        .mapToInt(Integer::parseInt)
-                        .toArray()));
+        return compute(createQuery("enum l 1", null), DdnnifeWrapper::readSolution);
     }
 
+    @Override
     public Result<BigInteger> countSolutions() {
-        StringBuilder sb = new StringBuilder("count");
-        writeAssumptions(sb);
-        return compute(sb.toString()).map(BigInteger::new);
+        return compute(createQuery("count", null), DdnnifeResponseReader::readCount);
     }
 
+    @Override
     public Result<BooleanAssignment> core() {
-        StringBuilder sb = new StringBuilder("core");
-        writeAssumptions(sb);
-        return compute(sb.toString())
-                .map(s -> new BooleanAssignment(Arrays.stream(s.split("\\w+"))
-                        .mapToInt(Integer::parseInt)
-                        .toArray()));
+        return compute(createQuery("core", null), DdnnifeWrapper::readAssignment);
+    }
+
+    @Override
+    public List<Result<Boolean>> hasSolution(List<? extends ABooleanAssignment> assignments) {
+        return computeBatch("sat", assignments, DdnnifeResponseReader::readBoolean);
+    }
+
+    @Override
+    public List<Result<BigInteger>> countSolutions(List<? extends ABooleanAssignment> assignments) {
+        return computeBatch("count", assignments, DdnnifeResponseReader::readCount);
+    }
+
+    @Override
+    public List<Result<BooleanAssignment>> core(List<? extends ABooleanAssignment> assignments) {
+        return computeBatch("core", assignments, DdnnifeWrapper::readAssignment);
+    }
+
+    /**
+     * Lazily enumerates all solutions.
+     * The solution space is recursively split into cubes by assigning variables in ascending order until a cube has at most {@code chunkSize} solutions, which are then requested with a single enum query.
+     */
+    @Override
+    public Iterator<BooleanSolution> enumerateSolutions(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException(String.valueOf(chunkSize));
+        }
+        return new CubeIterator(chunkSize);
+    }
+
+    /**
+     * Lazily draws random solutions with ddnnife's uniform sampler.
+     * Each chunk is requested with its own seed, which is derived from the given seed.
+     */
+    @Override
+    public Iterator<BooleanSolution> sampleUniform(long seed, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException(String.valueOf(chunkSize));
+        }
+        Random random = new Random(seed);
+        return new Iterator<BooleanSolution>() {
+            private final ArrayDeque<BooleanSolution> chunk = new ArrayDeque<>();
+            private boolean exhausted;
+
+            @Override
+            public boolean hasNext() {
+                if (chunk.isEmpty() && !exhausted) {
+                    String query = "random l " + chunkSize + " s " + (random.nextLong() & Long.MAX_VALUE);
+                    get(compute(createQuery(query, null), r -> readSolutions(r, chunk)), "Sampling");
+                    exhausted = chunk.isEmpty();
+                }
+                return !chunk.isEmpty();
+            }
+
+            @Override
+            public BooleanSolution next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return chunk.poll();
+            }
+        };
+    }
+
+    private static <T> T get(Result<T> result, String operation) {
+        if (result.isEmpty()) {
+            throw new IllegalStateException(operation + " failed: " + result.printProblems());
+        }
+        return result.get();
+    }
+
+    /**
+     * Decodes all solutions of a response, which are separated by {@code ;}.
+     *
+     * @param reader the reader
+     * @param solutions the collection to which the solutions are added
+     * @return {@code true}
+     * @throws IOException if the response cannot be read
+     */
+    static Boolean readSolutions(DdnnifeResponseReader reader, Collection<BooleanSolution> solutions)
+            throws IOException {
+        do {
+            int count = reader.readLiterals();
+            if (count > 0) {
+                solutions.add(new BooleanSolution(toSolution(reader.getLiterals(), count)));
+            }
+        } while (!reader.isEndOfLine());
+        return Boolean.TRUE;
+    }
+
+    /**
+     * Decodes the first solution of a response and skips any further solutions.
+     *
+     * @param reader the reader
+     * @return the solution
+     * @throws IOException if the response cannot be read
+     */
+    static BooleanSolution readSolution(DdnnifeResponseReader reader) throws IOException {
+        int count = reader.readLiterals();
+        int[] solution = toSolution(reader.getLiterals(), count);
+        while (!reader.isEndOfLine()) {
+            reader.readLiterals();
+        }
+        return new BooleanSolution(solution);
+    }
+
+    /**
+     * Decodes a response consisting of literals.
+     *
+     * @param reader the reader
+     * @return the literals
+     * @throws IOException if the response cannot be read
+     */
+    static BooleanAssignment readAssignment(DdnnifeResponseReader reader) throws IOException {
+        int count = reader.readLiterals();
+        return new BooleanAssignment(Arrays.copyOf(reader.getLiterals(), count));
+    }
+
+    /**
+     * Orders literals by their variable.
+     *
+     * @param literals the literals
+     * @param count the number of literals
+     * @return a new array containing the literals, where the literal of variable {@code i} is at index {@code i - 1} if the literals cover consecutive variables
+     */
+    static int[] toSolution(int[] literals, int count) {
+        int[] solution = new int[count];
+        for (int i = 0; i < count; i++) {
+            int literal = literals[i];
+            int index = Math.abs(literal) - 1;
+            if (index >= count) {
+                return Arrays.copyOf(literals, count);
+            }
+            solution[index] = literal;
+        }
+        return solution;
+    }
+
+    private final class CubeIterator implements Iterator<BooleanSolution> {
+        private final BigInteger chunkSize;
+        private final boolean[] assumed;
+        private final ArrayDeque<int[]> cubes = new ArrayDeque<>();
+        private final ArrayDeque<BooleanSolution> chunk = new ArrayDeque<>();
+
+        private CubeIterator(int chunkSize) {
+            this.chunkSize = BigInteger.valueOf(chunkSize);
+            assumed = new boolean[variableCount + 1];
+            if (assumptions != null) {
+                for (int literal : assumptions.get()) {
+                    assumed[Math.abs(literal)] = true;
+                }
+            }
+            cubes.push(new int[0]);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (chunk.isEmpty() && !cubes.isEmpty()) {
+                int[] cube = cubes.pop();
+                BooleanAssignment cubeAssignment = new BooleanAssignment(cube);
+                BigInteger count = get(
+                        compute(createQuery("count", cubeAssignment), DdnnifeResponseReader::readCount),
+                        "Enumeration");
+                if (count.signum() == 0) {
+                    continue;
+                }
+                if (count.compareTo(chunkSize) <= 0) {
+                    get(
+                            compute(createQuery("enum l " + count, cubeAssignment), r -> readSolutions(r, chunk)),
+                            "Enumeration");
+                } else {
+                    int variable = cube.length == 0 ? 1 : Math.abs(cube[cube.length - 1]) + 1;
+                    while (variable <= variableCount && assumed[variable]) {
+                        variable++;
+                    }
+                    if (variable > variableCount) {
+                        throw new IllegalStateException("No variable left to split " + Arrays.toString(cube));
+                    }
+                    int[] positive = Arrays.copyOf(cube, cube.length + 1);
+                    int[] negative = Arrays.copyOf(cube, cube.length + 1);
+                    positive[cube.length] = variable;
+                    negative[cube.length] = -variable;
+                    cubes.push(negative);
+                    cubes.push(positive);
+                }
+            }
+            return !chunk.isEmpty();
+        }
+
+        @Override
+        public BooleanSolution next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return chunk.poll();
+        }
+    }
+
+    private <T> List<Result<T>> computeBatch(
+            String command, List<? extends ABooleanAssignment> assignments, DdnnifeResponseReader.Decoder<T> decoder) {
+        List<String> queries = new ArrayList<>(assignments.size());
+        for (ABooleanAssignment assignment : assignments) {
+            queries.add(createQuery(command, assignment));
+        }
+        List<Result<T>> results = new ArrayList<>(assignments.size());
+        compute(queries.iterator(), DEFAULT_WINDOW, decoder, results::add);
+        return results;
     }
 
-    private void writeAssumptions(StringBuilder sb) {
-        if (assumptions != null && !assumptions.isEmpty()) {
+    /**
+     * Creates a query for the ddnnife stream API that assumes the {@link #getAssumptions() assumptions} of this solver and the given additional assignment.
+     *
+     * @param command the command, including its parameters
+     * @param assignment the additional assumptions, may be {@code null}
+     * @return the query
+     */
+    public String createQuery(String command, ABooleanAssignment assignment) {
+        StringBuilder sb = new StringBuilder(command);
+        boolean hasAssumptions = assumptions != null && !assumptions.isEmpty();
+        boolean hasAssignment = assignment != null && !assignment.isEmpty();
+        if (hasAssumptions || hasAssignment) {
             sb.append(" a");
-            for (int assumption : assumptions.get()) {
-                sb.append(assumption);
+            if (hasAssumptions) {
+                for (int assumption : assumptions.get()) {
+                    sb.append(' ').append(assumption);
+                }
+            }
+            if (hasAssignment) {
+                for (int literal : assignment.get()) {
+                    sb.append(' ').append(literal);
+                }
             }
         }
+        return sb.toString();
+    }
+
+    @Override
+    public int getVariableCount() {
+        return variableCount;
     }
 
+    @Override
     public ABooleanAssignment getAssumptions() {
         return assumptions;
     }
 
+    @Override
     public void setAssumptions(ABooleanAssignment assumptions) {
         this.assumptions = assumptions;
     }
 
+    @Override
     public Duration getTimeout() {
         return timeout;
     }
 
+    @Override
     public void setTimeout(Duration timeout) {
         Objects.requireNonNull(timeout);
         FeatJAR.log().debug("setting timeout to " + timeout);
@@ -205,27 +1153,82 @@ public class DdnnifeWrapper implements ISolver, AutoCloseable {
 
     @Override
     public boolean isTimeoutOccurred() {
-        // TODO Auto-generated method stub
-        return false;
+        return timeoutOccurred;
+    }
+
+    public IDdnnifeListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Sets the listener that receives measurements of the process and queries of this solver.
+     *
+     * @param listener the listener, {@link IDdnnifeListener#NONE} to disable measurements
+     */
+    public void setListener(IDdnnifeListener listener) {
+        this.listener = Objects.requireNonNull(listener);
+    }
+
+    void setPool(DdnnifeWrapperPool pool, String poolKey) {
+        this.pool = pool;
+        this.poolKey = poolKey;
     }
 
+    String getPoolKey() {
+        return poolKey;
+    }
+
+    /**
+     * Returns whether the ddnnife process of this solver is running.
+     *
+     * @return {@code true} if the process is running, {@code false} otherwise
+     */
+    public boolean isAlive() {
+        return process != null && process.isAlive();
+    }
+
+    /**
+     * Closes this solver. If the solver was leased from a {@link DdnnifeWrapperPool}, it is returned to the pool instead of terminating its process.
+     */
     @Override
-    public void close() throws Exception {
+    public void close() {
+        if (pool != null) {
+            pool.release(this);
+        } else {
+            terminate();
+        }
+    }
+
+    /**
+     * Terminates the ddnnife process of this solver.
+     */
+    void terminate() {
+        if (process != null) {
+            listener.processStopped(System.nanoTime() - processStartTime, !process.isAlive());
+        }
         try {
             if (process != null && process.isAlive()) {
                 prcOut.write("exit\n");
                 prcOut.flush();
                 process.waitFor(1000, TimeUnit.MILLISECONDS);
             }
-        } catch (IOException | InterruptedException e) {
+        } catch (IOException e) {
             FeatJAR.log().error(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } finally {
             closeStream(prcIn);
             closeStream(prcOut);
-            try {
-                Files.deleteIfExists(ddnifeFile);
-            } catch (IOException e) {
-                FeatJAR.log().error(e);
+            if (cache != null) {
+                cache.release(ddnifeFile);
+                cache = null;
+            }
+            if (deleteOnClose && ddnifeFile != null) {
+                try {
+                    Files.deleteIfExists(ddnifeFile);
+                } catch (IOException e) {
+                    FeatJAR.log().error(e);
+                }
             }
             if (process != null) {
                 process.destroyForcibly();
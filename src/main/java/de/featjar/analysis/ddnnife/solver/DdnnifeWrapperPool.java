@@ -0,0 +1,304 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-formula-analysis-ddnnife.
+ *
+ * formula-analysis-ddnnife is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * formula-analysis-ddnnife is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with formula-analysis-ddnnife. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatJAR/formula-analysis-ddnnife> for further information.
+ */
+package de.featjar.analysis.ddnnife.solver;
+
+import de.featjar.base.FeatJAR;
+import de.featjar.formula.analysis.bool.BooleanClauseList;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps ddnnife processes alive between computations.
+ * Solvers are leased per formula and returned to the pool when they are closed.
+ * Subsequent leases for the same formula reuse an idle process instead of starting a new one and loading the d-DNNF again.
+ * Idle processes are terminated after a timeout, and the least recently used idle process is evicted when the number of processes reaches its limit.
+ *
+ * @author Sebastian Krieter
+ */
+public class DdnnifeWrapperPool implements AutoCloseable {
+
+    /**
+     * Pool that does not keep any process alive. Each lease starts a new process that is terminated when it is closed.
+     */
+    public static final DdnnifeWrapperPool NONE = new DdnnifeWrapperPool(0, Duration.ZERO);
+
+    private static final Duration HEALTH_CHECK_TIMEOUT = Duration.ofSeconds(10);
+
+    private final int maximumProcessCount;
+    private final Duration idleTimeout;
+
+    private final LinkedHashMap<DdnnifeWrapper, Long> idleSolvers = new LinkedHashMap<>();
+
+    private ScheduledExecutorService reaper;
+    private int processCount;
+    private long reuseCount;
+    private long startCount;
+    private boolean closed;
+
+    /**
+     * Creates a new pool.
+     *
+     * @param maximumProcessCount the maximum number of processes that are alive at the same time, {@code 0} disables pooling
+     * @param idleTimeout the time after which an unused process is terminated, {@link Duration#ZERO} for no timeout
+     */
+    public DdnnifeWrapperPool(int maximumProcessCount, Duration idleTimeout) {
+        if (maximumProcessCount < 0) {
+            throw new IllegalArgumentException(String.valueOf(maximumProcessCount));
+        }
+        this.maximumProcessCount = maximumProcessCount;
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Leases a solver for the given formula.
+     * The solver must be closed to return it to this pool.
+     * If the pool has reached its maximum number of processes and none of them is idle, this method blocks until a solver is returned.
+     *
+     * @param formula the formula
+     * @param cache the cache of compiled d-DNNF files, may be {@code null}
+     * @param compileTimeout the timeout for compiling the formula if no process for it is running
+     * @return a solver with an empty assumption
+     * @throws InterruptedException if the thread is interrupted while waiting for a process
+     */
+    public DdnnifeWrapper lease(BooleanClauseList formula, DdnnfCache cache, Duration compileTimeout)
+            throws InterruptedException {
+        return lease(formula, cache, compileTimeout, IDdnnifeListener.NONE);
+    }
+
+    /**
+     * Leases a solver for the given formula that reports measurements to the given listener until it is returned.
+     *
+     * @param formula the formula
+     * @param cache the cache of compiled d-DNNF files, may be {@code null}
+     * @param compileTimeout the timeout for compiling the formula if no process for it is running
+     * @param listener the listener for compilation, process, and query measurements
+     * @return a solver with an empty assumption
+     * @throws InterruptedException if the thread is interrupted while waiting for a process
+     * @see #lease(BooleanClauseList, DdnnfCache, Duration)
+     */
+    public DdnnifeWrapper lease(
+            BooleanClauseList formula, DdnnfCache cache, Duration compileTimeout, IDdnnifeListener listener)
+            throws InterruptedException {
+        if (maximumProcessCount == 0) {
+            return new DdnnifeWrapper(formula, cache, compileTimeout, listener);
+        }
+        String key = DdnnfCache.computeKey(formula);
+        synchronized (this) {
+            while (true) {
+                if (closed) {
+                    throw new IllegalStateException("pool was closed");
+                }
+                DdnnifeWrapper idleSolver = takeIdle(key);
+                if (idleSolver != null) {
+                    reuseCount++;
+                    idleSolver.setListener(listener);
+                    return idleSolver;
+                }
+                if (processCount < maximumProcessCount) {
+                    processCount++;
+                    startCount++;
+                    break;
+                }
+                if (!evictEldest()) {
+                    wait();
+                }
+            }
+        }
+        DdnnifeWrapper solver = null;
+        try {
+            solver = new DdnnifeWrapper(formula, cache, compileTimeout, listener);
+            solver.setPool(this, key);
+            return solver;
+        } finally {
+            if (solver == null) {
+                synchronized (this) {
+                    processCount--;
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    private DdnnifeWrapper takeIdle(String key) {
+        Iterator<DdnnifeWrapper> iterator = idleSolvers.keySet().iterator();
+        DdnnifeWrapper match = null;
+        while (iterator.hasNext()) {
+            DdnnifeWrapper solver = iterator.next();
+            if (key.equals(solver.getPoolKey())) {
+                iterator.remove();
+                if (solver.isAlive()) {
+                    match = solver;
+                    break;
+                } else {
+                    FeatJAR.log().debug("discarding dead ddnnife process");
+                    processCount--;
+                    solver.terminate();
+                }
+            }
+        }
+        return match;
+    }
+
+    private boolean evictEldest() {
+        Iterator<DdnnifeWrapper> iterator = idleSolvers.keySet().iterator();
+        if (iterator.hasNext()) {
+            DdnnifeWrapper solver = iterator.next();
+            iterator.remove();
+            processCount--;
+            FeatJAR.log().debug("evicting idle ddnnife process");
+            solver.terminate();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns a solver to this pool. Called when a leased solver is closed.
+     *
+     * @param solver the solver
+     */
+    void release(DdnnifeWrapper solver) {
+        IDdnnifeListener listener = solver.getListener();
+        solver.setListener(IDdnnifeListener.NONE);
+        solver.setAssumptions(null);
+        solver.setTimeout(HEALTH_CHECK_TIMEOUT);
+        boolean healthy = solver.isAlive() && solver.hasSolution().isPresent();
+        solver.setTimeout(Duration.ZERO);
+        synchronized (this) {
+            if (!closed && healthy) {
+                idleSolvers.put(solver, System.nanoTime());
+                scheduleReaper();
+                notifyAll();
+                return;
+            }
+            processCount--;
+            notifyAll();
+        }
+        solver.setListener(listener);
+        solver.terminate();
+    }
+
+    private void scheduleReaper() {
+        if (reaper == null && !idleTimeout.isZero() && !idleTimeout.isNegative()) {
+            reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "ddnnife-pool-reaper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = Math.max(1, idleTimeout.toMillis() / 2);
+            reaper.scheduleWithFixedDelay(this::evictExpired, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Terminates all idle processes that exceeded the idle timeout or are no longer running.
+     */
+    public void evictExpired() {
+        List<DdnnifeWrapper> expired = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            long timeout = idleTimeout.toNanos();
+            Iterator<Entry<DdnnifeWrapper, Long>> iterator =
+                    idleSolvers.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Entry<DdnnifeWrapper, Long> entry = iterator.next();
+                if ((timeout > 0 && now - entry.getValue() >= timeout) || !entry.getKey().isAlive()) {
+                    iterator.remove();
+                    processCount--;
+                    expired.add(entry.getKey());
+                }
+            }
+            if (!expired.isEmpty()) {
+                notifyAll();
+            }
+        }
+        for (DdnnifeWrapper solver : expired) {
+            FeatJAR.log().debug("terminating idle ddnnife process");
+            solver.terminate();
+        }
+    }
+
+    public int getMaximumProcessCount() {
+        return maximumProcessCount;
+    }
+
+    public Duration getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public synchronized int getProcessCount() {
+        return processCount;
+    }
+
+    public synchronized int getIdleCount() {
+        return idleSolvers.size();
+    }
+
+    /**
+     * Returns the number of leases that were served by an already running process.
+     *
+     * @return the reuse count
+     */
+    public synchronized long getReuseCount() {
+        return reuseCount;
+    }
+
+    /**
+     * Returns the number of processes that were started by this pool.
+     *
+     * @return the start count
+     */
+    public synchronized long getStartCount() {
+        return startCount;
+    }
+
+    /**
+     * Terminates all idle processes. Solvers that are still leased are terminated when they are closed.
+     */
+    @Override
+    public void close() {
+        List<DdnnifeWrapper> idle;
+        synchronized (this) {
+            if (this == NONE) {
+                return;
+            }
+            closed = true;
+            idle = new ArrayList<>(idleSolvers.keySet());
+            processCount -= idle.size();
+            idleSolvers.clear();
+            if (reaper != null) {
+                reaper.shutdownNow();
+                reaper = null;
+            }
+            notifyAll();
+        }
+        for (DdnnifeWrapper solver : idle) {
+            solver.terminate();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-formula-analysis-ddnnife.
+ *
+ * formula-analysis-ddnnife is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * formula-analysis-ddnnife is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with formula-analysis-ddnnife. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatJAR/formula-analysis-ddnnife> for further information.
+ */
+package de.featjar.analysis.ddnnife.solver;
+
+import de.featjar.base.data.Result;
+import de.featjar.formula.analysis.ISolver;
+import de.featjar.formula.analysis.bool.ABooleanAssignment;
+import de.featjar.formula.analysis.bool.BooleanAssignment;
+import de.featjar.formula.analysis.bool.BooleanSolution;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Answers queries on a compiled d-DNNF.
+ *
+ * @author Sebastian Krieter
+ */
+public interface IDdnnfSolver extends ISolver, AutoCloseable {
+
+    Result<Boolean> hasSolution();
+
+    Result<BooleanSolution> getSolution();
+
+    Result<BigInteger> countSolutions();
+
+    Result<BooleanAssignment> core();
+
+    /**
+     * Checks satisfiability under each of the given assignments.
+     * Each assignment is assumed in addition to the {@link #getAssumptions() assumptions} of this solver.
+     *
+     * @param assignments the additional assumptions for each query
+     * @return the results in the order of the assignments
+     */
+    List<Result<Boolean>> hasSolution(List<? extends ABooleanAssignment> assignments);
+
+    /**
+     * Counts solutions under each of the given assignments.
+     * Each assignment is assumed in addition to the {@link #getAssumptions() assumptions} of this solver.
+     *
+     * @param assignments the additional assumptions for each query
+     * @return the results in the order of the assignments
+     */
+    List<Result<BigInteger>> countSolutions(List<? extends ABooleanAssignment> assignments);
+
+    /**
+     * Computes the core under each of the given assignments.
+     * Each assignment is assumed in addition to the {@link #getAssumptions() assumptions} of this solver.
+     *
+     * @param assignments the additional assumptions for each query
+     * @return the results in the order of the assignments
+     */
+    List<Result<BooleanAssignment>> core(List<? extends ABooleanAssignment> assignments);
+
+    /**
+     * Counts, for each variable, the solutions in which the variable is positive.
+     * By default, one count query per variable is sent as a single batch.
+     *
+     * @return an array whose first element is the total number of solutions and whose element at index {@code i} is the number of solutions containing variable {@code i}
+     */
+    default Result<BigInteger[]> countLiterals() {
+        int variableCount = getVariableCount();
+        List<BooleanAssignment> assignments = new ArrayList<>(variableCount + 1);
+        assignments.add(new BooleanAssignment());
+        for (int variable = 1; variable <= variableCount; variable++) {
+            assignments.add(new BooleanAssignment(variable));
+        }
+        List<Result<BigInteger>> results = countSolutions(assignments);
+        BigInteger[] counts = new BigInteger[variableCount + 1];
+        for (int i = 0; i <= variableCount; i++) {
+            Result<BigInteger> result = results.get(i);
+            if (result.isEmpty()) {
+                return Result.empty(new Exception("Could not count solutions for variable " + i));
+            }
+            counts[i] = result.get();
+        }
+        return Result.of(counts);
+    }
+
+    /**
+     * Lazily enumerates all solutions.
+     * Solutions are requested in chunks of at most the given size, such that memory stays bounded regardless of the number of solutions.
+     * The iterator throws an {@link IllegalStateException} if a query fails.
+     *
+     * @param chunkSize the maximum number of solutions requested at once
+     * @return an iterator over all solutions
+     */
+    Iterator<BooleanSolution> enumerateSolutions(int chunkSize);
+
+    /**
+     * Lazily draws solutions uniformly at random, with replacement.
+     * Solutions are requested in chunks of at most the given size.
+     * The sequence only depends on the seed and the chunk size.
+     * The iterator is endless unless there is no solution, and throws an {@link IllegalStateException} if a query fails.
+     *
+     * @param seed the random seed
+     * @param chunkSize the maximum number of solutions requested at once
+     * @return an iterator over random solutions
+     */
+    Iterator<BooleanSolution> sampleUniform(long seed, int chunkSize);
+
+    /**
+     * Lazily computes a sample that covers all valid interactions of {@code t} literals.
+     * Each solution is constructed greedily from satisfiability queries, such that it is available as soon as it is complete.
+     * The iterator throws an {@link IllegalStateException} if a query fails.
+     *
+     * @param t the interaction strength
+     * @param seed the random seed used to break ties
+     * @return an iterator over the solutions of the sample
+     */
+    default Iterator<BooleanSolution> sampleTWise(int t, long seed) {
+        return new TWiseSampler(this, t, seed);
+    }
+
+    int getVariableCount();
+
+    ABooleanAssignment getAssumptions();
+
+    void setAssumptions(ABooleanAssignment assumptions);
+
+    Duration getTimeout();
+
+    void setTimeout(Duration timeout);
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-formula-analysis-ddnnife.
+ *
+ * formula-analysis-ddnnife is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * formula-analysis-ddnnife is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with formula-analysis-ddnnife. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatJAR/formula-analysis-ddnnife> for further information.
+ */
+package de.featjar.analysis.ddnnife.solver;
+
+/**
+ * Receives measurements of compiling formulas, running ddnnife processes, and answering queries.
+ * Methods may be called concurrently from multiple threads and should return quickly.
+ * Measurements are only taken if a listener other than {@link #NONE} is set.
+ *
+ * @author Sebastian Krieter
+ * @see DdnnifeMetrics
+ */
+public interface IDdnnifeListener {
+
+    /**
+     * Listener that ignores all measurements.
+     */
+    IDdnnifeListener NONE = new IDdnnifeListener() {};
+
+    /**
+     * Phases of preparing a solver.
+     */
+    enum Phase {
+        /**
+         * Writing a formula to a DIMACS file.
+         */
+        EXPORT,
+        /**
+         * Compiling a DIMACS file into a d-DNNF with d4.
+         */
+        COMPILE,
+        /**
+         * Starting a ddnnife process until it answered its first query, including loading the d-DNNF.
+         */
+        START,
+        /**
+         * Reading a d-DNNF into the JVM.
+         */
+        LOAD,
+        /**
+         * Creating or leasing a solver for an analysis, including all other phases that are required.
+         */
+        INITIALIZE
+    }
+
+    /**
+     * Called when a phase has been completed.
+     *
+     * @param phase the phase
+     * @param nanos the duration of the phase in nanoseconds
+     */
+    default void phaseCompleted(Phase phase, long nanos) {}
+
+    /**
+     * Called when a d-DNNF has been compiled.
+     *
+     * @param fileSize the size of the d-DNNF file in bytes
+     */
+    default void ddnnfCompiled(long fileSize) {}
+
+    /**
+     * Called when a query has been answered or has failed.
+     * For batches, the latency includes the time the query waited for previous queries.
+     *
+     * @param command the command of the query, such as {@code count} or {@code sat}
+     * @param nanos the time between sending the query and receiving its response in nanoseconds
+     * @param success whether a valid response was received
+     */
+    default void queryCompleted(String command, long nanos, boolean success) {}
+
+    /**
+     * Called when queries have been written to a ddnnife process.
+     *
+     * @param bytes the number of bytes
+     */
+    default void bytesSent(long bytes) {}
+
+    /**
+     * Called when responses have been read from a ddnnife process.
+     *
+     * @param bytes the number of bytes
+     */
+    default void bytesReceived(long bytes) {}
+
+    /**
+     * Called when a ddnnife process has been started.
+     */
+    default void processStarted() {}
+
+    /**
+     * Called when a ddnnife process has been terminated.
+     *
+     * @param lifetimeNanos the time the process was running in nanoseconds
+     * @param failed whether the process had stopped on its own or was killed, for example after a timeout, instead of exiting when it was closed
+     */
+    default void processStopped(long lifetimeNanos, boolean failed) {}
+}
@@ -0,0 +1,376 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-formula-analysis-ddnnife.
+ *
+ * formula-analysis-ddnnife is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * formula-analysis-ddnnife is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with formula-analysis-ddnnife. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatJAR/formula-analysis-ddnnife> for further information.
+ */
+package de.featjar.analysis.ddnnife.solver;
+
+import de.featjar.formula.analysis.bool.BooleanClause;
+import de.featjar.formula.analysis.bool.BooleanClauseList;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Derives the d-DNNF of a formula from the d-DNNF of a previous version of it, without calling d4.
+ * This is possible if the formula only adds clauses to the previous formula.
+ * Added unit clauses, including units implied by unit propagation over the added clauses, condition the previous d-DNNF.
+ * The remaining added clauses are enumerated over their variables, and each satisfying assignment conditions a copy of the previous d-DNNF.
+ * The copies are combined by a deterministic disjunction as in {@link CubeCompiler}, and only nodes that mention a conditioned variable are copied.
+ * If the added clauses contain too many variables, or the derived d-DNNF would be more than {@link #MAXIMUM_GROWTH} times as large as the previous one, the formula must be compiled from scratch.
+ *
+ * @author Sebastian Krieter
+ */
+final class IncrementalCompiler {
+
+    /**
+     * Maximum size of a derived d-DNNF relative to the size of the previous d-DNNF, measured in inner nodes and edges.
+     */
+    static final int MAXIMUM_GROWTH = 4;
+
+    private static final int TRUE_ID = 2;
+    private static final int FALSE_ID = 3;
+
+    private final int baseVariableCount;
+    private boolean applicable;
+    private boolean contradiction;
+    private boolean[] conditioned;
+    private final List<int[]> cubes = new ArrayList<>();
+
+    /**
+     * Creates a new compiler and computes the difference between both formulas.
+     *
+     * @param base the previous formula
+     * @param formula the new formula
+     * @param maximumDeltaVariables the maximum number of variables in added clauses that are not units
+     */
+    IncrementalCompiler(BooleanClauseList base, BooleanClauseList formula, int maximumDeltaVariables) {
+        baseVariableCount = base.getVariableCount();
+        int variableCount = formula.getVariableCount();
+        if (variableCount < baseVariableCount) {
+            return;
+        }
+        List<int[]> addedClauses = computeAddedClauses(toSortedClauses(base), toSortedClauses(formula));
+        if (addedClauses == null) {
+            return;
+        }
+        for (int[] clause : addedClauses) {
+            for (int literal : clause) {
+                if (Math.abs(literal) > variableCount) {
+                    return;
+                }
+            }
+        }
+
+        byte[] values = new byte[variableCount + 1];
+        List<int[]> clauses = propagate(addedClauses, values);
+        conditioned = new boolean[variableCount + 1];
+        if (clauses == null) {
+            contradiction = true;
+            applicable = true;
+            return;
+        }
+        int[] deltaVariables = clauses.stream()
+                .flatMapToInt(Arrays::stream)
+                .map(Math::abs)
+                .distinct()
+                .sorted()
+                .toArray();
+        if (deltaVariables.length > maximumDeltaVariables) {
+            return;
+        }
+        applicable = true;
+
+        int[] units = new int[variableCount];
+        int unitCount = 0;
+        for (int variable = 1; variable <= variableCount; variable++) {
+            if (values[variable] != 0) {
+                units[unitCount++] = values[variable] > 0 ? variable : -variable;
+                conditioned[variable] = true;
+            }
+        }
+        for (int variable : deltaVariables) {
+            conditioned[variable] = true;
+        }
+        for (int index = 0; index < 1 << deltaVariables.length; index++) {
+            for (int i = 0; i < deltaVariables.length; i++) {
+                values[deltaVariables[i]] = (byte) (((index >>> i) & 1) == 1 ? 1 : -1);
+            }
+            if (clauses.stream().allMatch(clause -> isSatisfied(clause, values))) {
+                int[] cube = Arrays.copyOf(units, unitCount + deltaVariables.length);
+                for (int i = 0; i < deltaVariables.length; i++) {
+                    cube[unitCount + i] = values[deltaVariables[i]] > 0 ? deltaVariables[i] : -deltaVariables[i];
+                }
+                cubes.add(cube);
+            }
+        }
+    }
+
+    private static List<int[]> toSortedClauses(BooleanClauseList formula) {
+        List<int[]> clauses = new ArrayList<>(formula.size());
+        for (BooleanClause clause : formula.getAll()) {
+            int[] literals = Arrays.copyOf(clause.get(), clause.get().length);
+            Arrays.sort(literals);
+            clauses.add(literals);
+        }
+        clauses.sort(Arrays::compare);
+        return clauses;
+    }
+
+    /**
+     * Computes the clauses of a formula that are not contained in a previous formula.
+     *
+     * @param baseClauses the sorted clauses of the previous formula
+     * @param clauses the sorted clauses of the new formula
+     * @return the added clauses, {@code null} if a clause of the previous formula was removed
+     */
+    private static List<int[]> computeAddedClauses(List<int[]> baseClauses, List<int[]> clauses) {
+        List<int[]> addedClauses = new ArrayList<>();
+        int i = 0;
+        for (int[] clause : clauses) {
+            int comparison = i < baseClauses.size() ? Arrays.compare(baseClauses.get(i), clause) : 1;
+            if (comparison < 0) {
+                return null;
+            } else if (comparison == 0) {
+                i++;
+            } else {
+                addedClauses.add(clause);
+            }
+        }
+        return i == baseClauses.size() ? addedClauses : null;
+    }
+
+    /**
+     * Applies unit propagation to the given clauses.
+     *
+     * @param clauses the clauses
+     * @param values the assignment indexed by variable that receives all units
+     * @return the remaining clauses simplified by the units, {@code null} if a clause is falsified
+     */
+    private static List<int[]> propagate(List<int[]> clauses, byte[] values) {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            List<int[]> remainingClauses = new ArrayList<>(clauses.size());
+            clauses:
+            for (int[] clause : clauses) {
+                int[] remaining = new int[clause.length];
+                int size = 0;
+                for (int literal : clause) {
+                    int value = values[Math.abs(literal)];
+                    if (value == 0) {
+                        remaining[size++] = literal;
+                    } else if ((value > 0) == (literal > 0)) {
+                        continue clauses;
+                    }
+                }
+                if (size == 0) {
+                    return null;
+                } else if (size == 1) {
+                    values[Math.abs(remaining[0])] = (byte) (remaining[0] > 0 ? 1 : -1);
+                    changed = true;
+                } else {
+                    remainingClauses.add(Arrays.copyOf(remaining, size));
+                }
+            }
+            clauses = remainingClauses;
+        }
+        return clauses;
+    }
+
+    private static boolean isSatisfied(int[] clause, byte[] values) {
+        for (int literal : clause) {
+            if ((values[Math.abs(literal)] > 0) == (literal > 0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the new formula can be derived from the previous d-DNNF.
+     *
+     * @return {@code true} if the formula only adds clauses over few variables to the previous formula
+     */
+    boolean isApplicable() {
+        return applicable;
+    }
+
+    int getCubeCount() {
+        return contradiction ? 0 : cubes.size();
+    }
+
+    /**
+     * Writes the d-DNNF of the new formula in d4 format.
+     * All node declarations precede all edges.
+     * Nothing is written if the derived d-DNNF would exceed {@link #MAXIMUM_GROWTH} times the size of the previous one.
+     *
+     * @param baseFile the d-DNNF of the previous formula
+     * @param ddnnfFile the output file
+     * @return {@code true} if the d-DNNF was written, {@code false} if it would be too large
+     * @throws IOException if a file cannot be read or written
+     */
+    boolean compile(Path baseFile, Path ddnnfFile) throws IOException {
+        if (!applicable) {
+            throw new IllegalStateException();
+        }
+        if (contradiction || cubes.isEmpty()) {
+            Files.write(ddnnfFile, "f 1 0\n".getBytes(StandardCharsets.US_ASCII));
+            return true;
+        }
+        Ddnnf ddnnf = Ddnnf.read(baseFile, baseVariableCount);
+        if (ddnnf.getVariableCount() >= conditioned.length) {
+            throw new IOException("d-DNNF in " + baseFile + " contains unknown variables");
+        }
+        byte[] types = ddnnf.getTypes();
+        int[] literals = ddnnf.getLiterals();
+        int[] childOffsets = ddnnf.getChildOffsets();
+        int[] children = ddnnf.getChildren();
+        int nodeCount = types.length;
+
+        boolean[] mentions = new boolean[nodeCount];
+        int[] ids = new int[nodeCount];
+        int nextId = FALSE_ID + 1;
+        int mentioningCount = 0;
+        long baseSize = 0;
+        long mentioningSize = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            if (types[node] == Ddnnf.LITERAL) {
+                mentions[node] = conditioned[Math.abs(literals[node])];
+            } else if (types[node] == Ddnnf.AND || types[node] == Ddnnf.OR) {
+                for (int i = childOffsets[node]; i < childOffsets[node + 1]; i++) {
+                    mentions[node] |= mentions[children[i]];
+                }
+                ids[node] = mentions[node] ? mentioningCount++ : nextId++;
+                long size = 1 + childOffsets[node + 1] - childOffsets[node];
+                baseSize += size;
+                if (mentions[node]) {
+                    mentioningSize += size;
+                }
+            }
+        }
+        long derivedSize = baseSize - mentioningSize + cubes.size() * (mentioningSize + 1);
+        if (derivedSize > MAXIMUM_GROWTH * Math.max(1, baseSize)) {
+            return false;
+        }
+        int sharedEnd = nextId;
+
+        byte[] values = new byte[conditioned.length];
+        try (BufferedWriter out = Files.newBufferedWriter(ddnnfFile, StandardCharsets.US_ASCII)) {
+            out.write("o 1 0\nt " + TRUE_ID + " 0\nf " + FALSE_ID + " 0\n");
+            for (int node = 0; node < nodeCount; node++) {
+                if (!mentions[node] && (types[node] == Ddnnf.AND || types[node] == Ddnnf.OR)) {
+                    writeNode(out, types[node], ids[node]);
+                }
+            }
+            for (int cube = 0; cube < cubes.size(); cube++) {
+                int offset = sharedEnd + cube * mentioningCount;
+                for (int node = 0; node < nodeCount; node++) {
+                    if (mentions[node] && (types[node] == Ddnnf.AND || types[node] == Ddnnf.OR)) {
+                        writeNode(out, types[node], offset + ids[node]);
+                    }
+                }
+            }
+
+            StringBuilder line = new StringBuilder();
+            for (int node = 0; node < nodeCount; node++) {
+                if (!mentions[node]) {
+                    for (int i = childOffsets[node]; i < childOffsets[node + 1]; i++) {
+                        line.setLength(0);
+                        line.append(ids[node]);
+                        appendReference(line, children[i], types, literals, mentions, ids, values, 0);
+                        out.append(line).write(" 0\n");
+                    }
+                }
+            }
+            int root = nodeCount - 1;
+            for (int cube = 0; cube < cubes.size(); cube++) {
+                int offset = sharedEnd + cube * mentioningCount;
+                Arrays.fill(values, (byte) 0);
+                for (int literal : cubes.get(cube)) {
+                    values[Math.abs(literal)] = (byte) (literal > 0 ? 1 : -1);
+                }
+                for (int node = 0; node < nodeCount; node++) {
+                    if (mentions[node]) {
+                        for (int i = childOffsets[node]; i < childOffsets[node + 1]; i++) {
+                            line.setLength(0);
+                            line.append(offset + ids[node]);
+                            appendReference(line, children[i], types, literals, mentions, ids, values, offset);
+                            out.append(line).write(" 0\n");
+                        }
+                    }
+                }
+                line.setLength(0);
+                line.append(1);
+                appendReference(line, root, types, literals, mentions, ids, values, offset);
+                for (int literal : cubes.get(cube)) {
+                    line.append(' ').append(literal);
+                }
+                out.append(line).write(" 0\n");
+            }
+        }
+        return true;
+    }
+
+    private static void writeNode(BufferedWriter out, byte type, int id) throws IOException {
+        out.write(type == Ddnnf.AND ? "a " : "o ");
+        out.write(Integer.toString(id));
+        out.write(" 0\n");
+    }
+
+    /**
+     * Appends the target and, for an unconditioned literal, the literal of an edge to the given node.
+     * Literal nodes are expressed as edges to the true node, and conditioned literals are replaced by a constant.
+     */
+    private static void appendReference(
+            StringBuilder line,
+            int node,
+            byte[] types,
+            int[] literals,
+            boolean[] mentions,
+            int[] ids,
+            byte[] values,
+            int offset) {
+        switch (types[node]) {
+            case Ddnnf.TRUE:
+                line.append(' ').append(TRUE_ID);
+                break;
+            case Ddnnf.FALSE:
+                line.append(' ').append(FALSE_ID);
+                break;
+            case Ddnnf.LITERAL: {
+                int literal = literals[node];
+                if (mentions[node]) {
+                    boolean satisfied = (values[Math.abs(literal)] > 0) == (literal > 0);
+                    line.append(' ').append(satisfied ? TRUE_ID : FALSE_ID);
+                } else {
+                    line.append(' ').append(TRUE_ID).append(' ').append(literal);
+                }
+                break;
+            }
+            default:
+                line.append(' ').append(mentions[node] ? offset + ids[node] : ids[node]);
+                break;
+        }
+    }
+}
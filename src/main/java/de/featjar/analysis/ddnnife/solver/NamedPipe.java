@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-formula-analysis-ddnnife.
+ *
+ * formula-analysis-ddnnife is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * formula-analysis-ddnnife is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with formula-analysis-ddnnife. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatJAR/formula-analysis-ddnnife> for further information.
+ */
+package de.featjar.analysis.ddnnife.solver;
+
+import de.featjar.base.FeatJAR;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.ProcessBuilder.Redirect;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Named pipe (FIFO) in its own temporary directory, through which data is streamed between this JVM and an external process without storing it on disk.
+ * Opening one end of a pipe blocks until the other end is opened.
+ * Therefore, data is transferred on a separate thread, which is unblocked by {@link #release()} once the process at the other end has terminated.
+ * Named pipes are only used if the system property {@value #PROPERTY} is {@code true}, as they require that d4 reads its input and writes its output exactly once and sequentially.
+ *
+ * @author Sebastian Krieter
+ */
+final class NamedPipe implements Closeable {
+
+    /**
+     * System property that enables named pipes.
+     */
+    static final String PROPERTY = "featjar.ddnnife.namedPipes";
+
+    private static final long RELEASE_INTERVAL_MILLIS = 100;
+    private static final int PROBE_RELEASE_ATTEMPTS = 10;
+
+    private static Boolean supported;
+
+    /**
+     * Checks whether named pipes are enabled by the system property {@value #PROPERTY} and work on this system.
+     * The first check probes whether data can be streamed through a named pipe and whether a blocked transfer is {@link #release() released}.
+     *
+     * @return {@code true} if named pipes are enabled and supported, {@code false} otherwise
+     */
+    static synchronized boolean isSupported() {
+        if (!Boolean.getBoolean(PROPERTY)) {
+            return false;
+        }
+        if (supported == null) {
+            supported = false;
+            if (!System.getProperty("os.name", "").toLowerCase().startsWith("windows")) {
+                try {
+                    supported = probe();
+                } catch (IOException e) {
+                    FeatJAR.log().debug("named pipes are not supported: %s", e.getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (!supported) {
+                    FeatJAR.log().debug("named pipes are not supported, using temporary files");
+                }
+            }
+        }
+        return supported;
+    }
+
+    private static boolean probe() throws IOException, InterruptedException {
+        byte[] data = "probe".getBytes(StandardCharsets.US_ASCII);
+        try (NamedPipe pipe = create("probe")) {
+            Future<Void> write = pipe.transfer("ddnnife-pipe-probe", () -> {
+                Files.write(pipe.getPath(), data);
+                return null;
+            });
+            byte[] read = Files.readAllBytes(pipe.getPath());
+            pipe.finish(write);
+            if (!Arrays.equals(data, read)) {
+                return false;
+            }
+            // a transfer without a counterpart must be released
+            Future<Void> blocked = pipe.transfer("ddnnife-pipe-probe", () -> {
+                Files.write(pipe.getPath(), data);
+                return null;
+            });
+            for (int i = 0; i < PROBE_RELEASE_ATTEMPTS && !blocked.isDone(); i++) {
+                pipe.release();
+                try {
+                    blocked.get(RELEASE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (ExecutionException | TimeoutException e) {
+                    // only termination matters
+                }
+            }
+            return blocked.isDone();
+        }
+    }
+
+    /**
+     * Creates a new named pipe.
+     *
+     * @param name the file name of the pipe
+     * @return the pipe
+     * @throws IOException if the pipe cannot be created
+     */
+    static NamedPipe create(String name) throws IOException {
+        Path directory = Files.createTempDirectory("ddnnifePipe");
+        Path path = directory.resolve(name);
+        try {
+            Process mkfifo = new ProcessBuilder("mkfifo", path.toString())
+                    .redirectOutput(Redirect.DISCARD)
+                    .redirectError(Redirect.DISCARD)
+                    .start();
+            if (mkfifo.waitFor() != 0 || !Files.exists(path)) {
+                throw new IOException("Could not create named pipe " + path);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Files.deleteIfExists(directory);
+            throw new InterruptedIOException("Interrupted while creating named pipe " + path);
+        } catch (IOException e) {
+            Files.deleteIfExists(path);
+            Files.deleteIfExists(directory);
+            throw e;
+        }
+        return new NamedPipe(directory, path);
+    }
+
+    private final Path directory;
+    private final Path path;
+
+    private NamedPipe(Path directory, Path path) {
+        this.directory = directory;
+        this.path = path;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * Briefly opens the pipe for reading and writing, which does not block.
+     * A thread that waits for the other end of the pipe is thereby unblocked, and subsequently reaches the end of the stream or fails to write.
+     */
+    void release() {
+        try {
+            // opening both ends is sufficient
+            FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE).close();
+        } catch (IOException e) {
+            FeatJAR.log().debug("could not release named pipe %s", path);
+        }
+    }
+
+    /**
+     * Starts a transfer through this pipe on a new daemon thread.
+     *
+     * @param <T> the type of the result
+     * @param name the name of the thread
+     * @param transfer the task that opens this pipe and reads from or writes to it
+     * @return the pending result of the transfer
+     */
+    <T> Future<T> transfer(String name, Callable<T> transfer) {
+        FutureTask<T> task = new FutureTask<>(transfer);
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        return task;
+    }
+
+    /**
+     * Waits for a transfer to finish after the process at the other end of this pipe has terminated.
+     *
+     * @param <T> the type of the result
+     * @param transfer the pending result of the transfer
+     * @return the result of the transfer
+     * @throws IOException if the transfer failed
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    <T> T finish(Future<T> transfer) throws IOException, InterruptedException {
+        while (!transfer.isDone()) {
+            release();
+            try {
+                return transfer.get(RELEASE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // the transfer was not yet blocked on this pipe
+            } catch (ExecutionException e) {
+                break;
+            }
+        }
+        try {
+            return transfer.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Waits for a transfer to finish after the process at the other end of this pipe has terminated, ignoring its result.
+     *
+     * @param transfer the pending result of the transfer
+     */
+    void cancel(Future<?> transfer) {
+        boolean interrupted = false;
+        while (!transfer.isDone()) {
+            release();
+            try {
+                transfer.get(RELEASE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (ExecutionException | TimeoutException e) {
+                // result is ignored
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Releases and deletes this pipe.
+     */
+    @Override
+    public void close() throws IOException {
+        release();
+        Files.deleteIfExists(path);
+        Files.deleteIfExists(directory);
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-formula-analysis-ddnnife.
+ *
+ * formula-analysis-ddnnife is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * formula-analysis-ddnnife is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with formula-analysis-ddnnife. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatJAR/formula-analysis-ddnnife> for further information.
+ */
+package de.featjar.analysis.ddnnife.solver;
+
+import de.featjar.base.data.Result;
+import de.featjar.formula.analysis.bool.ABooleanAssignment;
+import de.featjar.formula.analysis.bool.BooleanAssignment;
+import de.featjar.formula.analysis.bool.BooleanSolution;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Translates between the original variables of a formula and the renumbered variables of its {@link Projection}.
+ * Solutions only contain projected variables, and the variable count is the largest projected variable.
+ *
+ * @author Sebastian Krieter
+ */
+class ProjectedDdnnfSolver implements IDdnnfSolver {
+
+    private final IDdnnfSolver solver;
+    private final Projection projection;
+
+    private ABooleanAssignment assumptions;
+
+    ProjectedDdnnfSolver(IDdnnfSolver solver, Projection projection) {
+        this.solver = solver;
+        this.projection = projection;
+        assumptions = solver.getAssumptions() == null ? null : projection.toOriginal(solver.getAssumptions());
+    }
+
+    @Override
+    public Result<Boolean> hasSolution() {
+        return solver.hasSolution();
+    }
+
+    @Override
+    public Result<BooleanSolution> getSolution() {
+        return solver.getSolution().map(projection::toOriginalSolution);
+    }
+
+    @Override
+    public Result<BigInteger> countSolutions() {
+        return solver.countSolutions();
+    }
+
+    @Override
+    public Result<BooleanAssignment> core() {
+        return solver.core().map(projection::toOriginal);
+    }
+
+    @Override
+    public List<Result<Boolean>> hasSolution(List<? extends ABooleanAssignment> assignments) {
+        return solver.hasSolution(toProjected(assignments));
+    }
+
+    @Override
+    public List<Result<BigInteger>> countSolutions(List<? extends ABooleanAssignment> assignments) {
+        return solver.countSolutions(toProjected(assignments));
+    }
+
+    @Override
+    public List<Result<BooleanAssignment>> core(List<? extends ABooleanAssignment> assignments) {
+        return solver.core(toProjected(assignments)).stream()
+                .map(result -> result.map(projection::toOriginal))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * {@inheritDoc}
+     * Variables that are not projected have a count of zero.
+     */
+    @Override
+    public Result<BigInteger[]> countLiterals() {
+        return solver.countLiterals().map(counts -> {
+            BigInteger[] mapped = new BigInteger[getVariableCount() + 1];
+            Arrays.fill(mapped, BigInteger.ZERO);
+            mapped[0] = counts[0];
+            for (int variable = 1; variable < counts.length; variable++) {
+                mapped[projection.toOriginal(variable)] = counts[variable];
+            }
+            return mapped;
+        });
+    }
+
+    @Override
+    public Iterator<BooleanSolution> enumerateSolutions(int chunkSize) {
+        return toOriginal(solver.enumerateSolutions(chunkSize));
+    }
+
+    @Override
+    public Iterator<BooleanSolution> sampleUniform(long seed, int chunkSize) {
+        return toOriginal(solver.sampleUniform(seed, chunkSize));
+    }
+
+    @Override
+    public Iterator<BooleanSolution> sampleTWise(int t, long seed) {
+        return toOriginal(solver.sampleTWise(t, seed));
+    }
+
+    private List<BooleanAssignment> toProjected(List<? extends ABooleanAssignment> assignments) {
+        List<BooleanAssignment> mapped = new ArrayList<>(assignments.size());
+        for (ABooleanAssignment assignment : assignments) {
+            mapped.add(projection.toProjected(assignment));
+        }
+        return mapped;
+    }
+
+    private Iterator<BooleanSolution> toOriginal(Iterator<BooleanSolution> solutions) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return solutions.hasNext();
+            }
+
+            @Override
+            public BooleanSolution next() {
+                return projection.toOriginalSolution(solutions.next());
+            }
+        };
+    }
+
+    @Override
+    public int getVariableCount() {
+        return projection.getMaximumVariable();
+    }
+
+    @Override
+    public ABooleanAssignment getAssumptions() {
+        return assumptions;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalArgumentException if an assumption contains a variable that is not projected
+     */
+    @Override
+    public void setAssumptions(ABooleanAssignment assumptions) {
+        solver.setAssumptions(projection.toProjected(assumptions));
+        this.assumptions = assumptions;
+    }
+
+    @Override
+    public Duration getTimeout() {
+        return solver.getTimeout();
+    }
+
+    @Override
+    public void setTimeout(Duration timeout) {
+        solver.setTimeout(timeout);
+    }
+
+    @Override
+    public boolean isTimeoutOccurred() {
+        return solver.isTimeoutOccurred();
+    }
+
+    @Override
+    public void close() throws Exception {
+        solver.close();
+    }
+}
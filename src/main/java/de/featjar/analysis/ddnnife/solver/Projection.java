@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-formula-analysis-ddnnife.
+ *
+ * formula-analysis-ddnnife is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * formula-analysis-ddnnife is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with formula-analysis-ddnnife. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatJAR/formula-analysis-ddnnife> for further information.
+ */
+package de.featjar.analysis.ddnnife.solver;
+
+import de.featjar.formula.analysis.bool.ABooleanAssignment;
+import de.featjar.formula.analysis.bool.BooleanAssignment;
+import de.featjar.formula.analysis.bool.BooleanClause;
+import de.featjar.formula.analysis.bool.BooleanClauseList;
+import de.featjar.formula.analysis.bool.BooleanSolution;
+import java.util.Arrays;
+
+/**
+ * Projection of a formula onto a subset of its variables, such as the features of a formula that contains auxiliary variables from a CNF transformation.
+ * The projected variables are renumbered to {@code 1} to {@code k}, and all other variables to {@code k + 1} and above.
+ * A clause list whose literals exceed its {@link BooleanClauseList#getVariableCount() variable count} is compiled by d4 in projected mode, such that the d-DNNF only represents the projected variables and counts solutions of the projection.
+ *
+ * @author Sebastian Krieter
+ */
+public final class Projection {
+
+    private final int variableCount;
+    private final int[] projected;
+    private final int[] toProjected;
+    private final int[] toOriginal;
+
+    /**
+     * Creates a new projection.
+     *
+     * @param variableCount the number of variables of the original formula
+     * @param variables the variables onto which the formula is projected, the sign of literals is ignored
+     */
+    public Projection(int variableCount, int... variables) {
+        this.variableCount = variableCount;
+        projected = Arrays.stream(variables).map(Math::abs).distinct().sorted().toArray();
+        if (projected.length > 0 && (projected[0] < 1 || projected[projected.length - 1] > variableCount)) {
+            throw new IllegalArgumentException("Projected variable out of range: " + Arrays.toString(variables));
+        }
+        toProjected = new int[variableCount + 1];
+        toOriginal = new int[projected.length + 1];
+        int index = 1;
+        for (int variable : projected) {
+            toOriginal[index] = variable;
+            toProjected[variable] = index++;
+        }
+        for (int variable = 1; variable <= variableCount; variable++) {
+            if (toProjected[variable] == 0) {
+                toProjected[variable] = index++;
+            }
+        }
+    }
+
+    /**
+     * Renumbers a formula according to this projection.
+     * The variable count of the result is the number of projected variables, all other variables exceed it.
+     *
+     * @param formula the formula
+     * @return the renumbered formula
+     */
+    public BooleanClauseList apply(BooleanClauseList formula) {
+        BooleanClauseList renumbered = new BooleanClauseList(projected.length);
+        for (BooleanClause clause : formula.getAll()) {
+            int[] literals = clause.get();
+            int[] mapped = new int[literals.length];
+            for (int i = 0; i < literals.length; i++) {
+                int variable = toProjected[Math.abs(literals[i])];
+                mapped[i] = literals[i] > 0 ? variable : -variable;
+            }
+            renumbered.add(new BooleanClause(mapped));
+        }
+        return renumbered;
+    }
+
+    /**
+     * Wraps a solver for the {@link #apply(BooleanClauseList) renumbered} formula, such that assumptions and results use the original variables.
+     *
+     * @param solver the solver
+     * @return the wrapped solver
+     */
+    public IDdnnfSolver wrap(IDdnnfSolver solver) {
+        return new ProjectedDdnnfSolver(solver, this);
+    }
+
+    /**
+     * Maps a literal of the original formula to the renumbered formula.
+     *
+     * @param literal the literal
+     * @return the renumbered literal
+     * @throws IllegalArgumentException if the variable is not projected
+     */
+    public int toProjected(int literal) {
+        int variable = toProjected[Math.abs(literal)];
+        if (variable > projected.length) {
+            throw new IllegalArgumentException("Variable is not projected: " + literal);
+        }
+        return literal > 0 ? variable : -variable;
+    }
+
+    /**
+     * Maps a literal of the renumbered formula to the original formula.
+     *
+     * @param literal the literal
+     * @return the original literal
+     */
+    public int toOriginal(int literal) {
+        int variable = toOriginal[Math.abs(literal)];
+        return literal > 0 ? variable : -variable;
+    }
+
+    BooleanAssignment toProjected(ABooleanAssignment assignment) {
+        if (assignment == null) {
+            return null;
+        }
+        int[] literals = assignment.get();
+        int[] mapped = new int[literals.length];
+        for (int i = 0; i < literals.length; i++) {
+            mapped[i] = toProjected(literals[i]);
+        }
+        return new BooleanAssignment(mapped);
+    }
+
+    BooleanAssignment toOriginal(ABooleanAssignment assignment) {
+        int[] literals = assignment.get();
+        int[] mapped = new int[literals.length];
+        int size = 0;
+        for (int literal : literals) {
+            if (literal != 0) {
+                mapped[size++] = toOriginal(literal);
+            }
+        }
+        return new BooleanAssignment(Arrays.copyOf(mapped, size));
+    }
+
+    BooleanSolution toOriginalSolution(ABooleanAssignment solution) {
+        int[] mapped = new int[getMaximumVariable()];
+        for (int literal : solution.get()) {
+            if (literal != 0) {
+                int original = toOriginal(literal);
+                mapped[Math.abs(original) - 1] = original;
+            }
+        }
+        return new BooleanSolution(mapped);
+    }
+
+    public int getVariableCount() {
+        return variableCount;
+    }
+
+    /**
+     * Returns the projected variables in ascending order.
+     *
+     * @return the projected variables
+     */
+    public int[] getVariables() {
+        return Arrays.copyOf(projected, projected.length);
+    }
+
+    /**
+     * Returns the largest projected variable, which is the variable count of solutions of a wrapped solver.
+     *
+     * @return the largest projected variable, {@code 0} if no variable is projected
+     */
+    public int getMaximumVariable() {
+        return projected.length == 0 ? 0 : projected[projected.length - 1];
+    }
+}
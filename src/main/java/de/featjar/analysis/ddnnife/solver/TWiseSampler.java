@@ -0,0 +1,298 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-formula-analysis-ddnnife.
+ *
+ * formula-analysis-ddnnife is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * formula-analysis-ddnnife is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with formula-analysis-ddnnife. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatJAR/formula-analysis-ddnnife> for further information.
+ */
+package de.featjar.analysis.ddnnife.solver;
+
+import de.featjar.base.data.Result;
+import de.featjar.formula.analysis.bool.BooleanAssignment;
+import de.featjar.formula.analysis.bool.BooleanSolution;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Greedily constructs a t-wise covering sample with satisfiability queries on a {@link IDdnnfSolver}.
+ * Each solution starts with the first valid interaction that is not yet covered.
+ * The remaining variables are then assigned one by one, preferring the value that covers more uncovered interactions with the already assigned variables.
+ * Interactions are tracked in a bit set indexed by the combinatorial rank of their variables and the signs of their literals.
+ * If a query fails, {@link #hasNext()} and {@link #next()} throw an {@link IllegalStateException}, which propagates through any stream over this iterator.
+ *
+ * @author Sebastian Krieter
+ */
+class TWiseSampler implements Iterator<BooleanSolution> {
+
+    private final IDdnnfSolver solver;
+    private final Random random;
+
+    private int t;
+    private int[] variables;
+    private int[] core;
+    private long[][] binomials;
+    private int interactionCount;
+    private BitSet covered;
+    private int cursor;
+
+    private byte[] signs;
+    private int[] assigned;
+    private int assignedCount;
+    private int[] combination;
+    private int[] positions;
+
+    private boolean initialized;
+    private BooleanSolution next;
+
+    TWiseSampler(IDdnnfSolver solver, int t, long seed) {
+        if (t < 1) {
+            throw new IllegalArgumentException(String.valueOf(t));
+        }
+        this.solver = solver;
+        this.t = t;
+        random = new Random(seed);
+    }
+
+    private void initialize() {
+        initialized = true;
+        if (!get(solver.hasSolution())) {
+            return;
+        }
+        core = get(solver.core()).get();
+        boolean[] fixed = new boolean[solver.getVariableCount() + 1];
+        for (int literal : core) {
+            fixed[Math.abs(literal)] = true;
+        }
+        variables = new int[fixed.length - 1 - core.length];
+        for (int variable = 1, i = 0; variable < fixed.length; variable++) {
+            if (!fixed[variable]) {
+                variables[i++] = variable;
+            }
+        }
+        for (int i = variables.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = variables[i];
+            variables[i] = variables[j];
+            variables[j] = swap;
+        }
+
+        t = Math.min(t, variables.length);
+        binomials = new long[variables.length + 1][t + 1];
+        for (int n = 0; n <= variables.length; n++) {
+            binomials[n][0] = 1;
+            for (int k = 1; k <= Math.min(n, t); k++) {
+                binomials[n][k] = Math.min(Integer.MAX_VALUE + 1L, binomials[n - 1][k - 1] + binomials[n - 1][k]);
+            }
+        }
+        long count = binomials[variables.length][t] << t;
+        if (count > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many interactions for t = " + t);
+        }
+        interactionCount = (int) count;
+        covered = new BitSet(interactionCount);
+        signs = new byte[variables.length];
+        assigned = new int[variables.length];
+        combination = new int[t];
+        positions = new int[t];
+        next = createSolution();
+    }
+
+    /**
+     * Creates the next solution of the sample, starting from the next uncovered valid interaction.
+     *
+     * @return the solution, or {@code null} if all valid interactions are covered
+     */
+    private BooleanSolution createSolution() {
+        while (true) {
+            cursor = covered.nextClearBit(cursor);
+            if (cursor >= interactionCount) {
+                return null;
+            }
+            decode(cursor);
+            if (isSatisfiable()) {
+                break;
+            }
+            covered.set(cursor);
+        }
+
+        for (int position = 0; position < variables.length; position++) {
+            if (signs[position] != 0) {
+                continue;
+            }
+            int positive = countUncovered(position, (byte) 1);
+            int negative = countUncovered(position, (byte) -1);
+            byte sign = positive > negative ? 1 : positive < negative ? -1 : random.nextBoolean() ? (byte) 1 : -1;
+            assign(position, sign);
+            if (!isSatisfiable()) {
+                signs[position] = (byte) -sign;
+            }
+        }
+
+        int[] solution = new int[solver.getVariableCount()];
+        for (int literal : core) {
+            solution[Math.abs(literal) - 1] = literal;
+        }
+        for (int position = 0; position < variables.length; position++) {
+            int variable = variables[position];
+            solution[variable - 1] = signs[position] * variable;
+        }
+        markCovered();
+        return new BooleanSolution(solution);
+    }
+
+    /**
+     * Resets the current partial solution to the literals of an interaction.
+     *
+     * @param interaction the index of the interaction
+     */
+    private void decode(int interaction) {
+        Arrays.fill(signs, (byte) 0);
+        assignedCount = 0;
+        long rank = interaction >>> t;
+        int[] selected = new int[t];
+        for (int i = t - 1, n = variables.length - 1; i >= 0; i--) {
+            while (binomials[n][i + 1] > rank) {
+                n--;
+            }
+            selected[i] = n;
+            rank -= binomials[n][i + 1];
+            n--;
+        }
+        for (int i = 0; i < t; i++) {
+            assign(selected[i], ((interaction >>> i) & 1) == 1 ? (byte) 1 : -1);
+        }
+    }
+
+    private void assign(int position, byte sign) {
+        signs[position] = sign;
+        int i = assignedCount++;
+        while (i > 0 && assigned[i - 1] > position) {
+            assigned[i] = assigned[i - 1];
+            i--;
+        }
+        assigned[i] = position;
+    }
+
+    private int countUncovered(int position, byte sign) {
+        int k = t - 1;
+        if (assignedCount < k) {
+            return 0;
+        }
+        signs[position] = sign;
+        int count = 0;
+        for (int i = 0; i < k; i++) {
+            combination[i] = i;
+        }
+        do {
+            int j = 0;
+            for (int i = 0; i < k; i++) {
+                int other = assigned[combination[i]];
+                if (j == i && other > position) {
+                    positions[j++] = position;
+                }
+                positions[j++] = other;
+            }
+            if (j == k) {
+                positions[j] = position;
+            }
+            if (!covered.get(index())) {
+                count++;
+            }
+        } while (nextCombination(k, assignedCount));
+        signs[position] = 0;
+        return count;
+    }
+
+    private void markCovered() {
+        for (int i = 0; i < t; i++) {
+            combination[i] = i;
+        }
+        do {
+            System.arraycopy(combination, 0, positions, 0, t);
+            covered.set(index());
+        } while (nextCombination(t, variables.length));
+    }
+
+    private boolean nextCombination(int k, int n) {
+        int i = k - 1;
+        while (i >= 0 && combination[i] == n - k + i) {
+            i--;
+        }
+        if (i < 0) {
+            return false;
+        }
+        combination[i]++;
+        for (int j = i + 1; j < k; j++) {
+            combination[j] = combination[j - 1] + 1;
+        }
+        return true;
+    }
+
+    /**
+     * Computes the index of the interaction formed by the current signs at the sorted {@link #positions}.
+     *
+     * @return the index of the interaction
+     */
+    private int index() {
+        long rank = 0;
+        int mask = 0;
+        for (int i = 0; i < t; i++) {
+            rank += binomials[positions[i]][i + 1];
+            if (signs[positions[i]] > 0) {
+                mask |= 1 << i;
+            }
+        }
+        return (int) (rank << t) | mask;
+    }
+
+    private boolean isSatisfiable() {
+        int[] literals = new int[assignedCount];
+        for (int i = 0; i < assignedCount; i++) {
+            int position = assigned[i];
+            literals[i] = signs[position] * variables[position];
+        }
+        return get(solver.hasSolution(List.of(new BooleanAssignment(literals))).get(0));
+    }
+
+    private static <T> T get(Result<T> result) {
+        if (result.isEmpty()) {
+            throw new IllegalStateException("Sampling failed: " + result.printProblems());
+        }
+        return result.get();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!initialized) {
+            initialize();
+        }
+        return next != null;
+    }
+
+    @Override
+    public BooleanSolution next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        BooleanSolution solution = next;
+        next = createSolution();
+        return solution;
+    }
+}
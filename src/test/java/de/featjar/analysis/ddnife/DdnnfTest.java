@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-formula-analysis-ddnnife.
+ *
+ * formula-analysis-ddnnife is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * formula-analysis-ddnnife is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with formula-analysis-ddnnife. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatJAR/formula-analysis-ddnnife> for further information.
+ */
+package de.featjar.analysis.ddnife;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.featjar.analysis.ddnnife.solver.Ddnnf;
+import de.featjar.analysis.ddnnife.solver.DdnnfSolver;
+import de.featjar.base.data.Result;
+import de.featjar.formula.analysis.bool.BooleanAssignment;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+public class DdnnfTest {
+
+    // (1 or 2) and (not 1 or 3) over four variables
+    private static final String D4 = "o 1 0\n" + "t 2 0\n" + "a 3 0\n" + "o 4 0\n" + "1 3 1 3 0\n" + "1 4 -1 0\n"
+            + "3 2 0\n" + "4 2 2 0\n";
+
+    @Test
+    public void count() throws IOException {
+        Ddnnf ddnnf = Ddnnf.read(new StringReader(D4), 4);
+        assertEquals(BigInteger.valueOf(8), ddnnf.count());
+        assertEquals(BigInteger.valueOf(4), ddnnf.count(1));
+        assertEquals(BigInteger.valueOf(2), ddnnf.count(-1, 4));
+        assertEquals(BigInteger.ZERO, ddnnf.count(1, -3));
+        assertEquals(BigInteger.ZERO, ddnnf.count(1, -1));
+    }
+
+    @Test
+    public void countOverflow() throws IOException {
+        Ddnnf ddnnf = Ddnnf.read(new StringReader(D4), 100);
+        assertEquals(BigInteger.valueOf(8).shiftLeft(96), ddnnf.count());
+        assertEquals(BigInteger.valueOf(4).shiftLeft(96), ddnnf.count(1));
+    }
+
+    @Test
+    public void countLiterals() throws IOException {
+        Ddnnf ddnnf = Ddnnf.read(new StringReader(D4), 4);
+        BigInteger[] counts = ddnnf.countLiterals();
+        assertEquals(BigInteger.valueOf(8), counts[0]);
+        assertEquals(BigInteger.valueOf(4), counts[1]);
+        assertEquals(BigInteger.valueOf(6), counts[2]);
+        assertEquals(BigInteger.valueOf(6), counts[3]);
+        assertEquals(BigInteger.valueOf(4), counts[4]);
+    }
+
+    @Test
+    public void satAndCore() throws IOException {
+        Ddnnf ddnnf = Ddnnf.read(new StringReader(D4), 4);
+        assertTrue(ddnnf.isSatisfiable());
+        assertFalse(ddnnf.isSatisfiable(-2, -3));
+        assertArrayEquals(new int[0], ddnnf.core());
+        assertArrayEquals(new int[] {1, 3}, ddnnf.core(1));
+        assertArrayEquals(new int[] {-1, 2, -3}, ddnnf.core(-3));
+    }
+
+    @Test
+    public void solution() throws IOException {
+        Ddnnf ddnnf = Ddnnf.read(new StringReader(D4), 4);
+        int[] solution = ddnnf.getSolution(4);
+        assertTrue((solution[0] > 0 || solution[1] > 0) && (solution[0] < 0 || solution[2] > 0));
+        assertEquals(4, solution[3]);
+        assertNull(ddnnf.getSolution(-2, -3));
+    }
+
+    @Test
+    public void enumerateAndOfOrs() throws IOException {
+        // (1 or -1) and (2 or -2), such that the second or node is reset after the first one is exhausted
+        Ddnnf ddnnf = Ddnnf.read(
+                new StringReader("a 1 0\n" + "o 2 0\n" + "o 3 0\n" + "t 4 0\n" + "1 2 0\n" + "1 3 0\n"
+                        + "2 4 1 0\n" + "2 4 -1 0\n" + "3 4 2 0\n" + "3 4 -2 0\n"),
+                2);
+        assertEquals(BigInteger.valueOf(4), ddnnf.count());
+        Set<List<Integer>> solutions = new HashSet<>();
+        ddnnf.enumerate().forEachRemaining(solution -> solutions.add(
+                Arrays.stream(solution).boxed().collect(Collectors.toList())));
+        assertEquals(4, solutions.size());
+        assertTrue(solutions.contains(Arrays.asList(-1, 2)));
+
+        Ddnnf gaps = Ddnnf.read(new StringReader(D4), 4);
+        Set<List<Integer>> gapSolutions = new HashSet<>();
+        gaps.enumerate().forEachRemaining(solution -> gapSolutions.add(
+                Arrays.stream(solution).boxed().collect(Collectors.toList())));
+        assertEquals(gaps.count().intValue(), gapSolutions.size());
+    }
+
+    @Test
+    public void c2d() throws IOException {
+        Ddnnf ddnnf = Ddnnf.read(new StringReader("nnf 5 4 2\nL 1\nL 2\nA 2 0 1\nL -1\nO 1 2 2 3\n"), 2);
+        assertEquals(BigInteger.valueOf(3), ddnnf.count());
+        assertArrayEquals(new int[] {1, 2}, ddnnf.core(1));
+    }
+
+    @Test
+    public void solverTimeout() throws IOException {
+        DdnnfSolver solver = new DdnnfSolver(Ddnnf.read(new StringReader(D4), 4));
+        solver.setTimeout(Duration.ofNanos(1));
+        assertTrue(solver.countSolutions().isEmpty());
+        assertTrue(solver.isTimeoutOccurred());
+        List<Result<BigInteger>> counts =
+                solver.countSolutions(Arrays.asList(new BooleanAssignment(1), new BooleanAssignment(-1)));
+        assertEquals(2, counts.size());
+        assertTrue(counts.stream().allMatch(Result::isEmpty));
+        assertThrows(IllegalStateException.class, () -> solver.enumerateSolutions(1));
+
+        solver.setTimeout(Duration.ZERO);
+        assertEquals(BigInteger.valueOf(8), solver.countSolutions().get());
+        assertFalse(solver.isTimeoutOccurred());
+    }
+
+    @Test
+    public void solverInterrupted() throws IOException {
+        DdnnfSolver solver = new DdnnfSolver(Ddnnf.read(new StringReader(D4), 4));
+        Thread.currentThread().interrupt();
+        try {
+            assertTrue(solver.countSolutions().isEmpty());
+            assertFalse(solver.isTimeoutOccurred());
+        } finally {
+            assertTrue(Thread.interrupted());
+        }
+        assertEquals(BigInteger.valueOf(8), solver.countSolutions().get());
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-formula-analysis-ddnnife.
+ *
+ * formula-analysis-ddnnife is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * formula-analysis-ddnnife is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with formula-analysis-ddnnife. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatJAR/formula-analysis-ddnnife> for further information.
+ */
+package de.featjar.analysis.ddnife;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.featjar.analysis.ddnnife.solver.DdnnifeResponseReader;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+public class DdnnifeResponseReaderTest {
+
+    private static DdnnifeResponseReader reader(String text, int bufferSize) {
+        return new DdnnifeResponseReader(
+                new ByteArrayInputStream(text.getBytes(StandardCharsets.US_ASCII)), bufferSize);
+    }
+
+    private static int[] readLiterals(DdnnifeResponseReader reader) throws IOException {
+        int count = reader.readLiterals();
+        return Arrays.copyOf(reader.getLiterals(), count);
+    }
+
+    @Test
+    public void booleans() throws IOException {
+        DdnnifeResponseReader reader = reader("true\nfalse\r\nTRUE \n", 3);
+        assertTrue(reader.readBoolean());
+        assertFalse(reader.readBoolean());
+        assertTrue(reader.readBoolean());
+        assertThrows(EOFException.class, reader::readBoolean);
+    }
+
+    @Test
+    public void counts() throws IOException {
+        String big = "123456789012345678901234567890123456789012345678901234567890";
+        DdnnifeResponseReader reader = reader("0\n960\n9223372036854775807\n9223372036854775808\n" + big + "\n", 7);
+        assertEquals(BigInteger.ZERO, reader.readCount());
+        assertEquals(BigInteger.valueOf(960), reader.readCount());
+        assertEquals(BigInteger.valueOf(Long.MAX_VALUE), reader.readCount());
+        assertEquals(BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.ONE), reader.readCount());
+        assertEquals(new BigInteger(big), reader.readCount());
+    }
+
+    @Test
+    public void literals() throws IOException {
+        DdnnifeResponseReader reader = reader("1 -2 3\n\n-1 2;1 -2 ;\n4 0\n", 4);
+        assertArrayEquals(new int[] {1, -2, 3}, readLiterals(reader));
+        assertTrue(reader.isEndOfLine());
+        assertArrayEquals(new int[0], readLiterals(reader));
+        assertTrue(reader.isEndOfLine());
+        assertArrayEquals(new int[] {-1, 2}, readLiterals(reader));
+        assertFalse(reader.isEndOfLine());
+        assertArrayEquals(new int[] {1, -2}, readLiterals(reader));
+        assertFalse(reader.isEndOfLine());
+        assertArrayEquals(new int[0], readLiterals(reader));
+        assertTrue(reader.isEndOfLine());
+        assertArrayEquals(new int[] {4}, readLiterals(reader));
+        assertNull(reader.readLine());
+    }
+
+    @Test
+    public void invalidResponseIsSkipped() throws IOException {
+        DdnnifeResponseReader reader = reader("E error: unknown query\n12\n1 x 3\ntrue\n", 5);
+        assertThrows(NumberFormatException.class, reader::readCount);
+        assertEquals(BigInteger.valueOf(12), reader.readCount());
+        assertThrows(NumberFormatException.class, reader::readLiterals);
+        assertTrue(reader.readBoolean());
+    }
+
+    @Test
+    public void bufferIsReused() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i <= 1000; i++) {
+            sb.append(i % 2 == 0 ? i : -i).append(' ');
+        }
+        sb.append('\n');
+        DdnnifeResponseReader reader = reader(sb.toString() + sb, 64);
+        assertEquals(1000, reader.readLiterals());
+        int[] buffer = reader.getLiterals();
+        assertEquals(1000, reader.readLiterals());
+        assertSame(buffer, reader.getLiterals());
+        assertEquals(-1, buffer[0]);
+        assertEquals(1000, buffer[999]);
+    }
+
+    @Test
+    public void throughput() {
+        int variableCount = 50_000;
+        int responseCount = 200;
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i <= variableCount; i++) {
+            sb.append(i % 3 == 0 ? -i : i).append(' ');
+        }
+        sb.append('\n');
+        byte[] line = sb.toString().getBytes(StandardCharsets.US_ASCII);
+        InputStream in = new InputStream() {
+            private int position;
+            private int remaining = responseCount;
+
+            @Override
+            public int read() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (remaining == 0) {
+                    return -1;
+                }
+                int n = Math.min(len, line.length - position);
+                System.arraycopy(line, position, b, off, n);
+                position += n;
+                if (position == line.length) {
+                    position = 0;
+                    remaining--;
+                }
+                return n;
+            }
+        };
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            DdnnifeResponseReader reader = new DdnnifeResponseReader(in);
+            long sum = 0;
+            for (int i = 0; i < responseCount; i++) {
+                int count = reader.readLiterals();
+                assertEquals(variableCount, count);
+                int[] literals = reader.getLiterals();
+                for (int j = 0; j < count; j++) {
+                    sum += literals[j];
+                }
+            }
+            long expected = 0;
+            for (int i = 1; i <= variableCount; i++) {
+                expected += i % 3 == 0 ? -i : i;
+            }
+            assertEquals(expected * responseCount, sum);
+            assertNull(reader.readLine());
+        });
+    }
+}
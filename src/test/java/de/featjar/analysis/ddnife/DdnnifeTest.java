@@ -20,13 +20,42 @@
  */
 package de.featjar.analysis.ddnife;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import de.featjar.Common;
+import de.featjar.analysis.ddnnife.Commonality;
+import de.featjar.analysis.ddnnife.ComputeAtomicSetsDdnnife;
+import de.featjar.analysis.ddnnife.ComputeCommonalityDdnnife;
+import de.featjar.analysis.ddnnife.ComputeFalseOptionalDdnnife;
 import de.featjar.analysis.ddnnife.ComputeSolutionCountDdnnife;
+import de.featjar.analysis.ddnnife.ComputeSolutionsDdnnife;
+import de.featjar.analysis.ddnnife.ComputeTWiseSampleDdnnife;
+import de.featjar.analysis.ddnnife.ComputeUniformSampleDdnnife;
+import de.featjar.analysis.ddnnife.ComputeWeightedCountDdnnife;
+import de.featjar.analysis.ddnnife.DdnnifeAnalysis;
+import de.featjar.analysis.ddnnife.WeightedCount;
+import de.featjar.analysis.ddnnife.solver.Ddnnf;
+import de.featjar.analysis.ddnnife.solver.DdnnfCache;
+import de.featjar.analysis.ddnnife.solver.DdnnifeAsyncExecutor;
+import de.featjar.analysis.ddnnife.solver.DdnnifeClient;
+import de.featjar.analysis.ddnnife.solver.DdnnifeMetrics;
+import de.featjar.analysis.ddnnife.solver.DdnnifeParallelExecutor;
+import de.featjar.analysis.ddnnife.solver.DdnnifeQueryCache;
+import de.featjar.analysis.ddnnife.solver.DdnnifeWrapper;
+import de.featjar.analysis.ddnnife.solver.DdnnifeWrapperPool;
+import de.featjar.analysis.ddnnife.solver.IDdnnifeListener;
 import de.featjar.base.computation.Computations;
+import de.featjar.base.computation.IComputation;
 import de.featjar.base.data.Result;
+import de.featjar.formula.analysis.bool.BooleanAssignment;
+import de.featjar.formula.analysis.bool.BooleanAssignmentList;
+import de.featjar.formula.analysis.bool.BooleanClause;
+import de.featjar.formula.analysis.bool.BooleanClauseList;
+import de.featjar.formula.analysis.bool.BooleanSolution;
 import de.featjar.formula.analysis.bool.ComputeBooleanClauseList;
 import de.featjar.formula.structure.Expressions;
 import de.featjar.formula.structure.formula.IFormula;
@@ -37,7 +66,24 @@ import de.featjar.formula.structure.formula.connective.Or;
 import de.featjar.formula.structure.formula.predicate.Literal;
 import de.featjar.formula.transformer.ComputeCNFFormula;
 import de.featjar.formula.transformer.ComputeNNFFormula;
+import java.io.IOException;
+import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
 
 public class DdnnifeTest extends Common {
@@ -76,4 +122,778 @@ public class DdnnifeTest extends Common {
         assertTrue(result.isPresent(), result::printProblems);
         assertEquals(BigInteger.valueOf(960), result.get());
     }
+
+    @Test
+    public void countCached() throws IOException {
+        final IFormula formula = loadFormula("testFeatureModels/gpl_medium_model.xml");
+        final IComputation<BooleanClauseList> clauses = Computations.of(formula)
+                .map(ComputeNNFFormula::new)
+                .map(ComputeCNFFormula::new)
+                .map(ComputeBooleanClauseList::new);
+        final DdnnfCache cache = new DdnnfCache(Files.createTempDirectory("ddnnifeCache"), DdnnfCache.DEFAULT_MAXIMUM_SIZE);
+
+        for (int i = 0; i < 2; i++) {
+            final Result<BigInteger> result = new ComputeSolutionCountDdnnife(clauses)
+                    .set(DdnnifeAnalysis.DDNNF_CACHE, cache)
+                    .computeResult();
+            assertTrue(result.isPresent(), result::printProblems);
+            assertEquals(BigInteger.valueOf(960), result.get());
+        }
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        cache.clear();
+    }
+
+    @Test
+    public void countUncachedByDefault() {
+        final IFormula formula = loadFormula("testFeatureModels/gpl_medium_model.xml");
+        final IComputation<BooleanClauseList> clauses = Computations.of(formula)
+                .map(ComputeNNFFormula::new)
+                .map(ComputeCNFFormula::new)
+                .map(ComputeBooleanClauseList::new);
+        final DdnnifeMetrics metrics = new DdnnifeMetrics();
+
+        for (DdnnifeAnalysis.Backend backend : DdnnifeAnalysis.Backend.values()) {
+            final Result<BigInteger> result = new ComputeSolutionCountDdnnife(clauses)
+                    .set(DdnnifeAnalysis.BACKEND, backend)
+                    .set(DdnnifeAnalysis.LISTENER, metrics)
+                    .computeResult();
+            assertTrue(result.isPresent(), result::printProblems);
+            assertEquals(BigInteger.valueOf(960), result.get());
+        }
+        assertEquals(2, metrics.getPhase(IDdnnifeListener.Phase.COMPILE).getCount());
+    }
+
+    @Test
+    public void evictionKeepsAcquiredFiles() throws Exception {
+        final BooleanClauseList first = new BooleanClauseList(3);
+        first.add(new BooleanClause(1, 2));
+        final BooleanClauseList second = new BooleanClauseList(3);
+        second.add(new BooleanClause(2, 3));
+        final BooleanClauseList third = new BooleanClauseList(3);
+        third.add(new BooleanClause(1, 3));
+        final DdnnfCache cache = new DdnnfCache(Files.createTempDirectory("ddnnifeCache"), 1);
+        try {
+            final Path acquired = cache.acquire(first, Duration.ZERO, IDdnnifeListener.NONE);
+            final Path evicted = cache.get(second, Duration.ZERO, IDdnnifeListener.NONE);
+            assertTrue(Files.exists(acquired));
+            try (DdnnifeWrapper wrapper = new DdnnifeWrapper(first, cache)) {
+                cache.get(third, Duration.ZERO, IDdnnifeListener.NONE);
+                assertFalse(Files.exists(evicted));
+                final Result<BigInteger> result = wrapper.countSolutions();
+                assertTrue(result.isPresent(), result::printProblems);
+                assertEquals(BigInteger.valueOf(6), result.get());
+            }
+            assertTrue(Files.exists(acquired));
+
+            cache.release(acquired);
+            cache.get(second, Duration.ZERO, IDdnnifeListener.NONE);
+            assertFalse(Files.exists(acquired));
+        } finally {
+            cache.clear();
+        }
+    }
+
+    @Test
+    public void solutionWithManyVariables() {
+        final int variableCount = 100;
+        final BooleanClauseList clauses = new BooleanClauseList(variableCount);
+        clauses.add(new BooleanClause(1, 2));
+        try (DdnnifeWrapper wrapper = new DdnnifeWrapper(clauses)) {
+            final Result<BooleanSolution> solution = wrapper.getSolution();
+            assertTrue(solution.isPresent(), solution::printProblems);
+            assertEquals(variableCount, solution.get().size());
+            final Result<BigInteger> count = wrapper.countSolutions();
+            assertTrue(count.isPresent(), count::printProblems);
+            assertEquals(BigInteger.valueOf(3).shiftLeft(variableCount - 2), count.get());
+        }
+    }
+
+    @Test
+    public void countCubes() throws IOException {
+        final IFormula formula = loadFormula("testFeatureModels/gpl_medium_model.xml");
+        final IComputation<BooleanClauseList> clauses = Computations.of(formula)
+                .map(ComputeNNFFormula::new)
+                .map(ComputeCNFFormula::new)
+                .map(ComputeBooleanClauseList::new);
+        final DdnnfCache cache =
+                new DdnnfCache(Files.createTempDirectory("ddnnifeCache"), DdnnfCache.DEFAULT_MAXIMUM_SIZE, 8);
+
+        final Result<BigInteger> result = new ComputeSolutionCountDdnnife(clauses)
+                .set(DdnnifeAnalysis.DDNNF_CACHE, cache)
+                .computeResult();
+        assertTrue(result.isPresent(), result::printProblems);
+        assertEquals(BigInteger.valueOf(960), result.get());
+        cache.clear();
+    }
+
+    @Test
+    public void countPooled() {
+        final IFormula formula = loadFormula("testFeatureModels/gpl_medium_model.xml");
+        final IComputation<BooleanClauseList> clauses = Computations.of(formula)
+                .map(ComputeNNFFormula::new)
+                .map(ComputeCNFFormula::new)
+                .map(ComputeBooleanClauseList::new);
+
+        try (DdnnifeWrapperPool pool = new DdnnifeWrapperPool(2, Duration.ofMinutes(1))) {
+            for (int i = 0; i < 3; i++) {
+                final Result<BigInteger> result = new ComputeSolutionCountDdnnife(clauses)
+                        .set(DdnnifeAnalysis.DDNNIFE_POOL, pool)
+                        .computeResult();
+                assertTrue(result.isPresent(), result::printProblems);
+                assertEquals(BigInteger.valueOf(960), result.get());
+            }
+            assertEquals(1, pool.getStartCount());
+            assertEquals(2, pool.getReuseCount());
+            assertEquals(1, pool.getIdleCount());
+        }
+    }
+
+    @Test
+    public void countQueryCached() {
+        final IFormula formula = loadFormula("testFeatureModels/gpl_medium_model.xml");
+        final IComputation<BooleanClauseList> clauses = Computations.of(formula)
+                .map(ComputeNNFFormula::new)
+                .map(ComputeCNFFormula::new)
+                .map(ComputeBooleanClauseList::new);
+        final DdnnifeQueryCache queryCache = new DdnnifeQueryCache(16);
+
+        final Result<BigInteger> first = new ComputeSolutionCountDdnnife(clauses)
+                .set(DdnnifeAnalysis.ASSUMED_ASSIGNMENT, new BooleanAssignment(1, 2))
+                .set(DdnnifeAnalysis.QUERY_CACHE, queryCache)
+                .computeResult();
+        assertTrue(first.isPresent(), first::printProblems);
+        final Result<BigInteger> second = new ComputeSolutionCountDdnnife(clauses)
+                .set(DdnnifeAnalysis.ASSUMED_ASSIGNMENT, new BooleanAssignment(2, 1))
+                .set(DdnnifeAnalysis.QUERY_CACHE, queryCache)
+                .computeResult();
+        assertTrue(second.isPresent(), second::printProblems);
+        assertEquals(first.get(), second.get());
+        assertEquals(1, queryCache.getMissCount());
+        assertEquals(1, queryCache.getHitCount());
+        assertEquals(1, queryCache.getSize());
+    }
+
+    @Test
+    public void queryCacheModifiedFormula() {
+        final DdnnifeQueryCache queryCache = new DdnnifeQueryCache(16);
+        final BooleanClauseList clauses = new BooleanClauseList(3);
+        clauses.add(new BooleanClause(1, 2));
+        final Result<BigInteger> first = queryCache.computeIfAbsent(
+                clauses, DdnnifeQueryCache.Kind.COUNT, null, () -> Result.of(BigInteger.valueOf(6)));
+        assertEquals(BigInteger.valueOf(6), first.get());
+        assertEquals(BigInteger.valueOf(6), queryCache
+                .computeIfAbsent(clauses, DdnnifeQueryCache.Kind.COUNT, null, () -> Result.of(BigInteger.ZERO))
+                .get());
+
+        clauses.add(new BooleanClause(-1));
+        final Result<BigInteger> modified = queryCache.computeIfAbsent(
+                clauses, DdnnifeQueryCache.Kind.COUNT, null, () -> Result.of(BigInteger.valueOf(2)));
+        assertEquals(BigInteger.valueOf(2), modified.get());
+        assertEquals(2, queryCache.getMissCount());
+        assertEquals(1, queryCache.getHitCount());
+    }
+
+    @Test
+    public void countJava() {
+        final IFormula formula = loadFormula("testFeatureModels/gpl_medium_model.xml");
+        final Result<BigInteger> result = new ComputeSolutionCountDdnnife(Computations.of(formula)
+                        .map(ComputeNNFFormula::new)
+                        .map(ComputeCNFFormula::new)
+                        .map(ComputeBooleanClauseList::new))
+                .set(DdnnifeAnalysis.BACKEND, DdnnifeAnalysis.Backend.JAVA)
+                .computeResult();
+        assertTrue(result.isPresent(), result::printProblems);
+        assertEquals(BigInteger.valueOf(960), result.get());
+    }
+
+    @Test
+    public void countJavaBinary() throws IOException {
+        final IFormula formula = loadFormula("testFeatureModels/gpl_medium_model.xml");
+        final Result<BooleanClauseList> clauses = Computations.of(formula)
+                .map(ComputeNNFFormula::new)
+                .map(ComputeCNFFormula::new)
+                .map(ComputeBooleanClauseList::new)
+                .computeResult();
+        assertTrue(clauses.isPresent(), clauses::printProblems);
+        final DdnnfCache cache = new DdnnfCache(Files.createTempDirectory("ddnnifeCache"), DdnnfCache.DEFAULT_MAXIMUM_SIZE);
+
+        try {
+            final Ddnnf text = Ddnnf.read(cache.get(clauses.get()), clauses.get().getVariableCount());
+            final Ddnnf binary =
+                    Ddnnf.readBinary(cache.getBinary(clauses.get(), Duration.ZERO, IDdnnifeListener.NONE));
+            assertEquals(text.getNodeCount(), binary.getNodeCount());
+            assertEquals(text.getEdgeCount(), binary.getEdgeCount());
+            assertEquals(BigInteger.valueOf(960), binary.count());
+            assertArrayEquals(text.countLiterals(), binary.countLiterals());
+            assertEquals(1, cache.getMissCount());
+        } catch (InterruptedException | TimeoutException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            cache.clear();
+        }
+    }
+
+    @Test
+    public void countIncremental() throws IOException {
+        final IFormula formula = loadFormula("testFeatureModels/gpl_medium_model.xml");
+        final Result<BooleanClauseList> clauses = Computations.of(formula)
+                .map(ComputeNNFFormula::new)
+                .map(ComputeCNFFormula::new)
+                .map(ComputeBooleanClauseList::new)
+                .computeResult();
+        assertTrue(clauses.isPresent(), clauses::printProblems);
+        final BooleanClauseList evolved = new BooleanClauseList(clauses.get().getVariableCount());
+        clauses.get().getAll().forEach(evolved::add);
+        evolved.add(new BooleanClause(-2));
+        evolved.add(new BooleanClause(3, 4));
+        final DdnnfCache cache = new DdnnfCache(
+                Files.createTempDirectory("ddnnifeCache"),
+                DdnnfCache.DEFAULT_MAXIMUM_SIZE,
+                1,
+                DdnnfCache.DEFAULT_MAXIMUM_DELTA_VARIABLES);
+
+        final Result<BigInteger> expected = new ComputeSolutionCountDdnnife(Computations.of(evolved)).computeResult();
+        assertTrue(expected.isPresent(), expected::printProblems);
+        for (BooleanClauseList version : Arrays.asList(clauses.get(), evolved)) {
+            final Result<BigInteger> result = new ComputeSolutionCountDdnnife(Computations.of(version))
+                    .set(DdnnifeAnalysis.DDNNF_CACHE, cache)
+                    .computeResult();
+            assertTrue(result.isPresent(), result::printProblems);
+        }
+        assertEquals(1, cache.getIncrementalCount());
+        final Result<BigInteger> result = new ComputeSolutionCountDdnnife(Computations.of(evolved))
+                .set(DdnnifeAnalysis.DDNNF_CACHE, cache)
+                .computeResult();
+        assertTrue(result.isPresent(), result::printProblems);
+        assertEquals(expected.get(), result.get());
+        cache.clear();
+    }
+
+    @Test
+    public void countIncrementalChain() throws Exception {
+        final IFormula formula = loadFormula("testFeatureModels/gpl_medium_model.xml");
+        final Result<BooleanClauseList> clauses = Computations.of(formula)
+                .map(ComputeNNFFormula::new)
+                .map(ComputeCNFFormula::new)
+                .map(ComputeBooleanClauseList::new)
+                .computeResult();
+        assertTrue(clauses.isPresent(), clauses::printProblems);
+        final int variableCount = clauses.get().getVariableCount();
+        final BooleanClauseList evolved = new BooleanClauseList(variableCount);
+        clauses.get().getAll().forEach(evolved::add);
+        evolved.add(new BooleanClause(3, 4));
+        final BooleanClauseList evolvedTwice = new BooleanClauseList(variableCount);
+        evolved.getAll().forEach(evolvedTwice::add);
+        evolvedTwice.add(new BooleanClause(-3, -4));
+        final DdnnfCache cache = new DdnnfCache(
+                Files.createTempDirectory("ddnnifeCache"),
+                DdnnfCache.DEFAULT_MAXIMUM_SIZE,
+                1,
+                DdnnfCache.DEFAULT_MAXIMUM_DELTA_VARIABLES);
+        try {
+            cache.get(clauses.get(), Duration.ZERO, IDdnnifeListener.NONE);
+            cache.get(evolved, Duration.ZERO, IDdnnifeListener.NONE);
+            assertEquals(1, cache.getIncrementalCount());
+            final Path compiled = cache.get(evolvedTwice, evolved, Duration.ZERO, IDdnnifeListener.NONE);
+            assertEquals(1, cache.getIncrementalCount());
+            assertEquals(3, cache.getMissCount());
+            final BigInteger expected = Ddnnf.read(compiled, variableCount).count();
+            cache.clear();
+
+            cache.get(clauses.get(), Duration.ZERO, IDdnnifeListener.NONE);
+            cache.get(evolved, Duration.ZERO, IDdnnifeListener.NONE);
+            final Path derived = cache.get(evolvedTwice, Duration.ZERO, IDdnnifeListener.NONE);
+            assertEquals(3, cache.getIncrementalCount());
+            assertEquals(expected, Ddnnf.read(derived, variableCount).count());
+        } finally {
+            cache.clear();
+        }
+    }
+
+    @Test
+    public void countWeighted() {
+        final IFormula formula = loadFormula("testFeatureModels/gpl_medium_model.xml");
+        final IComputation<BooleanClauseList> clauses = Computations.of(formula)
+                .map(ComputeNNFFormula::new)
+                .map(ComputeCNFFormula::new)
+                .map(ComputeBooleanClauseList::new);
+
+        final Result<Commonality> commonality = new ComputeCommonalityDdnnife(clauses).computeResult();
+        assertTrue(commonality.isPresent(), commonality::printProblems);
+        final Result<WeightedCount> weighted = new ComputeWeightedCountDdnnife(clauses).computeResult();
+        assertTrue(weighted.isPresent(), weighted::printProblems);
+        final Result<WeightedCount> exact = new ComputeWeightedCountDdnnife(clauses)
+                .set(ComputeWeightedCountDdnnife.PRECISION, ComputeWeightedCountDdnnife.Precision.EXACT)
+                .computeResult();
+        assertTrue(exact.isPresent(), exact::printProblems);
+
+        assertEquals(960, weighted.get().getWeightedCount());
+        assertEquals(0, new BigDecimal(960).compareTo(exact.get().getExactWeightedCount()));
+        for (int variable = 1; variable <= commonality.get().getVariableCount(); variable++) {
+            assertEquals(commonality.get().getCommonality(variable), weighted.get().getProbability(variable), 1e-12);
+            assertEquals(commonality.get().getCommonality(variable), exact.get().getProbability(variable), 1e-12);
+        }
+
+        final Number[] positiveWeights = {null, 0.25};
+        final Number[] negativeWeights = {null, 0.75};
+        final Result<WeightedCount> prior = new ComputeWeightedCountDdnnife(clauses)
+                .set(ComputeWeightedCountDdnnife.POSITIVE_WEIGHTS, positiveWeights)
+                .set(ComputeWeightedCountDdnnife.NEGATIVE_WEIGHTS, negativeWeights)
+                .computeResult();
+        assertTrue(prior.isPresent(), prior::printProblems);
+        assertEquals(
+                commonality.get().getCount(1).doubleValue() * 0.25
+                        + commonality.get().getCount(-1).doubleValue() * 0.75,
+                prior.get().getWeightedCount(),
+                1e-9);
+    }
+
+    @Test
+    public void commonality() {
+        final IFormula formula = loadFormula("testFeatureModels/gpl_medium_model.xml");
+        final IComputation<BooleanClauseList> clauses = Computations.of(formula)
+                .map(ComputeNNFFormula::new)
+                .map(ComputeCNFFormula::new)
+                .map(ComputeBooleanClauseList::new);
+
+        final Result<Commonality> process =
+                new ComputeCommonalityDdnnife(clauses).computeResult();
+        assertTrue(process.isPresent(), process::printProblems);
+        assertEquals(BigInteger.valueOf(960), process.get().getSolutionCount());
+
+        final Result<Commonality> java = new ComputeCommonalityDdnnife(clauses)
+                .set(DdnnifeAnalysis.BACKEND, DdnnifeAnalysis.Backend.JAVA)
+                .computeResult();
+        assertTrue(java.isPresent(), java::printProblems);
+        assertEquals(process.get(), java.get());
+    }
+
+    @Test
+    public void atomicSetsAndFalseOptional() {
+        final BooleanClauseList clauses = new BooleanClauseList(6);
+        clauses.add(new BooleanClause(1));
+        clauses.add(new BooleanClause(-2, 1));
+        clauses.add(new BooleanClause(-3, 2));
+        clauses.add(new BooleanClause(-2, 3));
+        clauses.add(new BooleanClause(-4, 1));
+        clauses.add(new BooleanClause(-5, 4));
+        clauses.add(new BooleanClause(-4, 5));
+        clauses.add(new BooleanClause(-6, 1));
+        clauses.add(new BooleanClause(-6, -2));
+
+        final Result<BooleanAssignmentList> atomicSets =
+                new ComputeAtomicSetsDdnnife(Computations.of(clauses)).computeResult();
+        assertTrue(atomicSets.isPresent(), atomicSets::printProblems);
+        assertEquals(4, atomicSets.get().size());
+        assertArrayEquals(new int[] {1}, atomicSets.get().get(0).get());
+        assertArrayEquals(new int[] {2, 3}, atomicSets.get().get(1).get());
+        assertArrayEquals(new int[] {4, 5}, atomicSets.get().get(2).get());
+        assertArrayEquals(new int[] {6}, atomicSets.get().get(3).get());
+
+        final Result<BooleanAssignment> falseOptional = new ComputeFalseOptionalDdnnife(
+                        Computations.of(clauses), Computations.of(new int[] {0, 0, 1, 2, 1, 4, 1}))
+                .computeResult();
+        assertTrue(falseOptional.isPresent(), falseOptional::printProblems);
+        assertArrayEquals(new int[] {3, 5}, falseOptional.get().get());
+    }
+
+    @Test
+    public void countProjected() {
+        final BooleanClauseList clauses = new BooleanClauseList(4);
+        clauses.add(new BooleanClause(1, 3));
+        clauses.add(new BooleanClause(2, 4));
+        clauses.add(new BooleanClause(-3, -4));
+
+        final Result<BigInteger> count = new ComputeSolutionCountDdnnife(Computations.of(clauses)).computeResult();
+        assertTrue(count.isPresent(), count::printProblems);
+        assertEquals(BigInteger.valueOf(5), count.get());
+
+        final Result<BigInteger> projectedCount = new ComputeSolutionCountDdnnife(Computations.of(clauses))
+                .set(DdnnifeAnalysis.PROJECTION, new BooleanAssignment(1, 2))
+                .computeResult();
+        assertTrue(projectedCount.isPresent(), projectedCount::printProblems);
+        assertEquals(BigInteger.valueOf(3), projectedCount.get());
+    }
+
+    @Test
+    public void enumerate() {
+        final IFormula formula = loadFormula("testFeatureModels/gpl_medium_model.xml");
+        final IComputation<BooleanClauseList> clauses = Computations.of(formula)
+                .map(ComputeNNFFormula::new)
+                .map(ComputeCNFFormula::new)
+                .map(ComputeBooleanClauseList::new);
+
+        for (DdnnifeAnalysis.Backend backend : DdnnifeAnalysis.Backend.values()) {
+            final Result<Stream<BooleanSolution>> result = new ComputeSolutionsDdnnife(clauses)
+                    .set(ComputeSolutionsDdnnife.CHUNK_SIZE, 100)
+                    .set(DdnnifeAnalysis.BACKEND, backend)
+                    .computeResult();
+            assertTrue(result.isPresent(), result::printProblems);
+            try (Stream<BooleanSolution> solutions = result.get()) {
+                assertEquals(
+                        960,
+                        solutions.map(BooleanSolution::toString).collect(Collectors.toSet()).size());
+            }
+        }
+    }
+
+    @Test
+    public void sample() {
+        final IFormula formula = loadFormula("testFeatureModels/gpl_medium_model.xml");
+        final IComputation<BooleanClauseList> clauses = Computations.of(formula)
+                .map(ComputeNNFFormula::new)
+                .map(ComputeCNFFormula::new)
+                .map(ComputeBooleanClauseList::new);
+
+        for (DdnnifeAnalysis.Backend backend : DdnnifeAnalysis.Backend.values()) {
+            final Result<Stream<BooleanSolution>> uniform = new ComputeUniformSampleDdnnife(clauses)
+                    .set(ComputeUniformSampleDdnnife.SAMPLE_SIZE, 50)
+                    .set(DdnnifeAnalysis.ASSUMED_ASSIGNMENT, new BooleanAssignment(1))
+                    .set(DdnnifeAnalysis.BACKEND, backend)
+                    .computeResult();
+            assertTrue(uniform.isPresent(), uniform::printProblems);
+            try (Stream<BooleanSolution> sample = uniform.get()) {
+                assertEquals(50, sample.filter(s -> s.get()[0] == 1).count());
+            }
+
+            final Result<Stream<BooleanSolution>> twise = new ComputeTWiseSampleDdnnife(clauses)
+                    .set(ComputeTWiseSampleDdnnife.T, 2)
+                    .set(DdnnifeAnalysis.BACKEND, backend)
+                    .computeResult();
+            assertTrue(twise.isPresent(), twise::printProblems);
+            try (Stream<BooleanSolution> sample = twise.get()) {
+                long size = sample.count();
+                assertTrue(size > 1 && size < 960, String.valueOf(size));
+            }
+        }
+    }
+
+    @Test
+    public void metrics() throws IOException {
+        final IFormula formula = loadFormula("testFeatureModels/gpl_medium_model.xml");
+        final IComputation<BooleanClauseList> clauses = Computations.of(formula)
+                .map(ComputeNNFFormula::new)
+                .map(ComputeCNFFormula::new)
+                .map(ComputeBooleanClauseList::new);
+        final DdnnfCache cache = new DdnnfCache(Files.createTempDirectory("ddnnifeCache"), DdnnfCache.DEFAULT_MAXIMUM_SIZE);
+        final DdnnifeMetrics metrics = new DdnnifeMetrics();
+
+        final Result<BigInteger> result = new ComputeSolutionCountDdnnife(clauses)
+                .set(DdnnifeAnalysis.DDNNF_CACHE, cache)
+                .set(DdnnifeAnalysis.LISTENER, metrics)
+                .computeResult();
+        assertTrue(result.isPresent(), result::printProblems);
+        assertEquals(BigInteger.valueOf(960), result.get());
+
+        assertEquals(1, metrics.getPhase(IDdnnifeListener.Phase.COMPILE).getCount());
+        assertEquals(1, metrics.getPhase(IDdnnifeListener.Phase.START).getCount());
+        assertEquals(1, metrics.getPhase(IDdnnifeListener.Phase.INITIALIZE).getCount());
+        assertEquals(1, metrics.getQueries().get("count").getCount());
+        assertEquals(1, metrics.getProcessStartCount());
+        assertEquals(1, metrics.getProcessLifetimes().getCount());
+        assertEquals(0, metrics.getProcessFailureCount());
+        assertTrue(metrics.getDdnnfSize() > 0);
+        assertEquals("count\n".length(), metrics.getBytesSent());
+        assertEquals("960\n".length(), metrics.getBytesReceived());
+    }
+
+    @Test
+    public void async() throws Exception {
+        final IFormula formula = loadFormula("testFeatureModels/gpl_medium_model.xml");
+        final BooleanClauseList clauses = Computations.of(formula)
+                .map(ComputeNNFFormula::new)
+                .map(ComputeCNFFormula::new)
+                .map(ComputeBooleanClauseList::new)
+                .computeResult()
+                .get();
+        final DdnnfCache cache = new DdnnfCache(Files.createTempDirectory("ddnnifeCache"), DdnnfCache.DEFAULT_MAXIMUM_SIZE);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final DdnnifeAsyncExecutor async =
+                    new DdnnifeAsyncExecutor(executor, 1, cache, DdnnifeWrapperPool.NONE, Duration.ZERO);
+            final List<CompletableFuture<Result<BigInteger>>> counts = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                counts.add(async.query(clauses, DdnnifeWrapper::countSolutions));
+            }
+            for (CompletableFuture<Result<BigInteger>> count : counts) {
+                final Result<BigInteger> result = count.get(1, TimeUnit.MINUTES);
+                assertTrue(result.isPresent(), result::printProblems);
+                assertEquals(BigInteger.valueOf(960), result.get());
+            }
+            assertEquals(1, cache.getMissCount());
+            assertEquals(0, async.getRunningCompilationCount());
+        } finally {
+            executor.shutdown();
+            cache.clear();
+        }
+    }
+
+    @Test
+    public void client() throws Exception {
+        final IFormula formula = loadFormula("testFeatureModels/gpl_medium_model.xml");
+        final BooleanClauseList clauses = Computations.of(formula)
+                .map(ComputeNNFFormula::new)
+                .map(ComputeCNFFormula::new)
+                .map(ComputeBooleanClauseList::new)
+                .computeResult()
+                .get();
+        final DdnnfCache cache = new DdnnfCache(Files.createTempDirectory("ddnnifeCache"), DdnnfCache.DEFAULT_MAXIMUM_SIZE);
+        try (DdnnifeClient client = DdnnifeClient.open(clauses, cache, Duration.ZERO)) {
+            final List<Result<BigInteger>> counts = IntStream.range(0, 100)
+                    .parallel()
+                    .mapToObj(i -> client.countSolutions(new BooleanAssignment(i % 2 == 0 ? 1 : -1)))
+                    .collect(Collectors.toList());
+            for (int i = 0; i < counts.size(); i++) {
+                assertTrue(counts.get(i).isPresent(), counts.get(i)::printProblems);
+                assertEquals(BigInteger.valueOf(i % 2 == 0 ? 960 : 0), counts.get(i).get());
+            }
+            assertEquals(0, client.getPendingQueryCount());
+        } finally {
+            cache.clear();
+        }
+    }
+
+    @Test
+    public void countBatch() {
+        final IFormula formula = loadFormula("testFeatureModels/gpl_medium_model.xml");
+        final BooleanClauseList clauses = Computations.of(formula)
+                .map(ComputeNNFFormula::new)
+                .map(ComputeCNFFormula::new)
+                .map(ComputeBooleanClauseList::new)
+                .computeResult()
+                .get();
+        final List<BooleanAssignment> assignments = IntStream.range(0, 1000)
+                .mapToObj(i -> new BooleanAssignment(i % 2 == 0 ? 1 : -1))
+                .collect(Collectors.toList());
+        try (DdnnifeWrapper wrapper = new DdnnifeWrapper(clauses)) {
+            final List<Result<BigInteger>> counts = wrapper.countSolutions(assignments);
+            assertEquals(assignments.size(), counts.size());
+            for (int i = 0; i < counts.size(); i++) {
+                assertTrue(counts.get(i).isPresent(), counts.get(i)::printProblems);
+                assertEquals(BigInteger.valueOf(i % 2 == 0 ? 960 : 0), counts.get(i).get());
+            }
+            assertTrue(wrapper.isAlive());
+        }
+    }
+
+    @Test
+    public void countBatchProcessDies() {
+        final IFormula formula = loadFormula("testFeatureModels/gpl_medium_model.xml");
+        final BooleanClauseList clauses = Computations.of(formula)
+                .map(ComputeNNFFormula::new)
+                .map(ComputeCNFFormula::new)
+                .map(ComputeBooleanClauseList::new)
+                .computeResult()
+                .get();
+        final int queryCount = 10000;
+        final int window = 16;
+        final int answered = 100;
+        try (DdnnifeWrapper wrapper = new DdnnifeWrapper(clauses)) {
+            final List<Result<String>> results = new ArrayList<>();
+            wrapper.compute(
+                    IntStream.range(0, queryCount).mapToObj(i -> "count").iterator(), window, result -> {
+                        results.add(result);
+                        if (results.size() == answered) {
+                            wrapper.cancel();
+                        }
+                    });
+            assertEquals(queryCount, results.size());
+            for (int i = 0; i < answered; i++) {
+                assertTrue(results.get(i).isPresent(), results.get(i)::printProblems);
+                assertEquals("960", results.get(i).get());
+            }
+            for (int i = answered + window; i < queryCount; i++) {
+                assertFalse(results.get(i).isPresent());
+            }
+            assertFalse(wrapper.isAlive());
+
+            final List<BooleanAssignment> assignments = IntStream.range(0, 10)
+                    .mapToObj(i -> new BooleanAssignment(1))
+                    .collect(Collectors.toList());
+            final List<Result<BigInteger>> counts = wrapper.countSolutions(assignments);
+            assertEquals(assignments.size(), counts.size());
+            counts.forEach(count -> assertFalse(count.isPresent()));
+        }
+    }
+
+    @Test
+    public void countTimeout() throws IOException {
+        final IFormula formula = loadFormula("testFeatureModels/gpl_medium_model.xml");
+        final IComputation<BooleanClauseList> clauses = Computations.of(formula)
+                .map(ComputeNNFFormula::new)
+                .map(ComputeCNFFormula::new)
+                .map(ComputeBooleanClauseList::new);
+        final DdnnfCache cache = new DdnnfCache(Files.createTempDirectory("ddnnifeCache"), DdnnfCache.DEFAULT_MAXIMUM_SIZE);
+        try {
+            final Result<BigInteger> result = new ComputeSolutionCountDdnnife(clauses)
+                    .set(DdnnifeAnalysis.DDNNF_CACHE, cache)
+                    .set(DdnnifeAnalysis.SAT_TIMEOUT, Duration.ofNanos(1))
+                    .computeResult();
+            assertFalse(result.isPresent());
+        } finally {
+            cache.clear();
+        }
+
+        final List<BooleanAssignment> assignments = Collections.nCopies(100000, new BooleanAssignment(1));
+        try (DdnnifeWrapper wrapper = new DdnnifeWrapper(clauses.computeResult().get())) {
+            wrapper.setTimeout(Duration.ofMillis(1));
+            final List<Result<BigInteger>> counts = wrapper.countSolutions(assignments);
+            assertEquals(assignments.size(), counts.size());
+            assertFalse(counts.get(counts.size() - 1).isPresent());
+            assertTrue(wrapper.isTimeoutOccurred());
+            assertFalse(wrapper.isAlive());
+
+            wrapper.setTimeout(Duration.ZERO);
+            assertFalse(wrapper.countSolutions().isPresent());
+        }
+    }
+
+    @Test
+    public void countInterrupted() throws InterruptedException {
+        final IFormula formula = loadFormula("testFeatureModels/gpl_medium_model.xml");
+        final BooleanClauseList clauses = Computations.of(formula)
+                .map(ComputeNNFFormula::new)
+                .map(ComputeCNFFormula::new)
+                .map(ComputeBooleanClauseList::new)
+                .computeResult()
+                .get();
+        final int queryCount = 5_000_000;
+        try (DdnnifeWrapper wrapper = new DdnnifeWrapper(clauses)) {
+            final long[] counts = new long[2];
+            final boolean[] interrupted = new boolean[1];
+            final Thread thread = new Thread(() -> {
+                wrapper.compute(
+                        IntStream.range(0, queryCount).mapToObj(i -> "count").iterator(),
+                        DdnnifeWrapper.DEFAULT_WINDOW,
+                        result -> counts[result.isPresent() ? 0 : 1]++);
+                interrupted[0] = Thread.currentThread().isInterrupted();
+            });
+            thread.start();
+            Thread.sleep(200);
+            thread.interrupt();
+            thread.join(TimeUnit.MINUTES.toMillis(1));
+
+            assertFalse(thread.isAlive());
+            assertEquals(queryCount, counts[0] + counts[1]);
+            assertTrue(counts[1] > 0);
+            assertTrue(interrupted[0]);
+            assertFalse(wrapper.isAlive());
+        }
+    }
+
+    @Test
+    public void countPooledAfterTimeout() throws InterruptedException {
+        final IFormula formula = loadFormula("testFeatureModels/gpl_medium_model.xml");
+        final BooleanClauseList clauses = Computations.of(formula)
+                .map(ComputeNNFFormula::new)
+                .map(ComputeCNFFormula::new)
+                .map(ComputeBooleanClauseList::new)
+                .computeResult()
+                .get();
+        final List<BooleanAssignment> assignments = Collections.nCopies(100000, new BooleanAssignment(1));
+        try (DdnnifeWrapperPool pool = new DdnnifeWrapperPool(1, Duration.ofMinutes(1))) {
+            try (DdnnifeWrapper wrapper = pool.lease(clauses, null, Duration.ZERO)) {
+                wrapper.setTimeout(Duration.ofMillis(1));
+                wrapper.countSolutions(assignments);
+                assertTrue(wrapper.isTimeoutOccurred());
+                assertFalse(wrapper.isAlive());
+            }
+            assertEquals(0, pool.getIdleCount());
+
+            try (DdnnifeWrapper wrapper = pool.lease(clauses, null, Duration.ZERO)) {
+                assertTrue(wrapper.isAlive());
+                final Result<BigInteger> result = wrapper.countSolutions();
+                assertTrue(result.isPresent(), result::printProblems);
+                assertEquals(BigInteger.valueOf(960), result.get());
+            }
+            assertEquals(2, pool.getStartCount());
+        }
+    }
+
+    @Test
+    public void countParallel() throws Exception {
+        final IFormula formula = loadFormula("testFeatureModels/gpl_medium_model.xml");
+        final BooleanClauseList clauses = Computations.of(formula)
+                .map(ComputeNNFFormula::new)
+                .map(ComputeCNFFormula::new)
+                .map(ComputeBooleanClauseList::new)
+                .computeResult()
+                .get();
+        final int variableCount = clauses.getVariableCount();
+        final List<BooleanAssignment> assignments = IntStream.range(0, 2000)
+                .mapToObj(i -> new BooleanAssignment((i % variableCount + 1) * (i % 2 == 0 ? 1 : -1)))
+                .collect(Collectors.toList());
+
+        final List<Result<BigInteger>> expected;
+        try (DdnnifeWrapper wrapper = new DdnnifeWrapper(clauses)) {
+            expected = wrapper.countSolutions(assignments);
+        }
+        try (DdnnifeParallelExecutor executor = new DdnnifeParallelExecutor(clauses, null, 4, Duration.ZERO)) {
+            assertEquals(4, executor.getReplicaCount());
+            assertCounts(expected, executor.countSolutions(assignments));
+
+            executor.getReplica(0).cancel();
+            executor.getReplica(2).cancel();
+            assertCounts(expected, executor.countSolutions(assignments));
+            final Result<BigInteger> count = executor.countSolutions();
+            assertTrue(count.isPresent(), count::printProblems);
+            assertEquals(BigInteger.valueOf(960), count.get());
+        }
+
+        final Result<Commonality> sequential =
+                new ComputeCommonalityDdnnife(Computations.of(clauses)).computeResult();
+        assertTrue(sequential.isPresent(), sequential::printProblems);
+        final Result<Commonality> parallel = new ComputeCommonalityDdnnife(Computations.of(clauses))
+                .set(DdnnifeAnalysis.PARALLELISM, 4)
+                .computeResult();
+        assertTrue(parallel.isPresent(), parallel::printProblems);
+        assertEquals(sequential.get(), parallel.get());
+    }
+
+    @Test
+    public void countParallelBatchTimeout() throws Exception {
+        final BooleanClauseList clauses = new BooleanClauseList(3);
+        clauses.add(new BooleanClause(1, 2));
+        final List<BooleanAssignment> assignments =
+                Arrays.asList(new BooleanAssignment(1), new BooleanAssignment(-1));
+        try (DdnnifeParallelExecutor executor = new DdnnifeParallelExecutor(clauses, null, 2, Duration.ZERO)) {
+            executor.setTimeout(Duration.ofNanos(1));
+            assertTrue(executor.countSolutions(assignments).stream().allMatch(Result::isEmpty));
+            assertTrue(executor.isTimeoutOccurred());
+
+            executor.setTimeout(Duration.ZERO);
+            final List<Result<BigInteger>> counts = executor.countSolutions(assignments);
+            assertEquals(BigInteger.valueOf(4), counts.get(0).get());
+            assertEquals(BigInteger.valueOf(2), counts.get(1).get());
+            assertFalse(executor.isTimeoutOccurred());
+        }
+    }
+
+    @Test
+    public void parallelCompileTimeoutDeletesFile() throws Exception {
+        final BooleanClauseList clauses = new BooleanClauseList(3);
+        clauses.add(new BooleanClause(1, 2));
+        final long before = countTemporaryInputs();
+        assertThrows(
+                TimeoutException.class,
+                () -> new DdnnifeParallelExecutor(clauses, null, 2, Duration.ofNanos(1)).close());
+        assertEquals(before, countTemporaryInputs());
+    }
+
+    private static long countTemporaryInputs() throws IOException {
+        try (Stream<Path> files = Files.list(Path.of(System.getProperty("java.io.tmpdir")))) {
+            return files.filter(file -> file.getFileName().toString().startsWith("ddnnifeInput"))
+                    .count();
+        }
+    }
+
+    private static void assertCounts(List<Result<BigInteger>> expected, List<Result<BigInteger>> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertTrue(expected.get(i).isPresent(), expected.get(i)::printProblems);
+            assertTrue(actual.get(i).isPresent(), actual.get(i)::printProblems);
+            assertEquals(expected.get(i).get(), actual.get(i).get());
+        }
+    }
 }
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-formula-analysis-ddnnife.
+ *
+ * formula-analysis-ddnnife is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * formula-analysis-ddnnife is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with formula-analysis-ddnnife. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatJAR/formula-analysis-ddnnife> for further information.
+ */
+package de.featjar.analysis.ddnnife.solver;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import de.featjar.formula.analysis.bool.BooleanClause;
+import de.featjar.formula.analysis.bool.BooleanClauseList;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class NamedPipeTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    @BeforeEach
+    public void enable() {
+        System.setProperty(NamedPipe.PROPERTY, "true");
+        assumeTrue(NamedPipe.isSupported());
+    }
+
+    @AfterEach
+    public void disable() {
+        System.clearProperty(NamedPipe.PROPERTY);
+    }
+
+    private static byte[] data(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) ('a' + i % 26);
+        }
+        return data;
+    }
+
+    private static Process cat(Path path) throws IOException {
+        return new ProcessBuilder("cat", path.toString()).start();
+    }
+
+    @Test
+    public void disabledByDefault() {
+        System.clearProperty(NamedPipe.PROPERTY);
+        assertFalse(NamedPipe.isSupported());
+    }
+
+    @Test
+    public void transfer() throws Exception {
+        byte[] data = data(1 << 20);
+        try (NamedPipe pipe = NamedPipe.create("transfer")) {
+            Future<Void> write = pipe.transfer("test-writer", () -> {
+                Files.write(pipe.getPath(), data);
+                return null;
+            });
+            Process consumer = cat(pipe.getPath());
+            byte[] read = consumer.getInputStream().readAllBytes();
+            assertEquals(0, consumer.waitFor());
+            pipe.finish(write);
+            assertArrayEquals(data, read);
+        }
+    }
+
+    @Test
+    public void producerDiesEarly() throws Exception {
+        byte[] data = data(1000);
+        try (NamedPipe pipe = NamedPipe.create("producer")) {
+            Future<Void> write = pipe.transfer("test-writer", () -> {
+                try (OutputStream out = Files.newOutputStream(pipe.getPath())) {
+                    out.write(data);
+                }
+                throw new IOException("producer failed");
+            });
+            Process consumer = cat(pipe.getPath());
+            byte[] read = consumer.getInputStream().readAllBytes();
+            consumer.waitFor();
+            assertArrayEquals(data, read);
+            assertThrows(IOException.class, () -> pipe.finish(write));
+        }
+    }
+
+    @Test
+    public void consumerDiesEarly() throws Exception {
+        byte[] data = data(1 << 20);
+        try (NamedPipe pipe = NamedPipe.create("consumer")) {
+            Future<Void> write = pipe.transfer("test-writer", () -> {
+                Files.write(pipe.getPath(), data);
+                return null;
+            });
+            Process consumer = new ProcessBuilder("true").start();
+            consumer.waitFor();
+            assertTimeoutPreemptively(TIMEOUT, () -> {
+                try {
+                    pipe.finish(write);
+                } catch (IOException e) {
+                    // the writer fails, as nobody reads the data
+                }
+            });
+            assertTrue(write.isDone());
+        }
+    }
+
+    @Test
+    public void closeDeletesDirectory() throws Exception {
+        NamedPipe pipe = NamedPipe.create("cleanup");
+        Path directory = pipe.getPath().getParent();
+        assertTrue(Files.exists(pipe.getPath()));
+        pipe.close();
+        assertFalse(Files.exists(pipe.getPath()));
+        assertFalse(Files.exists(directory));
+    }
+
+    @Test
+    public void compile() throws Exception {
+        BooleanClauseList clauses = new BooleanClauseList(3);
+        clauses.add(new BooleanClause(1, 2));
+
+        Path ddnnfFile = Files.createTempFile("ddnnf", ".nnf");
+        try {
+            DdnnifeWrapper.compile(clauses, ddnnfFile);
+            assertEquals(BigInteger.valueOf(6), Ddnnf.read(ddnnfFile, 3).count());
+        } finally {
+            Files.deleteIfExists(ddnnfFile);
+        }
+
+        ByteArrayOutputStream ddnnf = new ByteArrayOutputStream();
+        DdnnifeWrapper.compile(clauses, ddnnf, Duration.ZERO, IDdnnifeListener.NONE);
+        Ddnnf read = Ddnnf.read(
+                new InputStreamReader(
+                        new ByteArrayInputStream(ddnnf.toByteArray()), StandardCharsets.US_ASCII),
+                3);
+        assertEquals(BigInteger.valueOf(6), read.count());
+    }
+}